@@ -0,0 +1,150 @@
+/*
+ * Copyright 2016, The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.Groove9.TunesMaster.data;
+
+import android.net.Uri;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.test.suitebuilder.annotation.LargeTest;
+import android.util.Log;
+
+import edu.Groove9.TunesMaster.data.source.SongsDataSource;
+import edu.Groove9.TunesMaster.data.source.local.BinarySongsLocalDataSource;
+import edu.Groove9.TunesMaster.data.source.local.SongsLocalDataSource;
+import edu.Groove9.TunesMaster.playlist.domain.model.Song;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Compares loading the whole library, and its first page, from {@link BinarySongsLocalDataSource}
+ * and from {@link SongsLocalDataSource} at 1k, 10k and 100k songs.
+ */
+@RunWith(AndroidJUnit4.class)
+@LargeTest
+public class LocalBackendLoadBenchmark {
+
+    private static final String TAG = "LocalBackendLoad";
+
+    private static final int[] LIBRARY_SIZES = {1000, 10000, 100000};
+
+    private static final int ITERATIONS = 5;
+
+    private static final int PAGE_SIZE = 30;
+
+    private static final Uri SOURCE = Uri.parse("https://www.youtube.com/watch?v=4PDJcw9oJt0");
+
+    private SongsLocalDataSource mSqliteDataSource;
+
+    private BinarySongsLocalDataSource mBinaryDataSource;
+
+    @Before
+    public void setup() {
+        mSqliteDataSource = SongsLocalDataSource.getInstance(
+                InstrumentationRegistry.getTargetContext());
+        mBinaryDataSource = BinarySongsLocalDataSource.getInstance(
+                InstrumentationRegistry.getTargetContext());
+    }
+
+    @After
+    public void cleanUp() {
+        mSqliteDataSource.deleteAllSongs();
+        mBinaryDataSource.deleteAllSongs();
+    }
+
+    @Test
+    public void binaryStoreLoadsLargeLibrariesFaster() {
+        long sqliteLargest = 0;
+        long binaryLargest = 0;
+        for (int size : LIBRARY_SIZES) {
+            List<Song> library = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                library.add(new Song("title " + i, "description " + i, SOURCE));
+            }
+            mSqliteDataSource.deleteAllSongs();
+            mSqliteDataSource.saveSongs(library);
+            mBinaryDataSource.deleteAllSongs();
+            mBinaryDataSource.saveSongs(library);
+
+            long sqlite = medianLoadNanos(mSqliteDataSource, size);
+            long binary = medianLoadNanos(mBinaryDataSource, size);
+            long sqlitePage = medianPageNanos(mSqliteDataSource);
+            long binaryPage = medianPageNanos(mBinaryDataSource);
+            Log.i(TAG, size + " songs, median getSongs: SQLite="
+                    + TimeUnit.NANOSECONDS.toMillis(sqlite) + "ms, binary="
+                    + TimeUnit.NANOSECONDS.toMillis(binary) + "ms; first page: SQLite="
+                    + TimeUnit.NANOSECONDS.toMicros(sqlitePage) + "us, binary="
+                    + TimeUnit.NANOSECONDS.toMicros(binaryPage) + "us");
+            sqliteLargest = sqlite;
+            binaryLargest = binary;
+        }
+        assertTrue(binaryLargest < sqliteLargest);
+    }
+
+    private static long medianLoadNanos(SongsDataSource dataSource, final int expectedSize) {
+        long[] samples = new long[ITERATIONS];
+        for (int i = 0; i < ITERATIONS; i++) {
+            long start = System.nanoTime();
+            dataSource.getSongs(new SongsDataSource.LoadSongsCallback() {
+                @Override
+                public void onSongsLoaded(List<Song> songs) {
+                    assertEquals(expectedSize, songs.size());
+                }
+
+                @Override
+                public void onDataNotAvailable() {
+                    throw new AssertionError("no songs");
+                }
+            });
+            samples[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(samples);
+        return samples[ITERATIONS / 2];
+    }
+
+    private static long medianPageNanos(SongsDataSource dataSource) {
+        long[] samples = new long[ITERATIONS];
+        for (int i = 0; i < ITERATIONS; i++) {
+            long start = System.nanoTime();
+            dataSource.getSongsPage(0, PAGE_SIZE, NO_OP_CALLBACK);
+            samples[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(samples);
+        return samples[ITERATIONS / 2];
+    }
+
+    private static final SongsDataSource.LoadSongsPageCallback NO_OP_CALLBACK =
+            new SongsDataSource.LoadSongsPageCallback() {
+                @Override
+                public void onPageLoaded(List<Song> songs, boolean hasMore) {
+                }
+
+                @Override
+                public void onDataNotAvailable() {
+                }
+            };
+}
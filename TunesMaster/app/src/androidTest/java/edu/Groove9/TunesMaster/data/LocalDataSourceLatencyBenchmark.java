@@ -0,0 +1,186 @@
+/*
+ * Copyright 2016, The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.Groove9.TunesMaster.data;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.net.Uri;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.test.suitebuilder.annotation.LargeTest;
+import android.util.Log;
+
+import edu.Groove9.TunesMaster.data.source.SongsDataSource;
+import edu.Groove9.TunesMaster.data.source.local.SongsDbHelper;
+import edu.Groove9.TunesMaster.data.source.local.SongsLocalDataSource;
+import edu.Groove9.TunesMaster.data.source.local.SongsPersistenceContract.TaskEntry;
+import edu.Groove9.TunesMaster.playlist.domain.model.Song;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Compares the per-operation latency of {@link SongsLocalDataSource}, which keeps its database
+ * open, against opening and closing the database around every operation, and its bulk import
+ * against saving songs one by one.
+ */
+@RunWith(AndroidJUnit4.class)
+@LargeTest
+public class LocalDataSourceLatencyBenchmark {
+
+    private static final String TAG = "LocalDataSourceLatency";
+
+    private static final int WARMUP_ITERATIONS = 20;
+
+    private static final int ITERATIONS = 200;
+
+    private static final int IMPORT_SIZE = 1000;
+
+    private static final Uri SOURCE = Uri.parse("https://www.youtube.com/watch?v=4PDJcw9oJt0");
+
+    private SongsLocalDataSource mLocalDataSource;
+
+    private SongsDbHelper mDbHelper;
+
+    private Song mSong;
+
+    @Before
+    public void setup() {
+        mLocalDataSource = SongsLocalDataSource.getInstance(
+                InstrumentationRegistry.getTargetContext());
+        mDbHelper = new SongsDbHelper(InstrumentationRegistry.getTargetContext());
+        mSong = new Song("title", "description", SOURCE);
+        mLocalDataSource.saveSong(mSong);
+    }
+
+    @After
+    public void cleanUp() {
+        mLocalDataSource.deleteAllSongs();
+        mDbHelper.close();
+    }
+
+    @Test
+    public void getSong_sharedConnectionIsFasterThanOpenClose() {
+        long[] shared = new long[ITERATIONS];
+        long[] openClose = new long[ITERATIONS];
+        for (int i = -WARMUP_ITERATIONS; i < ITERATIONS; i++) {
+            long start = System.nanoTime();
+            mLocalDataSource.getSong(mSong.getId(), NO_OP_CALLBACK);
+            long sharedNanos = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            SQLiteDatabase db = mDbHelper.getReadableDatabase();
+            Cursor c = db.query(TaskEntry.TABLE_NAME, null, TaskEntry.COLUMN_NAME_ENTRY_ID + " = ?",
+                    new String[]{mSong.getId()}, null, null, null);
+            c.moveToFirst();
+            c.close();
+            db.close();
+            long openCloseNanos = System.nanoTime() - start;
+
+            if (i >= 0) {
+                shared[i] = sharedNanos;
+                openClose[i] = openCloseNanos;
+            }
+        }
+        report("getSong", shared, openClose);
+    }
+
+    @Test
+    public void saveSong_sharedConnectionIsFasterThanOpenClose() {
+        long[] shared = new long[ITERATIONS];
+        long[] openClose = new long[ITERATIONS];
+        for (int i = -WARMUP_ITERATIONS; i < ITERATIONS; i++) {
+            long start = System.nanoTime();
+            mLocalDataSource.saveSong(new Song("title", "description", SOURCE));
+            long sharedNanos = System.nanoTime() - start;
+
+            Song song = new Song("title", "description", SOURCE);
+            start = System.nanoTime();
+            SQLiteDatabase db = mDbHelper.getWritableDatabase();
+            ContentValues values = new ContentValues();
+            values.put(TaskEntry.COLUMN_NAME_ENTRY_ID, song.getId());
+            values.put(TaskEntry.COLUMN_NAME_SOURCE, song.getSource().toString());
+            values.put(TaskEntry.COLUMN_NAME_TITLE, song.getTitle());
+            values.put(TaskEntry.COLUMN_NAME_DESCRIPTION, song.getDescription());
+            db.insert(TaskEntry.TABLE_NAME, null, values);
+            db.close();
+            long openCloseNanos = System.nanoTime() - start;
+
+            if (i >= 0) {
+                shared[i] = sharedNanos;
+                openClose[i] = openCloseNanos;
+            }
+        }
+        report("saveSong", shared, openClose);
+    }
+
+    @Test
+    public void saveSongs_oneTransactionIsFasterThanOneSavePerSong() {
+        List<Song> library = new ArrayList<>(IMPORT_SIZE);
+        for (int i = 0; i < IMPORT_SIZE; i++) {
+            library.add(new Song("title " + i, "description " + i, SOURCE));
+        }
+
+        long start = System.nanoTime();
+        for (Song song : library) {
+            mLocalDataSource.saveSong(song);
+        }
+        long perSongNanos = System.nanoTime() - start;
+        mLocalDataSource.deleteAllSongs();
+
+        start = System.nanoTime();
+        mLocalDataSource.saveSongs(library);
+        long bulkNanos = System.nanoTime() - start;
+
+        Log.i(TAG, "import of " + IMPORT_SIZE + " songs: one save per song="
+                + TimeUnit.NANOSECONDS.toMillis(perSongNanos) + "ms, saveSongs="
+                + TimeUnit.NANOSECONDS.toMillis(bulkNanos) + "ms");
+        assertTrue(bulkNanos < perSongNanos);
+    }
+
+    private static void report(String operation, long[] shared, long[] openClose) {
+        Arrays.sort(shared);
+        Arrays.sort(openClose);
+        long sharedMedian = shared[shared.length / 2];
+        long openCloseMedian = openClose[openClose.length / 2];
+        Log.i(TAG, operation + " median latency: shared connection="
+                + TimeUnit.NANOSECONDS.toMicros(sharedMedian) + "us, open/close="
+                + TimeUnit.NANOSECONDS.toMicros(openCloseMedian) + "us");
+        assertTrue(sharedMedian < openCloseMedian);
+    }
+
+    private static final SongsDataSource.GetSongCallback NO_OP_CALLBACK =
+            new SongsDataSource.GetSongCallback() {
+                @Override
+                public void onSongLoaded(Song song) {
+                }
+
+                @Override
+                public void onDataNotAvailable() {
+                }
+            };
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright 2016, The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.Groove9.TunesMaster.data;
+
+import android.content.ComponentCallbacks2;
+import android.net.Uri;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.test.suitebuilder.annotation.LargeTest;
+import android.util.Log;
+
+import edu.Groove9.TunesMaster.data.source.SongsDataSource;
+import edu.Groove9.TunesMaster.data.source.SongsRepository;
+import edu.Groove9.TunesMaster.data.source.local.SongsLocalDataSource;
+import edu.Groove9.TunesMaster.data.source.remote.SongsRemoteDataSource;
+import edu.Groove9.TunesMaster.playlist.domain.model.Song;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Compares the latency of opening the same song repeatedly through
+ * {@link SongsRepository#getSong}, with the read-through cache versus a query to SQLite on every
+ * open, as happened before loaded songs were cached.
+ */
+@RunWith(AndroidJUnit4.class)
+@LargeTest
+public class RepeatOpenLatencyBenchmark {
+
+    private static final String TAG = "RepeatOpenLatency";
+
+    private static final int WARMUP_ITERATIONS = 50;
+
+    private static final int ITERATIONS = 500;
+
+    private static final Uri SOURCE = Uri.parse("https://www.youtube.com/watch?v=4PDJcw9oJt0");
+
+    private SongsLocalDataSource mLocalDataSource;
+
+    private SongsRepository mSongsRepository;
+
+    private Song mSong;
+
+    @Before
+    public void setup() {
+        SongsRepository.destroyInstance();
+        mLocalDataSource = SongsLocalDataSource.getInstance(
+                InstrumentationRegistry.getTargetContext());
+        mSongsRepository = SongsRepository.getInstance(SongsRemoteDataSource.getInstance(),
+                mLocalDataSource);
+        mSong = new Song("title", "description", SOURCE);
+        // Only persisted, so the repository cache starts empty
+        mLocalDataSource.saveSong(mSong);
+    }
+
+    @After
+    public void cleanUp() {
+        mSongsRepository.deleteAllSongs();
+        SongsRepository.destroyInstance();
+    }
+
+    @Test
+    public void repeatOpenFromCacheIsFasterThanQueryingEveryTime() {
+        long uncachedMedian = medianOpenNanos(true);
+        long cachedMedian = medianOpenNanos(false);
+
+        Log.i(TAG, "median repeat open latency: query every time="
+                + TimeUnit.NANOSECONDS.toMicros(uncachedMedian) + "us, read-through cache="
+                + TimeUnit.NANOSECONDS.toMicros(cachedMedian) + "us");
+        assertTrue(cachedMedian < uncachedMedian);
+    }
+
+    /**
+     * @param dropCache drop the repository cache before each open, so every open queries SQLite
+     */
+    private long medianOpenNanos(boolean dropCache) {
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            openSong(dropCache);
+        }
+        long[] samples = new long[ITERATIONS];
+        for (int i = 0; i < ITERATIONS; i++) {
+            samples[i] = openSong(dropCache);
+        }
+        Arrays.sort(samples);
+        return samples[ITERATIONS / 2];
+    }
+
+    private long openSong(boolean dropCache) {
+        if (dropCache) {
+            mSongsRepository.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_COMPLETE);
+        }
+        final Song[] loaded = new Song[1];
+        long start = System.nanoTime();
+        // The local data source answers synchronously
+        mSongsRepository.getSong(mSong.getId(), new SongsDataSource.GetSongCallback() {
+            @Override
+            public void onSongLoaded(Song song) {
+                loaded[0] = song;
+            }
+
+            @Override
+            public void onDataNotAvailable() {
+            }
+        });
+        long elapsed = System.nanoTime() - start;
+        assertNotNull(loaded[0]);
+        return elapsed;
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright 2016, The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.Groove9.TunesMaster.data;
+
+import android.net.Uri;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.test.suitebuilder.annotation.LargeTest;
+import android.util.Log;
+
+import edu.Groove9.TunesMaster.data.source.SongsDataSource;
+import edu.Groove9.TunesMaster.data.source.local.SongsLocalDataSource;
+import edu.Groove9.TunesMaster.playlist.domain.model.Song;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Measures prefix searches through the full-text index of {@link SongsLocalDataSource} over a
+ * large library.
+ */
+@RunWith(AndroidJUnit4.class)
+@LargeTest
+public class SearchLatencyBenchmark {
+
+    private static final String TAG = "SearchLatency";
+
+    private static final int LIBRARY_SIZE = 50000;
+
+    private static final int ITERATIONS = 100;
+
+    private static final int LIMIT = 50;
+
+    private static final long TARGET_MEDIAN_MILLIS = 10;
+
+    private static final Uri SOURCE = Uri.parse("https://www.youtube.com/watch?v=4PDJcw9oJt0");
+
+    private static final String[] WORDS = {
+            "love", "night", "dance", "river", "summer", "fire", "heart", "dream", "city", "blue"
+    };
+
+    private SongsLocalDataSource mLocalDataSource;
+
+    @Before
+    public void setup() {
+        mLocalDataSource = SongsLocalDataSource.getInstance(
+                InstrumentationRegistry.getTargetContext());
+        List<Song> library = new ArrayList<>(LIBRARY_SIZE);
+        for (int i = 0; i < LIBRARY_SIZE; i++) {
+            String title = WORDS[i % WORDS.length] + " " + WORDS[(i / WORDS.length) % WORDS.length]
+                    + " " + i;
+            library.add(new Song(title, "track " + i, SOURCE));
+        }
+        mLocalDataSource.saveSongs(library);
+    }
+
+    @After
+    public void cleanUp() {
+        mLocalDataSource.deleteAllSongs();
+    }
+
+    @Test
+    public void prefixSearch_medianUnderTarget() {
+        String[] queries = {"lov", "night dan", "summ fir", "track 4999", "blu"};
+        long[] samples = new long[ITERATIONS];
+        for (int i = 0; i < ITERATIONS; i++) {
+            final int[] found = new int[1];
+            long start = System.nanoTime();
+            mLocalDataSource.searchSongs(queries[i % queries.length], LIMIT,
+                    new SongsDataSource.LoadSongsCallback() {
+                        @Override
+                        public void onSongsLoaded(List<Song> songs) {
+                            found[0] = songs.size();
+                        }
+
+                        @Override
+                        public void onDataNotAvailable() {
+                        }
+                    });
+            samples[i] = System.nanoTime() - start;
+            assertThat(found[0] > 0, is(true));
+        }
+        Arrays.sort(samples);
+        long median = samples[ITERATIONS / 2];
+
+        Log.i(TAG, "median search latency over " + LIBRARY_SIZE + " songs: "
+                + TimeUnit.NANOSECONDS.toMicros(median) + "us");
+        assertTrue(median < TimeUnit.MILLISECONDS.toNanos(TARGET_MEDIAN_MILLIS));
+    }
+}
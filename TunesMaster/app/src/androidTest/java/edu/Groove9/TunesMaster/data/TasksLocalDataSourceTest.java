@@ -21,6 +21,7 @@ import android.support.test.InstrumentationRegistry;
 import android.support.test.runner.AndroidJUnit4;
 import android.test.suitebuilder.annotation.LargeTest;
 
+import edu.Groove9.TunesMaster.data.source.SongsChangeSet;
 import edu.Groove9.TunesMaster.data.source.SongsDataSource;
 import edu.Groove9.TunesMaster.data.source.local.SongsDbHelper;
 import edu.Groove9.TunesMaster.data.source.local.SongsLocalDataSource;
@@ -31,6 +32,8 @@ import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
 import static org.hamcrest.core.Is.is;
@@ -39,6 +42,7 @@ import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 import static org.mockito.Matchers.anyList;
+import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
@@ -150,4 +154,70 @@ public class TasksLocalDataSourceTest {
             }
         });
     }
+
+    @Test
+    public void getSongsByIds_reportsMissingIdsTogether() {
+        // Given two saved songs
+        Song newSong1 = new Song(TITLE, "", SOURCE);
+        Song newSong2 = new Song(TITLE2, "", SOURCE);
+        mLocalDataSource.saveSongs(Arrays.asList(newSong1, newSong2));
+
+        // When they are requested along with an unknown id
+        SongsDataSource.GetSongsCallback callback = mock(SongsDataSource.GetSongsCallback.class);
+        mLocalDataSource.getSongs(Arrays.asList(newSong2.getId(), "missing", newSong1.getId()),
+                callback);
+
+        // Then both are loaded, in the order asked, and the unknown id is reported missing
+        verify(callback).onSongsLoaded(Arrays.asList(newSong2, newSong1),
+                Collections.singletonList("missing"));
+    }
+
+    @Test
+    public void applyChanges_keepsNewerRowsAndRecordsCursor() {
+        // Given a song synced at cursor 5
+        Song synced = new Song(TITLE, "", SOURCE);
+        mLocalDataSource.applyChanges(new SongsChangeSet(Collections.singletonList(synced),
+                Collections.<String>emptyList(), 5, false));
+
+        // When older changes, from an overlapping sync, are applied afterwards
+        Song outdated = new Song(TITLE2, "", synced.getId(), SOURCE);
+        mLocalDataSource.applyChanges(new SongsChangeSet(Collections.singletonList(outdated),
+                Collections.<String>emptyList(), 3, false));
+
+        // Then the newer row and cursor are kept
+        SongsDataSource.GetSongCallback callback = mock(SongsDataSource.GetSongCallback.class);
+        mLocalDataSource.getSong(synced.getId(), callback);
+        verify(callback).onSongLoaded(eq(synced));
+        assertThat(mLocalDataSource.getSyncCursor(), is(5L));
+
+        // And deleting all songs forgets the cursor
+        mLocalDataSource.deleteAllSongs();
+        assertThat(mLocalDataSource.getSyncCursor(), is(SongsChangeSet.NO_CURSOR));
+    }
+
+    @Test
+    public void saveEditedSong_keepsItsPositionAndVersion() {
+        // Given two songs, the first one synced at cursor 5
+        Song song1 = new Song(TITLE, "", SOURCE);
+        Song song2 = new Song(TITLE2, "", SOURCE);
+        mLocalDataSource.applyChanges(new SongsChangeSet(Collections.singletonList(song1),
+                Collections.<String>emptyList(), 5, false));
+        mLocalDataSource.saveSong(song2);
+
+        // When the first one is edited and saved again
+        Song edited1 = new Song(TITLE3, "", song1.getId(), SOURCE);
+        mLocalDataSource.saveSong(edited1);
+
+        // Then it stays first
+        SongsDataSource.LoadSongsCallback callback = mock(SongsDataSource.LoadSongsCallback.class);
+        mLocalDataSource.getSongs(callback);
+        verify(callback).onSongsLoaded(Arrays.asList(edited1, song2));
+
+        // And older synced changes still can't overwrite it
+        mLocalDataSource.applyChanges(new SongsChangeSet(Collections.singletonList(song1),
+                Collections.<String>emptyList(), 3, false));
+        SongsDataSource.GetSongCallback songCallback = mock(SongsDataSource.GetSongCallback.class);
+        mLocalDataSource.getSong(song1.getId(), songCallback);
+        verify(songCallback).onSongLoaded(eq(edited1));
+    }
 }
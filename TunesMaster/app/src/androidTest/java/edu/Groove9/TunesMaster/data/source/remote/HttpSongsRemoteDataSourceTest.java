@@ -0,0 +1,211 @@
+/*
+ * Copyright 2016, The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.Groove9.TunesMaster.data.source.remote;
+
+import android.content.Context;
+import android.net.Uri;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.test.suitebuilder.annotation.LargeTest;
+
+import edu.Groove9.TunesMaster.data.source.SongsChangeSet;
+import edu.Groove9.TunesMaster.data.source.SongsDataSource;
+import edu.Groove9.TunesMaster.playlist.domain.model.Song;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Integration test for {@link HttpSongsRemoteDataSource} against a {@link MockSongsServer}.
+ */
+@RunWith(AndroidJUnit4.class)
+@LargeTest
+public class HttpSongsRemoteDataSourceTest {
+
+    private static final Uri SOURCE = Uri.parse("https://www.youtube.com/watch?v=4PDJcw9oJt0");
+
+    private static final Song SONG1 = new Song("Title1", "Description1", "1", SOURCE);
+
+    private static final Song SONG2 = new Song("Title2", "Description2", "2", SOURCE);
+
+    private MockSongsServer mServer;
+
+    private HttpSongsRemoteDataSource mRemoteDataSource;
+
+    @Before
+    public void setup() throws Exception {
+        Context context = InstrumentationRegistry.getTargetContext();
+        deleteCache(context);
+        mServer = new MockSongsServer();
+        mServer.start();
+        mServer.getSongs().put(SONG1);
+        mServer.getSongs().put(SONG2);
+        HttpSongsRemoteDataSource.destroyInstance();
+        mRemoteDataSource = HttpSongsRemoteDataSource.getInstance(context, mServer.getUrl());
+    }
+
+    @After
+    public void cleanUp() throws Exception {
+        HttpSongsRemoteDataSource.destroyInstance();
+        mServer.shutdown();
+        deleteCache(InstrumentationRegistry.getTargetContext());
+    }
+
+    @Test
+    public void getSongs_returnsServerCatalog() throws Exception {
+        List<Song> songs = getSongs();
+
+        assertNotNull(songs);
+        assertThat(songs.size(), is(2));
+        assertThat(songs.get(0), is(SONG1));
+        assertThat(songs.get(0).getTitle(), is("Title1"));
+        assertThat(songs.get(1), is(SONG2));
+        assertThat(mServer.getGzippedCount(), is(1));
+    }
+
+    @Test
+    public void getSongs_whenUnchanged_costsA304() throws Exception {
+        getSongs();
+
+        List<Song> songs = getSongs();
+
+        assertThat(songs.size(), is(2));
+        assertThat(mServer.getRequestCount(), is(2));
+        assertThat(mServer.getNotModifiedCount(), is(1));
+    }
+
+    @Test
+    public void getSongs_whenChanged_downloadsAgain() throws Exception {
+        getSongs();
+        mServer.getSongs().remove(SONG1.getId());
+
+        List<Song> songs = getSongs();
+
+        assertThat(songs.size(), is(1));
+        assertThat(songs.get(0), is(SONG2));
+        assertThat(mServer.getNotModifiedCount(), is(0));
+    }
+
+    @Test
+    public void getSongs_whenServerIsDown_servesCachedCatalog() throws Exception {
+        getSongs();
+        mServer.shutdown();
+        // A new instance has nothing in memory: the catalog has to come from disk
+        HttpSongsRemoteDataSource.destroyInstance();
+        mRemoteDataSource = HttpSongsRemoteDataSource.getInstance(
+                InstrumentationRegistry.getTargetContext(), mServer.getUrl());
+
+        List<Song> songs = getSongs();
+
+        assertNotNull(songs);
+        assertThat(songs.size(), is(2));
+        // Let cleanUp shut down a running server
+        mServer = new MockSongsServer();
+        mServer.start();
+    }
+
+    @Test
+    public void getChangesSince_whenUnchanged_costsA304() throws Exception {
+        SongsChangeSet first = getChangesSince(SongsChangeSet.NO_CURSOR);
+        SongsChangeSet incremental = getChangesSince(first.getCursor());
+
+        SongsChangeSet again = getChangesSince(first.getCursor());
+
+        assertTrue(first.isReset());
+        assertTrue(incremental.isEmpty());
+        assertTrue(again.isEmpty());
+        assertThat(again.getCursor(), is(first.getCursor()));
+        assertThat(mServer.getNotModifiedCount(), is(1));
+    }
+
+    @Test
+    public void saveSongAndDeleteSong_reachTheServer() throws Exception {
+        Song song3 = new Song("Title3", "Description3", "3 with spaces", SOURCE);
+        mRemoteDataSource.saveSong(song3);
+        mRemoteDataSource.deleteSong(SONG1.getId());
+
+        List<Song> songs = getSongs();
+
+        assertThat(songs.size(), is(2));
+        assertThat(songs.get(0), is(SONG2));
+        assertThat(songs.get(1), is(song3));
+        assertNull(mServer.getSongs().get(SONG1.getId()));
+    }
+
+    private List<Song> getSongs() throws InterruptedException {
+        final CountDownLatch done = new CountDownLatch(1);
+        final AtomicReference<List<Song>> result = new AtomicReference<>();
+        mRemoteDataSource.getSongs(new SongsDataSource.LoadSongsCallback() {
+            @Override
+            public void onSongsLoaded(List<Song> songs) {
+                result.set(songs);
+                done.countDown();
+            }
+
+            @Override
+            public void onDataNotAvailable() {
+                done.countDown();
+            }
+        });
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        return result.get();
+    }
+
+    private SongsChangeSet getChangesSince(long cursor) throws InterruptedException {
+        final CountDownLatch done = new CountDownLatch(1);
+        final AtomicReference<SongsChangeSet> result = new AtomicReference<>();
+        mRemoteDataSource.getChangesSince(cursor, new SongsDataSource.LoadChangesCallback() {
+            @Override
+            public void onChangesLoaded(SongsChangeSet changes) {
+                result.set(changes);
+                done.countDown();
+            }
+
+            @Override
+            public void onDataNotAvailable() {
+                done.countDown();
+            }
+        });
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        assertNotNull(result.get());
+        return result.get();
+    }
+
+    private static void deleteCache(Context context) {
+        File[] files = new File(context.getCacheDir(),
+                HttpSongsRemoteDataSource.CACHE_DIR).listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+    }
+}
@@ -0,0 +1,226 @@
+/*
+ * Copyright 2016, The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.Groove9.TunesMaster.data.source.remote;
+
+import android.net.Uri;
+import android.support.annotation.NonNull;
+
+import edu.Groove9.TunesMaster.data.source.SongsChangeLog;
+import edu.Groove9.TunesMaster.data.source.SongsChangeSet;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.ByteStreams;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Embedded stand-in for the songs service, serving a {@link SongsChangeLog} on the loopback
+ * interface with the endpoints described in {@link HttpSongsRemoteDataSource}.
+ * <p>
+ * Every response carries the version of the change log as its ETag, and conditional requests
+ * that still match are answered with a 304. Bodies are gzipped when the client accepts it. One
+ * request is served per connection.
+ */
+class MockSongsServer {
+
+    private final SongsChangeLog mSongs = new SongsChangeLog();
+
+    private final AtomicInteger mRequestCount = new AtomicInteger();
+
+    private final AtomicInteger mNotModifiedCount = new AtomicInteger();
+
+    private final AtomicInteger mGzippedCount = new AtomicInteger();
+
+    private ServerSocket mServerSocket;
+
+    private Thread mThread;
+
+    /**
+     * Starts listening on a free port.
+     */
+    void start() throws IOException {
+        mServerSocket = new ServerSocket(0, 50, InetAddress.getByName("127.0.0.1"));
+        mThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                while (!mServerSocket.isClosed()) {
+                    try {
+                        Socket socket = mServerSocket.accept();
+                        try {
+                            serve(socket);
+                        } finally {
+                            socket.close();
+                        }
+                    } catch (IOException e) {
+                        // Closed by shutdown(), or the client went away
+                    }
+                }
+            }
+        }, "MockSongsServer");
+        mThread.start();
+    }
+
+    void shutdown() throws IOException, InterruptedException {
+        mServerSocket.close();
+        mThread.join();
+    }
+
+    /**
+     * @return the url to give {@link HttpSongsRemoteDataSource}
+     */
+    @NonNull
+    String getUrl() {
+        return "http://127.0.0.1:" + mServerSocket.getLocalPort();
+    }
+
+    /**
+     * @return the songs served, which tests can change directly
+     */
+    @NonNull
+    SongsChangeLog getSongs() {
+        return mSongs;
+    }
+
+    int getRequestCount() {
+        return mRequestCount.get();
+    }
+
+    int getNotModifiedCount() {
+        return mNotModifiedCount.get();
+    }
+
+    int getGzippedCount() {
+        return mGzippedCount.get();
+    }
+
+    private void serve(Socket socket) throws IOException {
+        InputStream in = socket.getInputStream();
+        String[] requestLine = readLine(in).split(" ");
+        Map<String, String> headers = new HashMap<>();
+        for (String line = readLine(in); !line.isEmpty(); line = readLine(in)) {
+            int colon = line.indexOf(':');
+            headers.put(line.substring(0, colon).trim().toLowerCase(Locale.US),
+                    line.substring(colon + 1).trim());
+        }
+        byte[] body = new byte[0];
+        if (headers.containsKey("content-length")) {
+            body = new byte[Integer.parseInt(headers.get("content-length"))];
+            ByteStreams.readFully(in, body);
+        }
+        mRequestCount.incrementAndGet();
+
+        String method = requestLine[0];
+        String path = requestLine[1];
+        OutputStream out = socket.getOutputStream();
+        if (method.equals("GET")) {
+            String eTag = "\"" + currentVersion() + "\"";
+            if (eTag.equals(headers.get("if-none-match"))) {
+                mNotModifiedCount.incrementAndGet();
+                respond(out, "304 Not Modified", eTag, null, false);
+            } else if (path.equals(HttpSongsRemoteDataSource.SONGS_PATH)) {
+                respond(out, "200 OK", eTag, SongsJson.writeSongs(mSongs.getSongs()),
+                        acceptsGzip(headers));
+            } else if (path.startsWith(HttpSongsRemoteDataSource.CHANGES_PATH)) {
+                long cursor = Long.parseLong(
+                        path.substring(HttpSongsRemoteDataSource.CHANGES_PATH.length()));
+                SongsChangeSet changes = mSongs.changesSince(cursor);
+                respond(out, "200 OK", eTag, SongsJson.writeChangeSet(changes),
+                        acceptsGzip(headers));
+            } else {
+                respond(out, "404 Not Found", null, null, false);
+            }
+        } else if (method.equals("PUT")
+                && path.startsWith(HttpSongsRemoteDataSource.SONGS_PATH + "/")) {
+            mSongs.put(SongsJson.readSong(body));
+            respond(out, "204 No Content", null, null, false);
+        } else if (method.equals("DELETE") && path.equals(HttpSongsRemoteDataSource.SONGS_PATH)) {
+            mSongs.clear();
+            respond(out, "204 No Content", null, null, false);
+        } else if (method.equals("DELETE")
+                && path.startsWith(HttpSongsRemoteDataSource.SONGS_PATH + "/")) {
+            mSongs.remove(Uri.decode(
+                    path.substring(HttpSongsRemoteDataSource.SONGS_PATH.length() + 1)));
+            respond(out, "204 No Content", null, null, false);
+        } else {
+            respond(out, "405 Method Not Allowed", null, null, false);
+        }
+    }
+
+    private long currentVersion() {
+        // A reset carries the current version as its cursor
+        return mSongs.changesSince(SongsChangeSet.NO_CURSOR).getCursor();
+    }
+
+    private static boolean acceptsGzip(Map<String, String> headers) {
+        String acceptEncoding = headers.get("accept-encoding");
+        return acceptEncoding != null && acceptEncoding.contains("gzip");
+    }
+
+    private void respond(OutputStream out, String status, String eTag, byte[] body, boolean gzip)
+            throws IOException {
+        if (body != null && gzip) {
+            ByteArrayOutputStream zipped = new ByteArrayOutputStream();
+            GZIPOutputStream zipper = new GZIPOutputStream(zipped);
+            zipper.write(body);
+            zipper.close();
+            body = zipped.toByteArray();
+            mGzippedCount.incrementAndGet();
+        }
+        StringBuilder head = new StringBuilder("HTTP/1.1 ").append(status).append("\r\n");
+        head.append("Connection: close\r\n");
+        if (eTag != null) {
+            head.append("ETag: ").append(eTag).append("\r\n");
+        }
+        if (body != null) {
+            head.append("Content-Type: application/json; charset=utf-8\r\n");
+            if (gzip) {
+                head.append("Content-Encoding: gzip\r\n");
+            }
+        }
+        head.append("Content-Length: ").append(body != null ? body.length : 0).append("\r\n");
+        head.append("\r\n");
+        out.write(head.toString().getBytes(Charsets.ISO_8859_1));
+        if (body != null) {
+            out.write(body);
+        }
+        out.flush();
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        for (int b = in.read(); b != '\n'; b = in.read()) {
+            if (b == -1) {
+                throw new IOException("Connection closed mid-request");
+            }
+            if (b != '\r') {
+                line.write(b);
+            }
+        }
+        return new String(line.toByteArray(), Charsets.ISO_8859_1);
+    }
+}
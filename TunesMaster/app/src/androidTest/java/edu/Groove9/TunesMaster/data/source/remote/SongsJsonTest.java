@@ -0,0 +1,61 @@
+/*
+ * Copyright 2016, The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.Groove9.TunesMaster.data.source.remote;
+
+import android.support.test.runner.AndroidJUnit4;
+import android.test.suitebuilder.annotation.SmallTest;
+
+import com.google.common.base.Charsets;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.IOException;
+
+/**
+ * Tests that {@link SongsJson} reports malformed documents as {@link IOException}s. It runs on a
+ * device, for the platform's {@link android.util.JsonReader}.
+ */
+@RunWith(AndroidJUnit4.class)
+@SmallTest
+public class SongsJsonTest {
+
+    @Test(expected = IOException.class)
+    public void changeSetWithTextCursor_isAnIOException() throws Exception {
+        SongsJson.readChangeSet(bytes("{\"cursor\": \"yesterday\"}"));
+    }
+
+    @Test(expected = IOException.class)
+    public void changeSetWithANegativeCursor_isAnIOException() throws Exception {
+        // Rejected by SongsChangeSet itself
+        SongsJson.readChangeSet(bytes("{\"cursor\": -5}"));
+    }
+
+    @Test(expected = IOException.class)
+    public void catalogThatIsNotAnArray_isAnIOException() throws Exception {
+        SongsJson.readSongs(bytes("{\"id\": \"1\"}"));
+    }
+
+    @Test(expected = IOException.class)
+    public void songWithAnObjectTitle_isAnIOException() throws Exception {
+        SongsJson.readSong(bytes("{\"id\": \"1\", \"source\": \"s\", \"title\": {}}"));
+    }
+
+    private static byte[] bytes(String json) {
+        return json.getBytes(Charsets.UTF_8);
+    }
+}
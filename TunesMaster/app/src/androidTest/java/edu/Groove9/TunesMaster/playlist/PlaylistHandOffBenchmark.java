@@ -0,0 +1,132 @@
+/*
+ * Copyright 2016, The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.Groove9.TunesMaster.playlist;
+
+import android.content.Intent;
+import android.net.Uri;
+import android.os.Parcel;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.test.suitebuilder.annotation.LargeTest;
+import android.util.Log;
+
+import edu.Groove9.TunesMaster.playlist.domain.model.Playlist;
+import edu.Groove9.TunesMaster.playlist.domain.model.Song;
+import edu.Groove9.TunesMaster.songplayer.SongPlayerActivity;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Compares writing a 10k-song {@link Playlist} to a parcel as a {@link java.io.Serializable}, as it
+ * used to be handed over in an Intent, and as a {@link android.os.Parcelable}: size of the parcel
+ * and time to write and read it back. Either is well over the Binder transaction limit, so the
+ * Intent that hands the playlist to the player has to stay small on its own.
+ */
+@RunWith(AndroidJUnit4.class)
+@LargeTest
+public class PlaylistHandOffBenchmark {
+
+    private static final String TAG = "PlaylistHandOff";
+
+    private static final int PLAYLIST_SIZE = 10000;
+
+    private static final int ITERATIONS = 10;
+
+    /**
+     * Well under the 1MB Binder transaction buffer, which the whole process shares.
+     */
+    private static final int MAX_INTENT_BYTES = 500 * 1024;
+
+    private static final Uri SOURCE = Uri.parse("https://www.youtube.com/watch?v=4PDJcw9oJt0");
+
+    private Playlist mPlaylist;
+
+    @Before
+    public void setup() {
+        List<Song> songs = new ArrayList<>(PLAYLIST_SIZE);
+        for (int i = 0; i < PLAYLIST_SIZE; i++) {
+            songs.add(new Song("Song " + i, "A test song", SOURCE));
+        }
+        mPlaylist = new Playlist(songs, songs.get(PLAYLIST_SIZE / 2));
+    }
+
+    @Test
+    public void parcelableIsSmallerAndFasterThanSerializable() {
+        long[] serializableNanos = new long[ITERATIONS];
+        long[] parcelableNanos = new long[ITERATIONS];
+        int serializableBytes = 0;
+        int parcelableBytes = 0;
+        for (int i = 0; i < ITERATIONS; i++) {
+            Parcel parcel = Parcel.obtain();
+            long start = System.nanoTime();
+            parcel.writeSerializable(mPlaylist);
+            parcel.setDataPosition(0);
+            Playlist serialized = (Playlist) parcel.readSerializable();
+            serializableNanos[i] = System.nanoTime() - start;
+            serializableBytes = parcel.dataSize();
+            parcel.recycle();
+            assertThat(serialized.getSongs().size(), is(PLAYLIST_SIZE));
+
+            parcel = Parcel.obtain();
+            start = System.nanoTime();
+            parcel.writeParcelable(mPlaylist, 0);
+            parcel.setDataPosition(0);
+            Playlist parcelled = parcel.readParcelable(Playlist.class.getClassLoader());
+            parcelableNanos[i] = System.nanoTime() - start;
+            parcelableBytes = parcel.dataSize();
+            parcel.recycle();
+            assertThat(parcelled.getSongs(), is(mPlaylist.getSongs()));
+            assertThat(parcelled.getCurrentSong(), is(mPlaylist.getCurrentSong()));
+        }
+        Arrays.sort(serializableNanos);
+        Arrays.sort(parcelableNanos);
+        long serializableMedian = serializableNanos[ITERATIONS / 2];
+        long parcelableMedian = parcelableNanos[ITERATIONS / 2];
+
+        Log.i(TAG, PLAYLIST_SIZE + " songs: Serializable " + serializableBytes + " bytes, "
+                + TimeUnit.NANOSECONDS.toMillis(serializableMedian) + "ms; Parcelable "
+                + parcelableBytes + " bytes, " + TimeUnit.NANOSECONDS.toMillis(parcelableMedian)
+                + "ms");
+        assertTrue(parcelableBytes < serializableBytes);
+        assertTrue(parcelableMedian < serializableMedian);
+    }
+
+    @Test
+    public void playerIntent_staysUnderTheBinderLimit() {
+        Intent intent = SongPlayerActivity.newIntent(InstrumentationRegistry.getTargetContext(),
+                mPlaylist);
+
+        Parcel parcel = Parcel.obtain();
+        intent.writeToParcel(parcel, 0);
+        int intentBytes = parcel.dataSize();
+        parcel.recycle();
+
+        Log.i(TAG, PLAYLIST_SIZE + " songs: player Intent " + intentBytes + " bytes");
+        assertTrue(intentBytes < MAX_INTENT_BYTES);
+    }
+}
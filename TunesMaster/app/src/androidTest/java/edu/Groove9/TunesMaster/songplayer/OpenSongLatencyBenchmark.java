@@ -0,0 +1,157 @@
+/*
+ * Copyright 2016, The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.Groove9.TunesMaster.songplayer;
+
+import android.net.Uri;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.test.suitebuilder.annotation.LargeTest;
+import android.util.Log;
+
+import edu.Groove9.TunesMaster.UseCase;
+import edu.Groove9.TunesMaster.UseCaseHandler;
+import edu.Groove9.TunesMaster.UseCasePriorityScheduler;
+import edu.Groove9.TunesMaster.addedittask.domain.usecase.GetTask;
+import edu.Groove9.TunesMaster.data.source.SongsRepository;
+import edu.Groove9.TunesMaster.data.source.local.SongsLocalDataSource;
+import edu.Groove9.TunesMaster.data.source.remote.SongsRemoteDataSource;
+import edu.Groove9.TunesMaster.playlist.domain.model.Song;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Compares the latency of the GetTask load done by {@link SongPlayerPresenter} when opening a
+ * cached song, delivered inline versus through the pool and back to the main thread.
+ * <p>
+ * Like the presenter, each load is started on the main thread: the inline path is only taken
+ * there.
+ */
+@RunWith(AndroidJUnit4.class)
+@LargeTest
+public class OpenSongLatencyBenchmark {
+
+    private static final String TAG = "OpenSongLatency";
+
+    private static final int WARMUP_ITERATIONS = 50;
+
+    private static final int ITERATIONS = 500;
+
+    private static final Uri SOURCE = Uri.parse("https://www.youtube.com/watch?v=4PDJcw9oJt0");
+
+    private SongsRepository mSongsRepository;
+
+    private UseCaseHandler mUseCaseHandler;
+
+    private Song mSong;
+
+    @Before
+    public void setup() {
+        SongsRepository.destroyInstance();
+        mSongsRepository = SongsRepository.getInstance(SongsRemoteDataSource.getInstance(),
+                SongsLocalDataSource.getInstance(InstrumentationRegistry.getTargetContext()));
+        mSong = new Song("title", "description", SOURCE);
+        mSongsRepository.saveSong(mSong); // Also puts the song in the repository cache
+
+        // The scheduler delivers responses through the main thread's Choreographer
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                mUseCaseHandler = new UseCaseHandler(new UseCasePriorityScheduler());
+            }
+        });
+    }
+
+    @After
+    public void cleanUp() {
+        mSongsRepository.deleteAllSongs();
+        SongsRepository.destroyInstance();
+    }
+
+    @Test
+    public void inlineDeliveryIsFasterThanDoubleHop() throws InterruptedException {
+        GetTask inline = new GetTask(mSongsRepository);
+        GetTask doubleHop = new GetTask(mSongsRepository) {
+            @Override
+            protected boolean executeFromMemory(RequestValues values,
+                                                UseCaseCallback<ResponseValue> callback) {
+                return false;
+            }
+        };
+
+        long inlineMedian = medianOpenNanos(inline, true);
+        long doubleHopMedian = medianOpenNanos(doubleHop, false);
+
+        Log.i(TAG, "median open latency: inline=" + TimeUnit.NANOSECONDS.toMicros(inlineMedian)
+                + "us, double hop=" + TimeUnit.NANOSECONDS.toMicros(doubleHopMedian) + "us");
+        assertTrue(inlineMedian < doubleHopMedian);
+    }
+
+    private long medianOpenNanos(GetTask getTask, boolean inline) throws InterruptedException {
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            openSong(getTask, inline);
+        }
+        long[] samples = new long[ITERATIONS];
+        for (int i = 0; i < ITERATIONS; i++) {
+            samples[i] = openSong(getTask, inline);
+        }
+        Arrays.sort(samples);
+        return samples[ITERATIONS / 2];
+    }
+
+    /**
+     * Starts the load on the main thread and waits for its response here, since the main thread
+     * must stay free to deliver a response that went through the pool.
+     */
+    private long openSong(final GetTask getTask, boolean inline) throws InterruptedException {
+        final CountDownLatch loaded = new CountDownLatch(1);
+        final AtomicBoolean deliveredInline = new AtomicBoolean();
+        long start = System.nanoTime();
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                mUseCaseHandler.execute(getTask, new GetTask.RequestValues(mSong.getId()),
+                        new UseCase.UseCaseCallback<GetTask.ResponseValue>() {
+                            @Override
+                            public void onSuccess(GetTask.ResponseValue response) {
+                                loaded.countDown();
+                            }
+
+                            @Override
+                            public void onError() {
+                            }
+                        });
+                deliveredInline.set(loaded.getCount() == 0);
+            }
+        });
+        assertTrue(loaded.await(1, TimeUnit.SECONDS));
+        long elapsed = System.nanoTime() - start;
+        assertThat(deliveredInline.get(), is(inline));
+        return elapsed;
+    }
+}
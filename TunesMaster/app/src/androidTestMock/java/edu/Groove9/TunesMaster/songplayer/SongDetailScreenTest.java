@@ -18,6 +18,7 @@ package edu.Groove9.TunesMaster.songplayer;
 
 import android.app.Activity;
 import android.content.Intent;
+import android.os.Parcelable;
 import android.support.test.rule.ActivityTestRule;
 import android.support.test.runner.AndroidJUnit4;
 import android.test.suitebuilder.annotation.LargeTest;
@@ -89,7 +90,7 @@ public class SongDetailScreenTest {
         // Lazily start the Activity from the ActivityTestRule this time to inject the start Intent
         Intent startIntent = new Intent();
         Playlist playlist = new Playlist(new ArrayList<>(Arrays.asList(song)), song);
-        startIntent.putExtra("edu.Groove9.TunesMaster.playlist.domain.model.Playlist", playlist);
+        startIntent.putExtra(SongPlayerActivity.EXTRA_PLAYLIST, (Parcelable) playlist);
         mTaskDetailActivityTestRule.launchActivity(startIntent);
     }
 
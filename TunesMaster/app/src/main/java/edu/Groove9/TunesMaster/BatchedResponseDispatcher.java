@@ -0,0 +1,101 @@
+/*
+ * Copyright 2016, The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.Groove9.TunesMaster;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.view.Choreographer;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Delivers use case responses on the main thread, batching every response that arrives within
+ * one frame into a single pass run at the start of the next frame.
+ * <p>
+ * Worker threads only append to a lock-free queue; at most one frame callback is outstanding at
+ * any time. Since {@link Choreographer} stops ticking while the display is off, a delayed
+ * {@link Handler} message acts as a fallback so responses are never held back indefinitely.
+ */
+public class BatchedResponseDispatcher implements Choreographer.FrameCallback, Executor {
+
+    /**
+     * Upper bound on how long a response may wait for a frame, roughly two frames at 60Hz.
+     */
+    private static final long FALLBACK_FLUSH_DELAY_MILLIS = 32;
+
+    private final ConcurrentLinkedQueue<Runnable> mPendingDeliveries =
+            new ConcurrentLinkedQueue<>();
+
+    private final AtomicBoolean mFlushScheduled = new AtomicBoolean(false);
+
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+
+    private final Choreographer mChoreographer;
+
+    private final Runnable mFallbackFlush = new Runnable() {
+        @Override
+        public void run() {
+            mChoreographer.removeFrameCallback(BatchedResponseDispatcher.this);
+            flush();
+        }
+    };
+
+    /**
+     * Must be created on the main thread so the main thread's {@link Choreographer} is used.
+     */
+    public BatchedResponseDispatcher() {
+        mChoreographer = Choreographer.getInstance();
+    }
+
+    /**
+     * Queues {@code delivery} to run on the main thread at the next frame. Safe to call from any
+     * thread.
+     */
+    public void dispatch(Runnable delivery) {
+        mPendingDeliveries.add(delivery);
+        if (mFlushScheduled.compareAndSet(false, true)) {
+            mChoreographer.postFrameCallback(this);
+            mHandler.postDelayed(mFallbackFlush, FALLBACK_FLUSH_DELAY_MILLIS);
+        }
+    }
+
+    /**
+     * Same as {@link #dispatch(Runnable)}.
+     */
+    @Override
+    public void execute(Runnable delivery) {
+        dispatch(delivery);
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        mHandler.removeCallbacks(mFallbackFlush);
+        flush();
+    }
+
+    private void flush() {
+        // Clear the flag first: anything queued while draining either runs in this pass or
+        // schedules the next one.
+        mFlushScheduled.set(false);
+        Runnable delivery;
+        while ((delivery = mPendingDeliveries.poll()) != null) {
+            delivery.run();
+        }
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright 2016, The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.Groove9.TunesMaster;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+/**
+ * Measures the cold start time of the app, from the creation of {@link TunesMasterApplication} to
+ * the first songs shown by the playlist, and logs it under the "ColdStart" tag.
+ * <p>
+ * Only used from the main thread.
+ */
+public final class ColdStartTimer {
+
+    private static final String TAG = "ColdStart";
+
+    private static final long NOT_MEASURED = -1;
+
+    private static long sStartedAt = NOT_MEASURED;
+
+    private static long sColdStartMillis = NOT_MEASURED;
+
+    private ColdStartTimer() {}
+
+    static void start() {
+        sStartedAt = SystemClock.uptimeMillis();
+    }
+
+    /**
+     * Records the cold start time, the first time the playlist shows songs in this process.
+     */
+    public static void onPlaylistShown() {
+        if (sStartedAt == NOT_MEASURED || sColdStartMillis != NOT_MEASURED) {
+            return;
+        }
+        sColdStartMillis = SystemClock.uptimeMillis() - sStartedAt;
+        Log.i(TAG, "first playlist shown " + sColdStartMillis + "ms after application start");
+    }
+
+    /**
+     * @return the time from application start to the first playlist, or -1 if it isn't known yet
+     */
+    public static long getColdStartMillis() {
+        return sColdStartMillis;
+    }
+}
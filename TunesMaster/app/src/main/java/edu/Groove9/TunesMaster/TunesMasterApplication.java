@@ -0,0 +1,61 @@
+/*
+ * Copyright 2016, The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.Groove9.TunesMaster;
+
+import android.app.Application;
+
+import edu.Groove9.TunesMaster.data.source.SongsRepository;
+import edu.Groove9.TunesMaster.playlist.PlaylistFilterType;
+import edu.Groove9.TunesMaster.playlist.PlaylistPresenter;
+import edu.Groove9.TunesMaster.playlist.domain.usecase.GetTasks;
+
+/**
+ * Warms the {@link SongsRepository} up at launch and forwards process-wide memory signals to its
+ * cache.
+ */
+public class TunesMasterApplication extends Application {
+
+    private static final UseCase.UseCaseCallback<GetTasks.ResponseValue> IGNORE_RESPONSE =
+            new UseCase.UseCaseCallback<GetTasks.ResponseValue>() {
+                @Override
+                public void onSuccess(GetTasks.ResponseValue response) {
+                }
+
+                @Override
+                public void onError() {
+                }
+            };
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        ColdStartTimer.start();
+
+        // Open the database and read the first page on the use case pool while the first activity
+        // inflates, so the playlist's first page finds both warm. Reading more would only hold
+        // up the pages the playlist asks for.
+        Injection.provideUseCaseHandler().execute(Injection.provideGetTasks(this),
+                new GetTasks.RequestValues(false, PlaylistFilterType.ALL_TASKS, 0,
+                        PlaylistPresenter.PAGE_SIZE), IGNORE_RESPONSE);
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        Injection.provideSongsRepository(this).onTrimMemory(level);
+    }
+}
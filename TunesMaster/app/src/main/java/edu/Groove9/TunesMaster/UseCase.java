@@ -18,38 +18,52 @@ package edu.Groove9.TunesMaster;
 
 /**
  * Use cases are the entry points to the domain layer.
+ * <p>
+ * A use case holds no per-invocation state: the request values and the callback of each
+ * execution are passed to {@link #executeUseCase(RequestValues, UseCaseCallback)} directly, so a
+ * single instance can run any number of times concurrently. Implementations must keep it that way
+ * and only hold immutable dependencies in fields.
  *
  * @param <Q> the request type
  * @param <P> the response type
  */
 public abstract class UseCase<Q extends UseCase.RequestValues, P extends UseCase.ResponseValue> {
 
-    private Q mRequestValues;
-
-    private UseCaseCallback<P> mUseCaseCallback;
-
-    public void setRequestValues(Q requestValues) {
-        mRequestValues = requestValues;
+    void run(Q requestValues, UseCaseCallback<P> useCaseCallback) {
+        executeUseCase(requestValues, useCaseCallback);
     }
 
-    public Q getRequestValues() {
-        return mRequestValues;
-    }
+    protected abstract void executeUseCase(Q requestValues, UseCaseCallback<P> callback);
 
-    public UseCaseCallback<P> getUseCaseCallback() {
-        return mUseCaseCallback;
+    /**
+     * Fast path for requests that can be answered from memory. Implementations either invoke
+     * {@code callback} synchronously and return true, or return false without invoking it so the
+     * use case is scheduled as usual.
+     * <p>
+     * Only tried when {@link UseCaseHandler#execute} is called on the main thread, so it must
+     * never block or touch disk or network.
+     */
+    protected boolean executeFromMemory(Q requestValues, UseCaseCallback<P> callback) {
+        return false;
     }
 
-    public void setUseCaseCallback(UseCaseCallback<P> useCaseCallback) {
-        mUseCaseCallback = useCaseCallback;
+    /**
+     * Scheduling lane for this use case. Override to return {@link Priority#INTERACTIVE} for use
+     * cases that respond directly to a user gesture.
+     */
+    public Priority getPriority() {
+        return Priority.NORMAL;
     }
 
-    void run() {
-       executeUseCase(mRequestValues);
+    /**
+     * Lanes used by {@link UseCaseScheduler}s that support prioritisation. Queued
+     * {@link #INTERACTIVE} work always runs ahead of queued {@link #NORMAL} work.
+     */
+    public enum Priority {
+        INTERACTIVE,
+        NORMAL
     }
 
-    protected abstract void executeUseCase(Q requestValues);
-
     /**
      * Data passed to a request.
      */
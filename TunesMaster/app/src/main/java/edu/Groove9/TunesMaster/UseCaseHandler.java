@@ -16,11 +16,16 @@
 
 package edu.Groove9.TunesMaster;
 
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
 
-import edu.Groove9.TunesMaster.songplayer.domain.usecase.PlayPauseSong;
-import edu.Groove9.TunesMaster.songplayer.domain.usecase.RepeatSong;
 import edu.Groove9.TunesMaster.util.EspressoIdlingResource;
 
+import java.util.HashMap;
+import java.util.Map;
+
 /**
  * Runs {@link UseCase}s using a {@link UseCaseScheduler}.
  */
@@ -30,14 +35,59 @@ public class UseCaseHandler {
 
     private final UseCaseScheduler mUseCaseScheduler;
 
+    /**
+     * Latest outstanding request per coalescing key.
+     */
+    private final Map<String, UseCaseRequest> mLatestRequests = new HashMap<>();
+
     public UseCaseHandler(UseCaseScheduler useCaseScheduler) {
         mUseCaseScheduler = useCaseScheduler;
     }
 
-    public <T extends UseCase.RequestValues, R extends UseCase.ResponseValue> void execute(
+    /**
+     * Schedules {@code useCase} in the lane given by {@link UseCase#getPriority()}, or runs it
+     * inline if called on the response thread and {@link UseCase#executeFromMemory} can answer it.
+     *
+     * @return a handle that can be used to cancel the request
+     */
+    public <T extends UseCase.RequestValues, R extends UseCase.ResponseValue> UseCaseRequest execute(
             final UseCase<T, R> useCase, T values, UseCase.UseCaseCallback<R> callback) {
-        useCase.setRequestValues(values);
-        useCase.setUseCaseCallback(new UiCallbackWrapper(callback, this));
+        return schedule(useCase, values, callback, null);
+    }
+
+    /**
+     * Schedules {@code useCase} like {@link #execute(UseCase, UseCase.RequestValues,
+     * UseCase.UseCaseCallback)}, but supersedes any earlier request made with the same
+     * {@code coalescingKey}: if it is still queued it never runs, and if it is already running its
+     * result is dropped. Use this for idempotent "go to the latest state" requests.
+     *
+     * @return a handle that can be used to cancel the request
+     */
+    public <T extends UseCase.RequestValues, R extends UseCase.ResponseValue> UseCaseRequest execute(
+            final UseCase<T, R> useCase, T values, UseCase.UseCaseCallback<R> callback,
+            @NonNull String coalescingKey) {
+        return schedule(useCase, values, callback, checkNotNull(coalescingKey));
+    }
+
+    private <T extends UseCase.RequestValues, R extends UseCase.ResponseValue> UseCaseRequest schedule(
+            final UseCase<T, R> useCase, final T values, UseCase.UseCaseCallback<R> callback,
+            @Nullable final String coalescingKey) {
+        final UseCaseRequest request = new UseCaseRequest();
+        if (coalescingKey != null) {
+            supersede(coalescingKey, request);
+        }
+
+        // Answer inline when the use case can do so from memory, skipping both the hop to the
+        // pool and the hop back to the main thread. Only valid when already on that thread.
+        if (mUseCaseScheduler.isResponseThread()
+                && useCase.executeFromMemory(values, new CancellableCallback<>(callback, request))) {
+            if (coalescingKey != null) {
+                release(coalescingKey, request);
+            }
+            return request;
+        }
+
+        final UseCase.UseCaseCallback<R> uiCallback = new UiCallbackWrapper<>(callback, this, request);
 
         // The network request might be handled in a different thread so make sure
         // Espresso knows
@@ -48,7 +98,12 @@ public class UseCaseHandler {
             @Override
             public void run() {
 
-                useCase.run();
+                if (!request.isCancelled()) {
+                    useCase.run(values, uiCallback);
+                }
+                if (coalescingKey != null) {
+                    release(coalescingKey, request);
+                }
                 // This callback may be called twice, once for the cache and once for loading
                 // the data from the server API, so we check before decrementing, otherwise
                 // it throws "Counter has been corrupted!" exception.
@@ -56,7 +111,26 @@ public class UseCaseHandler {
                     EspressoIdlingResource.decrement(); // Set app as idle.
                 }
             }
-        });
+        }, useCase.getPriority(), request);
+        return request;
+    }
+
+    private void supersede(String coalescingKey, UseCaseRequest request) {
+        UseCaseRequest previous;
+        synchronized (mLatestRequests) {
+            previous = mLatestRequests.put(coalescingKey, request);
+        }
+        if (previous != null) {
+            previous.cancel();
+        }
+    }
+
+    private void release(String coalescingKey, UseCaseRequest request) {
+        synchronized (mLatestRequests) {
+            if (mLatestRequests.get(coalescingKey) == request) {
+                mLatestRequests.remove(coalescingKey);
+            }
+        }
     }
 
     public <V extends UseCase.ResponseValue> void notifyResponse(final V response,
@@ -69,6 +143,12 @@ public class UseCaseHandler {
         mUseCaseScheduler.onError(useCaseCallback);
     }
 
+    /**
+     * @return queue depth and latency figures of the underlying {@link UseCaseScheduler}
+     */
+    public UseCaseSchedulerStats getStats() {
+        return mUseCaseScheduler.getStats();
+    }
 
     private static final class UiCallbackWrapper<V extends UseCase.ResponseValue> implements
             UseCase.UseCaseCallback<V> {
@@ -76,8 +156,8 @@ public class UseCaseHandler {
         private final UseCaseHandler mUseCaseHandler;
 
         public UiCallbackWrapper(UseCase.UseCaseCallback<V> callback,
-                UseCaseHandler useCaseHandler) {
-            mCallback = callback;
+                UseCaseHandler useCaseHandler, UseCaseRequest request) {
+            mCallback = new CancellableCallback<>(callback, request);
             mUseCaseHandler = useCaseHandler;
         }
 
@@ -92,9 +172,37 @@ public class UseCaseHandler {
         }
     }
 
+    /**
+     * Drops the result if the request was cancelled before it reached the UI thread.
+     */
+    private static final class CancellableCallback<V extends UseCase.ResponseValue> implements
+            UseCase.UseCaseCallback<V> {
+        private final UseCase.UseCaseCallback<V> mCallback;
+        private final UseCaseRequest mRequest;
+
+        public CancellableCallback(UseCase.UseCaseCallback<V> callback, UseCaseRequest request) {
+            mCallback = callback;
+            mRequest = request;
+        }
+
+        @Override
+        public void onSuccess(V response) {
+            if (!mRequest.isCancelled()) {
+                mCallback.onSuccess(response);
+            }
+        }
+
+        @Override
+        public void onError() {
+            if (!mRequest.isCancelled()) {
+                mCallback.onError();
+            }
+        }
+    }
+
     public static UseCaseHandler getInstance() {
         if (INSTANCE == null) {
-            INSTANCE = new UseCaseHandler(new UseCaseThreadPoolScheduler());
+            INSTANCE = new UseCaseHandler(new UseCasePriorityScheduler());
         }
         return INSTANCE;
     }
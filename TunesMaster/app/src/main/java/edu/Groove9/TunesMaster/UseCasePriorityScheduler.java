@@ -0,0 +1,270 @@
+/*
+ * Copyright 2016, The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.Groove9.TunesMaster;
+
+import android.os.Looper;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Executes asynchronous tasks using a {@link ThreadPoolExecutor} backed by a priority queue.
+ * <p>
+ * Queued {@link UseCase.Priority#INTERACTIVE} work (play/pause, skip, volume...) always runs ahead
+ * of queued {@link UseCase.Priority#NORMAL} work (list and statistics loads). Interactive
+ * submissions are never throttled since they are bounded by the rate of user input.
+ * <p>
+ * At most {@link #QUEUE_CAPACITY} {@link UseCase.Priority#NORMAL} submissions are admitted at a
+ * time. When the lane is full, queued work whose {@link UseCaseRequest} was cancelled is dropped to
+ * make room. If there's still no room, a submission made from another thread waits for a slot,
+ * while one made on the response thread or on one of the pool's own workers is admitted over
+ * capacity. The main thread is never blocked, and neither is a worker: slots are only freed by
+ * workers running queued work, so workers waiting for one could wait forever.
+ * <p>
+ * Responses are handed to a {@link BatchedResponseDispatcher}, so callbacks that complete within
+ * the same frame are delivered in one main thread pass.
+ */
+public class UseCasePriorityScheduler implements UseCaseScheduler {
+
+    public static final int POOL_SIZE = 4;
+
+    public static final int QUEUE_CAPACITY = 64;
+
+    public static final int TIMEOUT = 30;
+
+    private final Executor mResponseDispatcher;
+
+    private final Semaphore mNormalPermits;
+
+    private final AtomicLong mSequence = new AtomicLong();
+
+    private int mMaxQueueDepth;
+
+    private long mCompletedCount;
+
+    private long mTotalWaitNanos;
+
+    private long mMaxWaitNanos;
+
+    private long mTotalRunNanos;
+
+    ThreadPoolExecutor mThreadPoolExecutor;
+
+    public UseCasePriorityScheduler() {
+        this(new BatchedResponseDispatcher(), QUEUE_CAPACITY);
+    }
+
+    /**
+     * @param responseDispatcher runs the deliveries of responses on the response thread
+     * @param normalCapacity     how many {@link UseCase.Priority#NORMAL} submissions are admitted
+     *                           at a time
+     */
+    UseCasePriorityScheduler(@NonNull Executor responseDispatcher, int normalCapacity) {
+        mResponseDispatcher = responseDispatcher;
+        mNormalPermits = new Semaphore(normalCapacity);
+        // The queue is unbounded, so the pool never grows past its core size: keep both equal.
+        mThreadPoolExecutor = new ThreadPoolExecutor(POOL_SIZE, POOL_SIZE, TIMEOUT,
+                TimeUnit.SECONDS, new PriorityBlockingQueue<Runnable>(), new ThreadFactory() {
+                    @Override
+                    public Thread newThread(@NonNull Runnable runnable) {
+                        return new WorkerThread(runnable);
+                    }
+                });
+        mThreadPoolExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    @Override
+    public void execute(Runnable runnable) {
+        execute(runnable, UseCase.Priority.NORMAL);
+    }
+
+    @Override
+    public void execute(Runnable runnable, UseCase.Priority priority) {
+        execute(runnable, priority, null);
+    }
+
+    @Override
+    public void execute(Runnable runnable, UseCase.Priority priority,
+                        @Nullable UseCaseRequest request) {
+        boolean holdsPermit = false;
+        if (priority != UseCase.Priority.INTERACTIVE) {
+            holdsPermit = mNormalPermits.tryAcquire();
+            if (!holdsPermit) {
+                dropCancelled();
+                holdsPermit = mNormalPermits.tryAcquire();
+            }
+            if (!holdsPermit && !isResponseThread() && !isWorkerThread()) {
+                mNormalPermits.acquireUninterruptibly();
+                holdsPermit = true;
+            }
+        }
+        mThreadPoolExecutor.execute(new PrioritizedRunnable(runnable, priority, request,
+                mSequence.getAndIncrement(), holdsPermit));
+        recordQueueDepth(mThreadPoolExecutor.getQueue().size());
+    }
+
+    /**
+     * Takes the queued work of cancelled requests off the queue, releasing its slots. It's still
+     * run, on the calling thread, since a cancelled request only has bookkeeping left to do.
+     */
+    private void dropCancelled() {
+        List<Runnable> dropped = new ArrayList<>();
+        // The iterator is a snapshot: a worker may take an entry before it can be removed
+        Iterator<Runnable> queued = mThreadPoolExecutor.getQueue().iterator();
+        while (queued.hasNext()) {
+            Runnable runnable = queued.next();
+            if (((PrioritizedRunnable) runnable).isCancelled()
+                    && mThreadPoolExecutor.remove(runnable)) {
+                dropped.add(runnable);
+            }
+        }
+        for (Runnable runnable : dropped) {
+            runnable.run();
+        }
+    }
+
+    @Override
+    public <V extends UseCase.ResponseValue> void notifyResponse(final V response,
+            final UseCase.UseCaseCallback<V> useCaseCallback) {
+        mResponseDispatcher.execute(new Runnable() {
+            @Override
+            public void run() {
+                useCaseCallback.onSuccess(response);
+            }
+        });
+    }
+
+    @Override
+    public <V extends UseCase.ResponseValue> void onError(
+            final UseCase.UseCaseCallback<V> useCaseCallback) {
+        mResponseDispatcher.execute(new Runnable() {
+            @Override
+            public void run() {
+                useCaseCallback.onError();
+            }
+        });
+    }
+
+    @Override
+    public boolean isResponseThread() {
+        return Looper.myLooper() == Looper.getMainLooper();
+    }
+
+    private boolean isWorkerThread() {
+        Thread thread = Thread.currentThread();
+        return thread instanceof WorkerThread && ((WorkerThread) thread).getScheduler() == this;
+    }
+
+    @Override
+    public synchronized UseCaseSchedulerStats getStats() {
+        return new UseCaseSchedulerStats(mThreadPoolExecutor.getQueue().size(), mMaxQueueDepth,
+                mCompletedCount, TimeUnit.NANOSECONDS.toMillis(mTotalWaitNanos),
+                TimeUnit.NANOSECONDS.toMillis(mMaxWaitNanos),
+                TimeUnit.NANOSECONDS.toMillis(mTotalRunNanos));
+    }
+
+    private synchronized void recordQueueDepth(int queueDepth) {
+        mMaxQueueDepth = Math.max(mMaxQueueDepth, queueDepth);
+    }
+
+    private synchronized void recordCompletion(long waitNanos, long runNanos) {
+        mCompletedCount++;
+        mTotalWaitNanos += waitNanos;
+        mMaxWaitNanos = Math.max(mMaxWaitNanos, waitNanos);
+        mTotalRunNanos += runNanos;
+    }
+
+    /**
+     * A thread of the pool, so that submissions made from queued work can be told apart.
+     */
+    private final class WorkerThread extends Thread {
+
+        WorkerThread(Runnable runnable) {
+            super(runnable, "use-case-worker");
+        }
+
+        UseCasePriorityScheduler getScheduler() {
+            return UseCasePriorityScheduler.this;
+        }
+    }
+
+    /**
+     * Orders queued work by lane first, then by submission order within a lane.
+     */
+    private final class PrioritizedRunnable implements Runnable, Comparable<PrioritizedRunnable> {
+
+        private final Runnable mRunnable;
+
+        private final UseCase.Priority mPriority;
+
+        @Nullable
+        private final UseCaseRequest mRequest;
+
+        private final long mSequenceNumber;
+
+        private final boolean mHoldsPermit;
+
+        private final long mEnqueuedAt = System.nanoTime();
+
+        PrioritizedRunnable(Runnable runnable, UseCase.Priority priority,
+                            @Nullable UseCaseRequest request, long sequenceNumber,
+                            boolean holdsPermit) {
+            mRunnable = runnable;
+            mPriority = priority;
+            mRequest = request;
+            mSequenceNumber = sequenceNumber;
+            mHoldsPermit = holdsPermit;
+        }
+
+        @Override
+        public void run() {
+            long startedAt = System.nanoTime();
+            try {
+                mRunnable.run();
+            } finally {
+                if (mHoldsPermit) {
+                    mNormalPermits.release();
+                }
+                recordCompletion(startedAt - mEnqueuedAt, System.nanoTime() - startedAt);
+            }
+        }
+
+        boolean isCancelled() {
+            return mRequest != null && mRequest.isCancelled();
+        }
+
+        @Override
+        public int compareTo(@NonNull PrioritizedRunnable other) {
+            int byLane = mPriority.compareTo(other.mPriority);
+            if (byLane != 0) {
+                return byLane;
+            }
+            return mSequenceNumber < other.mSequenceNumber ? -1
+                    : (mSequenceNumber == other.mSequenceNumber ? 0 : 1);
+        }
+    }
+}
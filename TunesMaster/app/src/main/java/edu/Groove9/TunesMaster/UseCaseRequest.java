@@ -0,0 +1,36 @@
+/*
+ * Copyright 2016, The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.Groove9.TunesMaster;
+
+/**
+ * Handle returned by {@link UseCaseHandler#execute} for a single use case invocation.
+ * <p>
+ * Cancelling a request that is still queued stops it from running; cancelling a request that is
+ * already running stops its result from being delivered to the callback.
+ */
+public class UseCaseRequest {
+
+    private volatile boolean mCancelled = false;
+
+    public void cancel() {
+        mCancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return mCancelled;
+    }
+}
@@ -16,16 +16,35 @@
 
 package edu.Groove9.TunesMaster;
 
+import android.support.annotation.Nullable;
+
 /**
- * Interface for schedulers, see {@link UseCaseThreadPoolScheduler}.
+ * Interface for schedulers, see {@link UseCasePriorityScheduler}.
  */
 public interface UseCaseScheduler {
 
     void execute(Runnable runnable);
 
+    void execute(Runnable runnable, UseCase.Priority priority);
+
+    /**
+     * Like {@link #execute(Runnable, UseCase.Priority)}, for the work of {@code request}. Once the
+     * request is cancelled, its work may be run ahead of its turn on another thread, so
+     * {@code runnable} must check for cancellation itself.
+     */
+    void execute(Runnable runnable, UseCase.Priority priority, @Nullable UseCaseRequest request);
+
     <V extends UseCase.ResponseValue> void notifyResponse(final V response,
             final UseCase.UseCaseCallback<V> useCaseCallback);
 
     <V extends UseCase.ResponseValue> void onError(
             final UseCase.UseCaseCallback<V> useCaseCallback);
+
+    /**
+     * @return true if the calling thread is the one responses are delivered on, so a response
+     * produced right now may be handed to the callback directly
+     */
+    boolean isResponseThread();
+
+    UseCaseSchedulerStats getStats();
 }
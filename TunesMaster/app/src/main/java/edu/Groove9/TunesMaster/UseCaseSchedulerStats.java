@@ -0,0 +1,87 @@
+/*
+ * Copyright 2016, The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.Groove9.TunesMaster;
+
+/**
+ * Immutable snapshot of the queue depth and latency figures of a {@link UseCaseScheduler}.
+ */
+public final class UseCaseSchedulerStats {
+
+    public static final UseCaseSchedulerStats EMPTY = new UseCaseSchedulerStats(0, 0, 0, 0, 0, 0);
+
+    private final int mQueueDepth;
+
+    private final int mMaxQueueDepth;
+
+    private final long mCompletedCount;
+
+    private final long mTotalWaitMillis;
+
+    private final long mMaxWaitMillis;
+
+    private final long mTotalRunMillis;
+
+    public UseCaseSchedulerStats(int queueDepth, int maxQueueDepth, long completedCount,
+                                 long totalWaitMillis, long maxWaitMillis, long totalRunMillis) {
+        mQueueDepth = queueDepth;
+        mMaxQueueDepth = maxQueueDepth;
+        mCompletedCount = completedCount;
+        mTotalWaitMillis = totalWaitMillis;
+        mMaxWaitMillis = maxWaitMillis;
+        mTotalRunMillis = totalRunMillis;
+    }
+
+    /**
+     * @return the number of use cases currently waiting for a worker thread
+     */
+    public int getQueueDepth() {
+        return mQueueDepth;
+    }
+
+    public int getMaxQueueDepth() {
+        return mMaxQueueDepth;
+    }
+
+    public long getCompletedCount() {
+        return mCompletedCount;
+    }
+
+    /**
+     * @return the mean time, in milliseconds, a use case spent queued before it started running
+     */
+    public long getAverageWaitMillis() {
+        return mCompletedCount == 0 ? 0 : mTotalWaitMillis / mCompletedCount;
+    }
+
+    public long getMaxWaitMillis() {
+        return mMaxWaitMillis;
+    }
+
+    public long getAverageRunMillis() {
+        return mCompletedCount == 0 ? 0 : mTotalRunMillis / mCompletedCount;
+    }
+
+    @Override
+    public String toString() {
+        return "UseCaseSchedulerStats{queueDepth=" + mQueueDepth
+                + ", maxQueueDepth=" + mMaxQueueDepth
+                + ", completed=" + mCompletedCount
+                + ", avgWaitMs=" + getAverageWaitMillis()
+                + ", maxWaitMs=" + mMaxWaitMillis
+                + ", avgRunMs=" + getAverageRunMillis() + "}";
+    }
+}
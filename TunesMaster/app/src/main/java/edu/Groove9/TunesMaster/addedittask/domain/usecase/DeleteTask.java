@@ -36,9 +36,10 @@ public class DeleteTask extends UseCase<DeleteTask.RequestValues, DeleteTask.Res
     }
 
     @Override
-    protected void executeUseCase(final RequestValues values) {
+    protected void executeUseCase(final RequestValues values,
+                                  final UseCaseCallback<ResponseValue> callback) {
         mSongsRepository.deleteSong(values.getTaskId());
-        getUseCaseCallback().onSuccess(new ResponseValue());
+        callback.onSuccess(new ResponseValue());
     }
 
     public static final class RequestValues implements UseCase.RequestValues {
@@ -37,25 +37,41 @@ public class GetTask extends UseCase<GetTask.RequestValues, GetTask.ResponseValu
     }
 
     @Override
-    protected void executeUseCase(final RequestValues values) {
+    protected void executeUseCase(final RequestValues values,
+                                  final UseCaseCallback<ResponseValue> callback) {
         mSongsRepository.getSong(values.getTaskId(), new SongsDataSource.GetSongCallback() {
             @Override
             public void onSongLoaded(Song song) {
                 if (song != null) {
                     ResponseValue responseValue = new ResponseValue(song);
-                    getUseCaseCallback().onSuccess(responseValue);
+                    callback.onSuccess(responseValue);
                 } else {
-                    getUseCaseCallback().onError();
+                    callback.onError();
                 }
             }
 
             @Override
             public void onDataNotAvailable() {
-                getUseCaseCallback().onError();
+                callback.onError();
             }
         });
     }
 
+    @Override
+    protected boolean executeFromMemory(RequestValues values,
+                                        UseCaseCallback<ResponseValue> callback) {
+        Song song = mSongsRepository.getCachedSong(values.getTaskId());
+        if (song != null) {
+            callback.onSuccess(new ResponseValue(song));
+            return true;
+        }
+        if (mSongsRepository.isCachedAsMissing(values.getTaskId())) {
+            callback.onError();
+            return true;
+        }
+        return false;
+    }
+
     public static final class RequestValues implements UseCase.RequestValues {
 
         private final String mTaskId;
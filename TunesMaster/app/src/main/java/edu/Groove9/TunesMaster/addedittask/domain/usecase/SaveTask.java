@@ -36,11 +36,12 @@ public class SaveTask extends UseCase<SaveTask.RequestValues, SaveTask.ResponseV
     }
 
     @Override
-    protected void executeUseCase(final RequestValues values) {
+    protected void executeUseCase(final RequestValues values,
+                                  final UseCaseCallback<ResponseValue> callback) {
         Song song = values.getTask();
         mSongsRepository.saveSong(song);
 
-        getUseCaseCallback().onSuccess(new ResponseValue(song));
+        callback.onSuccess(new ResponseValue(song));
     }
 
     public static final class RequestValues implements UseCase.RequestValues {
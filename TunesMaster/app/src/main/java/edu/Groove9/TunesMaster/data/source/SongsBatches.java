@@ -0,0 +1,72 @@
+/*
+ * Copyright 2016, The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.Groove9.TunesMaster.data.source;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import android.support.annotation.NonNull;
+
+import edu.Groove9.TunesMaster.playlist.domain.model.Song;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Helpers for {@link SongsDataSource#getSongs(Collection, GetSongsCallback)} implementations.
+ */
+public final class SongsBatches {
+
+    private SongsBatches() {}
+
+    /**
+     * @return {@code ids} without duplicates, in the order they were first given
+     */
+    @NonNull
+    public static Set<String> distinct(@NonNull Collection<String> ids) {
+        Set<String> distinctIds = new LinkedHashSet<>(checkNotNull(ids));
+        for (String id : distinctIds) {
+            checkNotNull(id, "ids cannot contain null");
+        }
+        return distinctIds;
+    }
+
+    /**
+     * Delivers the songs of {@code songsById} in the order of {@code ids}, and the ids it has no
+     * song for as missing.
+     */
+    public static void deliver(@NonNull Collection<String> ids,
+                               @NonNull Map<String, Song> songsById,
+                               @NonNull SongsDataSource.GetSongsCallback callback) {
+        checkNotNull(songsById);
+        Set<String> distinctIds = distinct(ids);
+        List<Song> songs = new ArrayList<>(distinctIds.size());
+        List<String> missingIds = new ArrayList<>();
+        for (String id : distinctIds) {
+            Song song = songsById.get(id);
+            if (song != null) {
+                songs.add(song);
+            } else {
+                missingIds.add(id);
+            }
+        }
+        callback.onSongsLoaded(songs, missingIds);
+    }
+}
@@ -0,0 +1,468 @@
+/*
+ * Copyright 2016, The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.Groove9.TunesMaster.data.source;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import android.content.ComponentCallbacks2;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import edu.Groove9.TunesMaster.playlist.domain.model.Song;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.RemovalListener;
+import com.google.common.cache.RemovalNotification;
+import com.google.common.cache.Weigher;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Thread-safe, size-bounded in-memory cache of {@link Song}s used by {@link SongsRepository}.
+ * <p>
+ * Songs are kept in a Guava {@link Cache} bounded by the approximate memory footprint of their
+ * metadata and evicted least recently used first. Lookups go through the cache's lock-striped
+ * segments. The playlist order is a separate list that is never modified once published, so
+ * reading it doesn't lock. A set of the ordered ids is kept alongside it for writers, and a batch
+ * write publishes a new order once rather than once per song. A full refresh builds a new
+ * generation off to the side and swaps it in one step, so readers never observe a half-cleared
+ * cache.
+ * <p>
+ * Once anything has been evicted the cache no longer holds the whole library, so
+ * {@link #isComplete()} turns false, {@link #completeValues()} returns null and the repository goes
+ * back to its data sources for the full list.
+ * <p>
+ * Ids that no data source knows are remembered for a short while as well, so repeated lookups of a
+ * missing song don't query the data sources every time.
+ */
+class SongsCache {
+
+    /**
+     * Default bound, in approximate bytes of song metadata. Enough for ~15k typical songs.
+     */
+    static final long DEFAULT_MAX_WEIGHT = 4 * 1024 * 1024;
+
+    /**
+     * Rough fixed cost of a {@link Song}, its uri wrapper and the cache entry, in bytes.
+     */
+    private static final int SONG_OVERHEAD_BYTES = 160;
+
+    private static final Weigher<String, Song> SONG_WEIGHER = new Weigher<String, Song>() {
+        @Override
+        public int weigh(@NonNull String id, @NonNull Song song) {
+            int chars = id.length() + length(song.getTitle()) + length(song.getDescription())
+                    + length(song.getmSource().getUriString());
+            return SONG_OVERHEAD_BYTES + 2 * chars;
+        }
+    };
+
+    /**
+     * How long an id stays known as missing.
+     */
+    static final long MISSING_TTL_SECONDS = 60;
+
+    private static final int MAX_MISSING_IDS = 256;
+
+    private final long mMaxWeight;
+
+    private final Cache<String, Boolean> mMissingIds = CacheBuilder.newBuilder()
+            .maximumSize(MAX_MISSING_IDS)
+            .expireAfterWrite(MISSING_TTL_SECONDS, TimeUnit.SECONDS)
+            .build();
+
+    private final Object mWriteLock = new Object();
+
+    private volatile Generation mGeneration;
+
+    /**
+     * Statistics of the generations replaced so far. Guarded by {@code mWriteLock}.
+     */
+    private CacheStats mRetiredStats = new CacheStats(0, 0, 0, 0, 0, 0);
+
+    /**
+     * Bumped by every write that may make a load outdated: writes made by the app, removals and
+     * replacements. Caching what loads return doesn't bump it, so concurrent loads don't discard
+     * each other's results. Written under {@code mWriteLock}.
+     */
+    private volatile long mVersion;
+
+    SongsCache() {
+        this(DEFAULT_MAX_WEIGHT);
+    }
+
+    SongsCache(long maxWeight) {
+        checkArgument(maxWeight > 0, "maxWeight must be positive");
+        mMaxWeight = maxWeight;
+        mGeneration = new Generation(maxWeight, Collections.<String>emptyList(), false);
+    }
+
+    /**
+     * @return true if the cache holds every song, i.e. it was filled by {@link #replaceAll(List)},
+     * {@link #clear()} or a page at a time, and nothing has been evicted since
+     */
+    boolean isComplete() {
+        return mGeneration.mComplete;
+    }
+
+    @Nullable
+    Song get(@NonNull String id) {
+        return mGeneration.mSongs.getIfPresent(id);
+    }
+
+    /**
+     * @return true if a recent lookup found that no data source has a song with this id
+     */
+    boolean isMissing(@NonNull String id) {
+        return mMissingIds.getIfPresent(id) != null;
+    }
+
+    /**
+     * @return the current version, to pass to {@link #putLoaded(Song, long)} or
+     * {@link #markMissing(String, long)} once a load started now completes
+     */
+    long version() {
+        return mVersion;
+    }
+
+    boolean containsKey(@NonNull String id) {
+        return mGeneration.mSongs.asMap().containsKey(id);
+    }
+
+    int size() {
+        return (int) mGeneration.mSongs.size();
+    }
+
+    boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * @return a copy of the cached songs, in insertion order
+     */
+    @NonNull
+    List<Song> values() {
+        Generation generation = mGeneration;
+        return valuesOf(generation, generation.mOrder);
+    }
+
+    /**
+     * Unlike {@link #values()}, never returns a partial list, even if a song is evicted while the
+     * list is being read.
+     *
+     * @return a copy of every song in insertion order, or null if the cache doesn't hold them all
+     */
+    @Nullable
+    List<Song> completeValues() {
+        Generation generation = mGeneration;
+        if (!generation.mComplete) {
+            return null;
+        }
+        List<String> order = generation.mOrder;
+        List<Song> songs = valuesOf(generation, order);
+        return songs.size() == order.size() ? songs : null;
+    }
+
+    private static List<Song> valuesOf(Generation generation, List<String> order) {
+        List<Song> songs = new ArrayList<>(order.size());
+        for (String id : order) {
+            // Go through asMap() so that listing the playlist isn't counted as cache hits
+            Song song = generation.mSongs.asMap().get(id);
+            if (song != null) {
+                songs.add(song);
+            }
+        }
+        return songs;
+    }
+
+    void put(@NonNull Song song) {
+        putAll(Collections.singletonList(checkNotNull(song)));
+    }
+
+    /**
+     * Caches songs written by the app. New songs are added at the end, in order, and changed songs
+     * keep their position.
+     */
+    void putAll(@NonNull List<Song> songs) {
+        checkNotNull(songs);
+        synchronized (mWriteLock) {
+            cacheAll(songs);
+            mVersion++;
+        }
+    }
+
+    /**
+     * Caches a song read from a data source, unless the app wrote to the cache since the read
+     * started at {@code version}: the song might have been changed or deleted in the meantime.
+     */
+    void putLoaded(@NonNull Song song, long version) {
+        putAllLoaded(Collections.singletonList(checkNotNull(song)), version);
+    }
+
+    /**
+     * Like {@link #putLoaded(Song, long)} for a batch of songs read together.
+     */
+    void putAllLoaded(@NonNull List<Song> songs, long version) {
+        checkNotNull(songs);
+        synchronized (mWriteLock) {
+            if (mVersion == version) {
+                cacheAll(songs);
+            }
+        }
+    }
+
+    /**
+     * Caches a page of the full list read from a data source, unless the app wrote to the cache
+     * since the read started at {@code version}. Reading the list a page at a time from the start
+     * fills a new generation: the first page replaces the content of the cache, each page that
+     * starts where the previous one ended is appended, and the last one makes the cache complete,
+     * as {@link #replaceAll(List)} would. A write by the app in between ends the fill.
+     *
+     * @return true if this page completed the cache
+     */
+    boolean putPageLoaded(@NonNull List<Song> songs, int offset, boolean last, long version) {
+        checkNotNull(songs);
+        synchronized (mWriteLock) {
+            if (mVersion != version) {
+                return false;
+            }
+            Generation generation = mGeneration;
+            if (offset == 0) {
+                generation = new Generation(mMaxWeight, Collections.<String>emptyList(), false);
+                swap(generation);
+            } else if (generation.mFillVersion != mVersion
+                    || generation.mOrder.size() != offset) {
+                // Not the next page of a fill
+                cacheAll(songs);
+                return false;
+            }
+            cacheAll(songs);
+            if (!last) {
+                generation.mFillVersion = mVersion;
+                return false;
+            }
+            generation.mFillVersion = -1;
+            generation.mComplete = true;
+            if (generation.mEvicted) {
+                // Evicted while it was marked complete
+                generation.mComplete = false;
+            }
+            return generation.mComplete;
+        }
+    }
+
+    /**
+     * Remembers that no data source has a song with this id, unless the app wrote to the cache since
+     * the lookup started at {@code version}.
+     */
+    void markMissing(@NonNull String id, long version) {
+        checkNotNull(id);
+        synchronized (mWriteLock) {
+            if (mVersion == version) {
+                mMissingIds.put(id, Boolean.TRUE);
+            }
+        }
+    }
+
+    /**
+     * Forgets the ids remembered as missing, e.g. because the data sources may have changed.
+     */
+    void clearMissing() {
+        mMissingIds.invalidateAll();
+    }
+
+    /**
+     * Copies the order once if the song was in it, which is fine for a single deletion. Batches of
+     * deletions go through {@link #applyChanges(SongsChangeSet)}.
+     */
+    void remove(@NonNull String id) {
+        synchronized (mWriteLock) {
+            Generation generation = mGeneration;
+            if (generation.mOrderedIds.remove(id)) {
+                List<String> order = new ArrayList<>(generation.mOrder);
+                order.remove(id);
+                generation.mOrder = Collections.unmodifiableList(order);
+            }
+            generation.mSongs.invalidate(id);
+            mVersion++;
+        }
+    }
+
+    /**
+     * Saves and removes the songs of an incremental {@link SongsChangeSet} in one step. New songs
+     * are added at the end, changed songs keep their position.
+     */
+    void applyChanges(@NonNull SongsChangeSet changes) {
+        checkArgument(!changes.isReset(), "use replaceAll for a reset");
+        synchronized (mWriteLock) {
+            Generation generation = mGeneration;
+            Set<String> deletedIds = new HashSet<>(changes.getDeletedIds());
+            Set<String> orderedIds = generation.mOrderedIds;
+            orderedIds.removeAll(deletedIds);
+            List<String> order = new ArrayList<>(generation.mOrder.size()
+                    + changes.getSavedSongs().size());
+            for (String id : generation.mOrder) {
+                if (!deletedIds.contains(id)) {
+                    order.add(id);
+                }
+            }
+            for (Song song : changes.getSavedSongs()) {
+                if (orderedIds.add(song.getId())) {
+                    order.add(song.getId());
+                }
+            }
+            generation.mOrder = Collections.unmodifiableList(order);
+            generation.mSongs.invalidateAll(deletedIds);
+            for (Song song : changes.getSavedSongs()) {
+                generation.mSongs.put(song.getId(), song);
+                mMissingIds.invalidate(song.getId());
+            }
+            mVersion++;
+        }
+    }
+
+    void clear() {
+        replaceAll(Collections.<Song>emptyList());
+    }
+
+    /**
+     * Atomically replaces the whole content of the cache.
+     */
+    void replaceAll(@NonNull List<Song> songs) {
+        List<String> order = new ArrayList<>(songs.size());
+        for (Song song : songs) {
+            order.add(song.getId());
+        }
+        Generation replacement = new Generation(mMaxWeight, order, true);
+        for (Song song : songs) {
+            replacement.mSongs.put(song.getId(), song);
+        }
+        swap(replacement);
+    }
+
+    /**
+     * Releases memory in response to {@link ComponentCallbacks2#onTrimMemory(int)}. The cache is
+     * dropped once the app is in the background or the system is critically low on memory; lighter
+     * signals are ignored since the cache is already bounded.
+     */
+    void trimMemory(int level) {
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_BACKGROUND
+                || level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL) {
+            swap(new Generation(mMaxWeight, Collections.<String>emptyList(), false));
+        }
+    }
+
+    /**
+     * @return hit, miss and eviction counts since this cache was created
+     */
+    @NonNull
+    CacheStats stats() {
+        synchronized (mWriteLock) {
+            return mRetiredStats.plus(mGeneration.mSongs.stats());
+        }
+    }
+
+    private void swap(Generation replacement) {
+        synchronized (mWriteLock) {
+            mRetiredStats = mRetiredStats.plus(mGeneration.mSongs.stats());
+            mGeneration = replacement;
+            mMissingIds.invalidateAll();
+            mVersion++;
+        }
+    }
+
+    /**
+     * Caches {@code songs} in the current generation, publishing a new order at most once. Called
+     * with {@code mWriteLock} held.
+     */
+    private void cacheAll(List<Song> songs) {
+        Generation generation = mGeneration;
+        List<String> addedIds = null;
+        for (Song song : songs) {
+            if (generation.mOrderedIds.add(song.getId())) {
+                if (addedIds == null) {
+                    addedIds = new ArrayList<>();
+                }
+                addedIds.add(song.getId());
+            }
+            generation.mSongs.put(song.getId(), song);
+            mMissingIds.invalidate(song.getId());
+        }
+        if (addedIds != null) {
+            List<String> order = new ArrayList<>(generation.mOrder.size() + addedIds.size());
+            order.addAll(generation.mOrder);
+            order.addAll(addedIds);
+            generation.mOrder = Collections.unmodifiableList(order);
+        }
+    }
+
+    private static int length(@Nullable String value) {
+        return value == null ? 0 : value.length();
+    }
+
+    /**
+     * One fill of the cache, from a refresh until the next refresh or trim.
+     */
+    private static final class Generation implements RemovalListener<String, Song> {
+
+        final Cache<String, Song> mSongs;
+
+        volatile List<String> mOrder;
+
+        /**
+         * The ids in {@link #mOrder}. Guarded by {@code mWriteLock}.
+         */
+        final Set<String> mOrderedIds;
+
+        volatile boolean mComplete;
+
+        volatile boolean mEvicted;
+
+        /**
+         * Value of {@code mVersion} when the last page of a fill was cached, see
+         * {@link #putPageLoaded}, or -1 if no fill is going on. Guarded by {@code mWriteLock}.
+         */
+        long mFillVersion = -1;
+
+        Generation(long maxWeight, List<String> order, boolean complete) {
+            mSongs = CacheBuilder.newBuilder()
+                    .maximumWeight(maxWeight)
+                    .weigher(SONG_WEIGHER)
+                    .recordStats()
+                    .removalListener(this)
+                    .build();
+            mOrder = Collections.unmodifiableList(order);
+            mOrderedIds = new HashSet<>(order);
+            mComplete = complete;
+        }
+
+        @Override
+        public void onRemoval(@NonNull RemovalNotification<String, Song> notification) {
+            if (notification.wasEvicted()) {
+                mEvicted = true;
+                mComplete = false;
+            }
+        }
+    }
+}
@@ -0,0 +1,174 @@
+/*
+ * Copyright 2016, The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.Groove9.TunesMaster.data.source;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import edu.Groove9.TunesMaster.playlist.domain.model.Song;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Songs held by a server-side source, along with the version at which each was last saved or
+ * deleted, so that {@link #changesSince(long)} can tell a client what it missed.
+ * <p>
+ * Every change takes the next version from a counter, which doubles as the sync cursor handed to
+ * clients. Changes are indexed by version, so answering a client costs as much as the number of
+ * changes it missed rather than the size of the library. Deleted songs are remembered as
+ * tombstones, up to {@link #MAX_TOMBSTONES}; clients whose cursor predates the oldest dropped
+ * tombstone get a reset instead.
+ */
+public class SongsChangeLog {
+
+    static final int MAX_TOMBSTONES = 1000;
+
+    private final Map<String, Song> mSongs = new LinkedHashMap<>();
+
+    /**
+     * Version of the last change of every known id, live or deleted.
+     */
+    private final Map<String, Long> mVersions = new HashMap<>();
+
+    /**
+     * Id changed at each version. Only the last change of an id is kept.
+     */
+    private final TreeMap<Long, String> mChanges = new TreeMap<>();
+
+    private long mVersion = SongsChangeSet.NO_CURSOR;
+
+    /**
+     * Cursors older than this can't be answered incrementally anymore.
+     */
+    private long mOldestCursor = SongsChangeSet.NO_CURSOR;
+
+    private int mTombstoneCount;
+
+    public synchronized void put(@NonNull Song song) {
+        checkNotNull(song);
+        if (!mSongs.containsKey(song.getId()) && mVersions.containsKey(song.getId())) {
+            mTombstoneCount--;
+        }
+        mSongs.put(song.getId(), song);
+        recordChange(song.getId());
+    }
+
+    public synchronized void remove(@NonNull String id) {
+        checkNotNull(id);
+        if (mSongs.remove(id) != null) {
+            mTombstoneCount++;
+            recordChange(id);
+            dropOldestTombstones();
+        }
+    }
+
+    /**
+     * Removes every song. Clients are sent a reset rather than a tombstone per song.
+     */
+    public synchronized void clear() {
+        mSongs.clear();
+        mVersions.clear();
+        mChanges.clear();
+        mTombstoneCount = 0;
+        mVersion++;
+        mOldestCursor = mVersion;
+    }
+
+    @Nullable
+    public synchronized Song get(@NonNull String id) {
+        return mSongs.get(id);
+    }
+
+    /**
+     * @return the songs with the given ids that exist, by id
+     */
+    @NonNull
+    public synchronized Map<String, Song> getAll(@NonNull Collection<String> ids) {
+        Map<String, Song> songs = new HashMap<>();
+        for (String id : ids) {
+            Song song = mSongs.get(id);
+            if (song != null) {
+                songs.put(id, song);
+            }
+        }
+        return songs;
+    }
+
+    /**
+     * @return a copy of the songs, in the order they were first saved
+     */
+    @NonNull
+    public synchronized List<Song> getSongs() {
+        return new ArrayList<>(mSongs.values());
+    }
+
+    /**
+     * @param cursor the cursor of the client's last sync, or {@link SongsChangeSet#NO_CURSOR}
+     * @return the changes made after {@code cursor}, or a reset if they aren't all known anymore
+     */
+    @NonNull
+    public synchronized SongsChangeSet changesSince(long cursor) {
+        checkArgument(cursor >= SongsChangeSet.NO_CURSOR, "cursor must not be negative");
+        if (cursor == SongsChangeSet.NO_CURSOR || cursor < mOldestCursor || cursor > mVersion) {
+            return new SongsChangeSet(getSongs(), Collections.<String>emptyList(), mVersion, true);
+        }
+        List<Song> saved = new ArrayList<>();
+        List<String> deleted = new ArrayList<>();
+        for (String id : mChanges.tailMap(cursor, false).values()) {
+            Song song = mSongs.get(id);
+            if (song != null) {
+                saved.add(song);
+            } else {
+                deleted.add(id);
+            }
+        }
+        return new SongsChangeSet(saved, deleted, mVersion, false);
+    }
+
+    private void recordChange(String id) {
+        mVersion++;
+        Long previous = mVersions.put(id, mVersion);
+        if (previous != null) {
+            mChanges.remove(previous);
+        }
+        mChanges.put(mVersion, id);
+    }
+
+    private void dropOldestTombstones() {
+        Iterator<Map.Entry<Long, String>> changes = mChanges.entrySet().iterator();
+        while (mTombstoneCount > MAX_TOMBSTONES && changes.hasNext()) {
+            Map.Entry<Long, String> change = changes.next();
+            if (!mSongs.containsKey(change.getValue())) {
+                changes.remove();
+                mVersions.remove(change.getValue());
+                mTombstoneCount--;
+                mOldestCursor = change.getKey();
+            }
+        }
+    }
+}
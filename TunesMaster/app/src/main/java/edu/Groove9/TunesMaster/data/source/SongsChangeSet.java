@@ -0,0 +1,106 @@
+/*
+ * Copyright 2016, The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.Groove9.TunesMaster.data.source;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import android.support.annotation.NonNull;
+
+import edu.Groove9.TunesMaster.playlist.domain.model.Song;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The songs saved and deleted since a sync cursor, as returned by
+ * {@link SongsDataSource#getChangesSince(long, SongsDataSource.LoadChangesCallback)}.
+ * <p>
+ * A cursor is an opaque position in the change history of the source that produced it, growing
+ * with every change. Applying the change set brings a copy that was in sync at the requested cursor
+ * in sync at {@link #getCursor()}.
+ * <p>
+ * When the source can't tell what changed, e.g. because the cursor is older than the history it
+ * keeps, it answers with a reset: the saved songs are then the whole library and every other song
+ * must be dropped.
+ */
+public final class SongsChangeSet {
+
+    /**
+     * Cursor of a copy that was never synced.
+     */
+    public static final long NO_CURSOR = 0;
+
+    @NonNull
+    private final List<Song> mSavedSongs;
+
+    @NonNull
+    private final List<String> mDeletedIds;
+
+    private final long mCursor;
+
+    private final boolean mReset;
+
+    public SongsChangeSet(@NonNull List<Song> savedSongs, @NonNull List<String> deletedIds,
+                          long cursor, boolean reset) {
+        checkArgument(cursor >= NO_CURSOR, "cursor must not be negative");
+        checkArgument(!reset || deletedIds.isEmpty(), "a reset has no deletions");
+        mSavedSongs = Collections.unmodifiableList(new ArrayList<>(checkNotNull(savedSongs)));
+        mDeletedIds = Collections.unmodifiableList(new ArrayList<>(checkNotNull(deletedIds)));
+        mCursor = cursor;
+        mReset = reset;
+    }
+
+    /**
+     * @return the songs added or changed since the requested cursor, in the order they were last
+     * changed, or the whole library if this is a reset
+     */
+    @NonNull
+    public List<Song> getSavedSongs() {
+        return mSavedSongs;
+    }
+
+    /**
+     * @return the ids of the songs deleted since the requested cursor
+     */
+    @NonNull
+    public List<String> getDeletedIds() {
+        return mDeletedIds;
+    }
+
+    /**
+     * @return the cursor to request the next changes from
+     */
+    public long getCursor() {
+        return mCursor;
+    }
+
+    /**
+     * @return true if {@link #getSavedSongs()} replaces the whole library
+     */
+    public boolean isReset() {
+        return mReset;
+    }
+
+    /**
+     * @return true if applying this change set changes nothing
+     */
+    public boolean isEmpty() {
+        return !mReset && mSavedSongs.isEmpty() && mDeletedIds.isEmpty();
+    }
+}
@@ -20,6 +20,7 @@ import android.support.annotation.NonNull;
 
 import edu.Groove9.TunesMaster.playlist.domain.model.Song;
 
+import java.util.Collection;
 import java.util.List;
 
 /**
@@ -39,6 +40,24 @@ public interface SongsDataSource {
         void onDataNotAvailable();
     }
 
+    interface LoadSongsPageCallback {
+
+        /**
+         * @param songs   the songs of the page, fewer than requested at the end of the list
+         * @param hasMore true if more songs follow this page
+         */
+        void onPageLoaded(List<Song> songs, boolean hasMore);
+
+        void onDataNotAvailable();
+    }
+
+    interface LoadChangesCallback {
+
+        void onChangesLoaded(SongsChangeSet changes);
+
+        void onDataNotAvailable();
+    }
+
     interface GetSongCallback {
 
         void onSongLoaded(Song song);
@@ -46,12 +65,70 @@ public interface SongsDataSource {
         void onDataNotAvailable();
     }
 
+    interface GetSongsCallback {
+
+        /**
+         * @param songs      the songs found, in the order their ids were given
+         * @param missingIds the ids no song was found for, empty if all were found
+         */
+        void onSongsLoaded(List<Song> songs, List<String> missingIds);
+
+        /**
+         * The source couldn't be read. Missing songs are reported by
+         * {@link #onSongsLoaded(List, List)} instead.
+         */
+        void onDataNotAvailable();
+    }
+
     void getSongs(@NonNull LoadSongsCallback callback);
 
+    /**
+     * Loads the songs with the given ids at once, reporting the ids that weren't found together.
+     * Duplicate ids are looked up once. See {@link SongsBatches}.
+     */
+    void getSongs(@NonNull Collection<String> ids, @NonNull GetSongsCallback callback);
+
+    /**
+     * Loads at most {@code limit} songs, skipping the first {@code offset}, in the same order as
+     * {@link #getSongs(LoadSongsCallback)}. A page past the end is delivered empty.
+     */
+    void getSongsPage(int offset, int limit, @NonNull LoadSongsPageCallback callback);
+
     void getSong(@NonNull String id, @NonNull GetSongCallback callback);
 
+    /**
+     * Finds at most {@code limit} songs matching {@code query}, as defined by {@link SongsSearch}.
+     * The result is delivered even if empty; {@link LoadSongsCallback#onDataNotAvailable()} means
+     * the source couldn't be searched.
+     */
+    void searchSongs(@NonNull String query, int limit, @NonNull LoadSongsCallback callback);
+
     void saveSong(@NonNull Song song);
 
+    /**
+     * Saves all {@code songs}, replacing any saved song with the same id. Data sources that
+     * persist songs write them all at once rather than one at a time.
+     */
+    void saveSongs(@NonNull List<Song> songs);
+
+    /**
+     * Loads the changes made after {@code cursor}, see {@link SongsChangeSet}.
+     * {@link LoadChangesCallback#onDataNotAvailable()} is fired by sources that don't keep track of
+     * their changes.
+     */
+    void getChangesSince(long cursor, @NonNull LoadChangesCallback callback);
+
+    /**
+     * Applies changes loaded from another source and records their cursor, all at once. Sources
+     * that don't persist songs ignore them.
+     */
+    void applyChanges(@NonNull SongsChangeSet changes);
+
+    /**
+     * @return the cursor of the last changes applied, or {@link SongsChangeSet#NO_CURSOR}
+     */
+    long getSyncCursor();
+
     void refreshSongs();
 
     void deleteAllSongs();
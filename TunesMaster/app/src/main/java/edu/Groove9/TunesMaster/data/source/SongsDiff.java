@@ -0,0 +1,120 @@
+/*
+ * Copyright 2016, The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.Groove9.TunesMaster.data.source;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import android.support.annotation.NonNull;
+
+import edu.Groove9.TunesMaster.playlist.domain.model.Song;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Difference between two versions of the song list, as pushed to
+ * {@link SongsRepository.SongsObserver}s after a background refresh.
+ */
+public final class SongsDiff {
+
+    private final List<Song> mAdded;
+
+    private final List<Song> mRemoved;
+
+    private final List<Song> mChanged;
+
+    private final boolean mReordered;
+
+    private SongsDiff(List<Song> added, List<Song> removed, List<Song> changed,
+                      boolean reordered) {
+        mAdded = Collections.unmodifiableList(added);
+        mRemoved = Collections.unmodifiableList(removed);
+        mChanged = Collections.unmodifiableList(changed);
+        mReordered = reordered;
+    }
+
+    /**
+     * Compares two song lists by song id.
+     */
+    @NonNull
+    public static SongsDiff between(@NonNull List<Song> before, @NonNull List<Song> after) {
+        checkNotNull(before);
+        checkNotNull(after);
+
+        Map<String, Song> previous = new LinkedHashMap<>(before.size());
+        for (Song song : before) {
+            previous.put(song.getId(), song);
+        }
+
+        List<Song> added = new ArrayList<>();
+        List<Song> changed = new ArrayList<>();
+        List<String> keptOrder = new ArrayList<>(after.size());
+        for (Song song : after) {
+            Song old = previous.remove(song.getId());
+            if (old == null) {
+                added.add(song);
+            } else {
+                keptOrder.add(song.getId());
+                if (!old.equals(song)) {
+                    changed.add(song);
+                }
+            }
+        }
+        // Whatever is left was not in the new list
+        List<Song> removed = new ArrayList<>(previous.values());
+
+        // Songs present in both lists must appear in the same relative order
+        boolean reordered = false;
+        int next = 0;
+        for (Song song : before) {
+            if (previous.containsKey(song.getId())) {
+                continue; // Removed
+            }
+            if (!song.getId().equals(keptOrder.get(next++))) {
+                reordered = true;
+                break;
+            }
+        }
+        return new SongsDiff(added, removed, changed, reordered);
+    }
+
+    @NonNull
+    public List<Song> getAdded() {
+        return mAdded;
+    }
+
+    @NonNull
+    public List<Song> getRemoved() {
+        return mRemoved;
+    }
+
+    @NonNull
+    public List<Song> getChanged() {
+        return mChanged;
+    }
+
+    public boolean isReordered() {
+        return mReordered;
+    }
+
+    public boolean isEmpty() {
+        return mAdded.isEmpty() && mRemoved.isEmpty() && mChanged.isEmpty() && !mReordered;
+    }
+}
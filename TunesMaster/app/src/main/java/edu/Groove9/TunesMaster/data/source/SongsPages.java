@@ -0,0 +1,52 @@
+/*
+ * Copyright 2016, The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.Groove9.TunesMaster.data.source;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import android.support.annotation.NonNull;
+
+import edu.Groove9.TunesMaster.playlist.domain.model.Song;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Helpers for {@link SongsDataSource#getSongsPage} implementations that hold the whole list.
+ */
+public final class SongsPages {
+
+    private SongsPages() {}
+
+    public static void checkPageArguments(int offset, int limit) {
+        checkArgument(offset >= 0, "offset must not be negative");
+        checkArgument(limit > 0, "limit must be positive");
+    }
+
+    /**
+     * Delivers the requested page of {@code songs} to {@code callback}.
+     */
+    public static void deliverPage(@NonNull List<Song> songs, int offset, int limit,
+                                   @NonNull SongsDataSource.LoadSongsPageCallback callback) {
+        checkNotNull(songs);
+        checkPageArguments(offset, limit);
+        int from = Math.min(offset, songs.size());
+        int to = (int) Math.min((long) from + limit, songs.size());
+        callback.onPageLoaded(new ArrayList<>(songs.subList(from, to)), to < songs.size());
+    }
+}
@@ -16,28 +16,43 @@
 
 package edu.Groove9.TunesMaster.data.source;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 
+import android.content.ComponentCallbacks2;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
+import android.util.Log;
 
 import edu.Groove9.TunesMaster.playlist.domain.model.Song;
 
+import com.google.common.cache.CacheStats;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
 import java.util.ArrayList;
-import java.util.Iterator;
-import java.util.LinkedHashMap;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Concrete implementation to load tasks from the data sources into a cache.
  * <p>
- * For simplicity, this implements a dumb synchronisation between locally persisted data and data
- * obtained from the server, by using the remote data source only if the local database doesn't
- * exist or is empty.
+ * The remote data source is only used if the local database doesn't exist or is empty, or once the
+ * cache is marked dirty. It then sends the changes made since the last sync, which are applied to
+ * the local data source and the cache, so a refresh costs as much as what changed rather than the
+ * size of the library. See {@link SongsChangeSet}.
  */
 public class SongsRepository implements SongsDataSource {
 
+    private static final String TAG = "SongsRepository";
+
     private static SongsRepository INSTANCE = null;
 
     private final SongsDataSource mTasksRemoteDataSource;
@@ -45,20 +60,80 @@ public class SongsRepository implements SongsDataSource {
     private final SongsDataSource mTasksLocalDataSource;
 
     /**
-     * This variable has package local visibility so it can be accessed from tests.
+     * Read from any thread without locking, see {@link SongsCache}. This variable has package local
+     * visibility so it can be accessed from tests.
      */
-    Map<String, Song> mCachedSongs;
+    final SongsCache mCachedSongs = new SongsCache();
 
     /**
      * Marks the cache as invalid, to force an update the next time data is requested. This variable
      * has package local visibility so it can be accessed from tests.
      */
-    boolean mCacheIsDirty = false;
+    volatile boolean mCacheIsDirty = false;
+
+    /**
+     * Enables/Disables use of remote repository, see {@link #setUseRemoteDataSource(boolean)}.
+     */
+    private volatile boolean mUseRemoteRepository = false;
+
+    /**
+     * When set, a dirty cache is served as is while it is reloaded in the background, see
+     * {@link #setStaleWhileRevalidate(boolean)}.
+     */
+    private volatile boolean mStaleWhileRevalidate = false;
+
+    /**
+     * Value of {@link #mHedgeDelayMillis} when single song lookups don't race the data sources.
+     */
+    public static final long HEDGE_DISABLED = -1;
+
+    /**
+     * How long {@link #getSong} waits for the local data source before asking the remote one as
+     * well, see {@link #setHedgeDelay(long)}.
+     */
+    private volatile long mHedgeDelayMillis = HEDGE_DISABLED;
+
+    /**
+     * Times the delayed remote lookups, which it hands to {@link #mHedgeExecutor} when they are
+     * due. Created with the first one, shut down by {@link #destroyInstance()}. Guarded by
+     * {@code this}.
+     */
+    private ScheduledExecutorService mHedgeScheduler;
+
+    /**
+     * Runs the delayed remote lookups, each on a thread of its own so that a slow one doesn't hold
+     * up the others. Created and shut down along with {@link #mHedgeScheduler}. Guarded by
+     * {@code this}.
+     */
+    private ExecutorService mHedgeExecutor;
+
+    /**
+     * Set once {@link #destroyInstance()} shut {@link #mHedgeScheduler} down. Guarded by
+     * {@code this}.
+     */
+    private boolean mHedgeSchedulerShutDown;
+
+    private final CopyOnWriteArrayList<SongsObserver> mObservers = new CopyOnWriteArrayList<>();
+
+    private final Object mInFlightLock = new Object();
+
+    /**
+     * The full load currently running, if any. Callers arriving meanwhile join it instead of
+     * querying the data sources again. Guarded by {@code mInFlightLock}.
+     */
+    private SongsLoad mInFlightSongsLoad;
+
+    /**
+     * Counts the calls to {@link #refreshSongs()}. A load that started before the latest one may
+     * have read stale data, so it neither replaces the cache nor clears {@link #mCacheIsDirty}.
+     * Guarded by {@code mInFlightLock}.
+     */
+    private int mRefreshGeneration;
 
     /**
-     * Enables/Disables use of remote repository
+     * Single song loads currently running, by song id. Guarded by {@code mInFlightLock}.
      */
-    private static final boolean mUseRemoteRepository = false;
+    private final Map<String, SongLoad> mInFlightSongLoads = new HashMap<>();
 
     // Prevent direct instantiation.
     private SongsRepository(@NonNull SongsDataSource tasksRemoteDataSource,
@@ -84,9 +159,12 @@ public class SongsRepository implements SongsDataSource {
 
     /**
      * Used to force {@link #getInstance(SongsDataSource, SongsDataSource)} to create a new instance
-     * next time it's called.
+     * next time it's called. Also stops the thread of the instance's delayed remote lookups.
      */
     public static void destroyInstance() {
+        if (INSTANCE != null) {
+            INSTANCE.shutDownHedgeScheduler();
+        }
         INSTANCE = null;
     }
 
@@ -94,39 +172,170 @@ public class SongsRepository implements SongsDataSource {
      * Gets tasks from cache, local data source (SQLite) or remote data source, whichever is
      * available first.
      * <p>
+     * Concurrent calls that miss the cache share a single load and are all completed from its
+     * result.
+     * <p>
      * Note: {@link LoadSongsCallback#onDataNotAvailable()} is fired if all data sources fail to
      * get the data.
      */
     @Override
-    public void getSongs(@NonNull final LoadSongsCallback callback) {
+    public void getSongs(@NonNull LoadSongsCallback callback) {
         checkNotNull(callback);
 
         // Respond immediately with cache if available and not dirty
-        if (mCachedSongs != null && !mCacheIsDirty) {
-            callback.onSongsLoaded(new ArrayList<>(mCachedSongs.values()));
+        List<Song> cachedSongs = mCachedSongs.completeValues();
+        if (cachedSongs != null && !mCacheIsDirty) {
+            callback.onSongsLoaded(cachedSongs);
             return;
         }
 
+        // Or serve the dirty cache and reload behind it
+        if (cachedSongs != null && mStaleWhileRevalidate) {
+            callback.onSongsLoaded(cachedSongs);
+            revalidate(cachedSongs);
+            return;
+        }
+
+        SongsLoad load;
+        synchronized (mInFlightLock) {
+            if (mInFlightSongsLoad != null) {
+                mInFlightSongsLoad.mCallbacks.add(callback);
+                return;
+            }
+            load = new SongsLoad(callback);
+            mInFlightSongsLoad = load;
+        }
+        loadSongs(load);
+    }
+
+    /**
+     * Reloads the songs unless a load is already running, and notifies {@link SongsObserver}s if
+     * the result differs from {@code staleSongs}. Failures are ignored: the cache stays dirty, so
+     * the next call tries again.
+     */
+    private void revalidate(@NonNull final List<Song> staleSongs) {
+        SongsLoad load;
+        synchronized (mInFlightLock) {
+            if (mInFlightSongsLoad != null) {
+                return;
+            }
+            load = new SongsLoad(new LoadSongsCallback() {
+                @Override
+                public void onSongsLoaded(List<Song> songs) {
+                    SongsDiff diff = SongsDiff.between(staleSongs, songs);
+                    if (!diff.isEmpty()) {
+                        notifySongsChanged(diff);
+                    }
+                }
+
+                @Override
+                public void onDataNotAvailable() {
+                }
+            });
+            mInFlightSongsLoad = load;
+        }
+        loadSongs(load);
+    }
+
+    private void notifySongsChanged(@NonNull SongsDiff diff) {
+        for (SongsObserver observer : mObservers) {
+            observer.onSongsChanged(diff);
+        }
+    }
+
+    private void loadSongs(@NonNull final SongsLoad load) {
+        final int refreshGeneration = load.mRefreshGeneration;
         if (mCacheIsDirty && mUseRemoteRepository) {
             // If the cache is dirty we need to fetch new data from the network.
-            getTasksFromRemoteDataSource(callback);
+            syncFromRemoteDataSource(load, refreshGeneration);
         } else {
             // Query the local storage if available. If not, query the network.
             mTasksLocalDataSource.getSongs(new LoadSongsCallback() {
                 @Override
                 public void onSongsLoaded(List<Song> songs) {
-                    refreshCache(songs);
-                    callback.onSongsLoaded(new ArrayList<>(mCachedSongs.values()));
+                    load.onSongsLoaded(refreshCache(songs, refreshGeneration));
                 }
 
                 @Override
                 public void onDataNotAvailable() {
-                    getTasksFromRemoteDataSource(callback);
+                    syncFromRemoteDataSource(load, refreshGeneration);
                 }
             });
         }
     }
 
+    /**
+     * Gets a page of songs from the cache if it can answer {@link #getSongs} right away, or else
+     * from the local data source, a page at a time. A full load in flight isn't waited for: the
+     * page is ready long before it. When the local data source is empty or the remote data source
+     * is to be used, the whole list is loaded through {@link #getSongs} and sliced.
+     * <p>
+     * Pages read from the local data source in order, from the first to the last, fill the cache
+     * as a full load would, see {@link SongsCache#putPageLoaded}.
+     */
+    @Override
+    public void getSongsPage(final int offset, final int limit,
+                             @NonNull final LoadSongsPageCallback callback) {
+        checkNotNull(callback);
+        SongsPages.checkPageArguments(offset, limit);
+
+        List<Song> cachedSongs = !mCacheIsDirty || mStaleWhileRevalidate
+                ? mCachedSongs.completeValues() : null;
+        if (cachedSongs != null) {
+            SongsPages.deliverPage(cachedSongs, offset, limit, callback);
+            if (mCacheIsDirty) {
+                revalidate(cachedSongs);
+            }
+            return;
+        }
+
+        if (mCacheIsDirty && mUseRemoteRepository) {
+            getSongs(new PageSlicer(offset, limit, callback));
+            return;
+        }
+
+        final long cacheVersion = mCachedSongs.version();
+        final int refreshGeneration = getRefreshGeneration();
+        mTasksLocalDataSource.getSongsPage(offset, limit, new LoadSongsPageCallback() {
+            @Override
+            public void onPageLoaded(List<Song> songs, boolean hasMore) {
+                if (mCachedSongs.putPageLoaded(songs, offset, !hasMore, cacheVersion)) {
+                    // The whole list was read a page at a time: the cache can answer from now on
+                    markCacheClean(refreshGeneration);
+                }
+                callback.onPageLoaded(songs, hasMore);
+            }
+
+            @Override
+            public void onDataNotAvailable() {
+                getSongs(new PageSlicer(offset, limit, callback));
+            }
+        });
+    }
+
+    /**
+     * Searches the local data source, or the remote data source if the local one can't be
+     * searched. Results aren't cached.
+     */
+    @Override
+    public void searchSongs(@NonNull final String query, final int limit,
+                            @NonNull final LoadSongsCallback callback) {
+        SongsSearch.checkSearchArguments(query, limit);
+        checkNotNull(callback);
+
+        mTasksLocalDataSource.searchSongs(query, limit, new LoadSongsCallback() {
+            @Override
+            public void onSongsLoaded(List<Song> songs) {
+                callback.onSongsLoaded(songs);
+            }
+
+            @Override
+            public void onDataNotAvailable() {
+                mTasksRemoteDataSource.searchSongs(query, limit, callback);
+            }
+        });
+    }
+
     @Override
     public void saveSong(@NonNull Song song) {
         checkNotNull(song);
@@ -134,21 +343,57 @@ public class SongsRepository implements SongsDataSource {
         mTasksLocalDataSource.saveSong(song);
 
         // Do in memory cache update to keep the app UI up to date
-        if (mCachedSongs == null) {
-            mCachedSongs = new LinkedHashMap<>();
+        mCachedSongs.put(song);
+    }
+
+    @Override
+    public void saveSongs(@NonNull List<Song> songs) {
+        checkNotNull(songs);
+        mTasksRemoteDataSource.saveSongs(songs);
+        mTasksLocalDataSource.saveSongs(songs);
+
+        // Do in memory cache update to keep the app UI up to date
+        mCachedSongs.putAll(songs);
+    }
+
+    @Override
+    public void getChangesSince(long cursor, @NonNull LoadChangesCallback callback) {
+        mTasksRemoteDataSource.getChangesSince(cursor, checkNotNull(callback));
+    }
+
+    /**
+     * Applies changes to the local data source and the cache.
+     */
+    @Override
+    public void applyChanges(@NonNull SongsChangeSet changes) {
+        checkNotNull(changes);
+        mTasksLocalDataSource.applyChanges(changes);
+
+        if (changes.isReset()) {
+            mCachedSongs.replaceAll(changes.getSavedSongs());
+        } else {
+            mCachedSongs.applyChanges(changes);
         }
-        mCachedSongs.put(song.getId(), song);
+    }
+
+    @Override
+    public long getSyncCursor() {
+        return mTasksLocalDataSource.getSyncCursor();
     }
 
     /**
      * Gets tasks from local data source (sqlite) unless the table is new or empty. In that case it
      * uses the network data source. This is done to simplify the sample.
      * <p>
+     * Concurrent lookups of the same id that miss the cache share a single load. Loaded songs are
+     * added to the cache, and ids no data source has are remembered as missing for
+     * {@link SongsCache#MISSING_TTL_SECONDS}.
+     * <p>
      * Note: {@link LoadSongsCallback#onDataNotAvailable()} is fired if both data sources fail to
      * get the data.
      */
     @Override
-    public void getSong(@NonNull final String id, @NonNull final GetSongCallback callback) {
+    public void getSong(@NonNull String id, @NonNull GetSongCallback callback) {
         checkNotNull(id);
         checkNotNull(callback);
 
@@ -159,6 +404,111 @@ public class SongsRepository implements SongsDataSource {
             callback.onSongLoaded(cachedSong);
             return;
         }
+        if (mCachedSongs.isMissing(id)) {
+            callback.onDataNotAvailable();
+            return;
+        }
+
+        SongLoad load;
+        synchronized (mInFlightLock) {
+            SongLoad inFlight = mInFlightSongLoads.get(id);
+            if (inFlight != null) {
+                inFlight.mCallbacks.add(callback);
+                return;
+            }
+            load = new SongLoad(id, callback);
+            mInFlightSongLoads.put(id, load);
+        }
+        loadSong(id, load);
+    }
+
+    /**
+     * Gets the songs with the given ids from the cache, and the ones it doesn't hold with one batch
+     * call to the local data source, then one to the remote data source for the ids the local one
+     * doesn't have. Loaded songs are added to the cache, and ids no data source has are remembered
+     * as missing, like {@link #getSong} does.
+     * <p>
+     * Note: {@link GetSongsCallback#onDataNotAvailable()} is fired if songs had to be loaded and
+     * neither data source could be read. If only the remote one can't be read, the ids left are
+     * reported missing, without being remembered as such.
+     */
+    @Override
+    public void getSongs(@NonNull Collection<String> ids, @NonNull final GetSongsCallback callback) {
+        checkNotNull(callback);
+        final List<String> distinctIds = new ArrayList<>(SongsBatches.distinct(ids));
+
+        final Map<String, Song> found = new HashMap<>();
+        final List<String> uncachedIds = new ArrayList<>();
+        for (String id : distinctIds) {
+            Song cachedSong = mCachedSongs.get(id);
+            if (cachedSong != null) {
+                found.put(id, cachedSong);
+            } else if (!mCachedSongs.isMissing(id)) {
+                uncachedIds.add(id);
+            }
+        }
+        if (uncachedIds.isEmpty()) {
+            SongsBatches.deliver(distinctIds, found, callback);
+            return;
+        }
+
+        final long cacheVersion = mCachedSongs.version();
+        mTasksLocalDataSource.getSongs(uncachedIds, new GetSongsCallback() {
+            @Override
+            public void onSongsLoaded(List<Song> songs, List<String> missingIds) {
+                mCachedSongs.putAllLoaded(songs, cacheVersion);
+                for (Song song : songs) {
+                    found.put(song.getId(), song);
+                }
+                if (missingIds.isEmpty()) {
+                    SongsBatches.deliver(distinctIds, found, callback);
+                } else {
+                    loadSongsFromRemoteDataSource(missingIds, true, distinctIds, found, callback);
+                }
+            }
+
+            @Override
+            public void onDataNotAvailable() {
+                loadSongsFromRemoteDataSource(uncachedIds, false, distinctIds, found, callback);
+            }
+        });
+    }
+
+    private void loadSongsFromRemoteDataSource(@NonNull List<String> ids,
+                                               final boolean localAvailable,
+                                               @NonNull final List<String> distinctIds,
+                                               @NonNull final Map<String, Song> found,
+                                               @NonNull final GetSongsCallback callback) {
+        final long cacheVersion = mCachedSongs.version();
+        mTasksRemoteDataSource.getSongs(ids, new GetSongsCallback() {
+            @Override
+            public void onSongsLoaded(List<Song> songs, List<String> missingIds) {
+                mCachedSongs.putAllLoaded(songs, cacheVersion);
+                for (String id : missingIds) {
+                    mCachedSongs.markMissing(id, cacheVersion);
+                }
+                for (Song song : songs) {
+                    found.put(song.getId(), song);
+                }
+                SongsBatches.deliver(distinctIds, found, callback);
+            }
+
+            @Override
+            public void onDataNotAvailable() {
+                if (localAvailable) {
+                    SongsBatches.deliver(distinctIds, found, callback);
+                } else {
+                    callback.onDataNotAvailable();
+                }
+            }
+        });
+    }
+
+    private void loadSong(@NonNull final String id, @NonNull final GetSongCallback callback) {
+        if (mHedgeDelayMillis != HEDGE_DISABLED) {
+            new HedgedSongLoad(id, callback).start(mHedgeDelayMillis);
+            return;
+        }
 
         // Load from server/persisted if needed.
 
@@ -186,9 +536,154 @@ public class SongsRepository implements SongsDataSource {
         });
     }
 
+    /**
+     * Enables or disables syncing from the remote data source once the cache is marked dirty by
+     * {@link #refreshSongs()}. When disabled, the remote data source is only used while the local
+     * one is empty. Disabled by default.
+     */
+    public void setUseRemoteDataSource(boolean enabled) {
+        mUseRemoteRepository = enabled;
+    }
+
+    /**
+     * Enables or disables hedged lookups in {@link #getSong}. When enabled, a song the local data
+     * source hasn't found within {@code delayMillis} is asked of the remote data source too, and
+     * whichever finds it first answers. This bounds the time to open a song when the local data
+     * source is slow, at the cost of some remote requests that turn out to be unnecessary.
+     *
+     * @param delayMillis how long to give the local data source on its own, or
+     *                    {@link #HEDGE_DISABLED} to only ask the remote data source once the local
+     *                    one doesn't have the song, which is the default
+     */
+    public void setHedgeDelay(long delayMillis) {
+        checkArgument(delayMillis >= 0 || delayMillis == HEDGE_DISABLED,
+                "delayMillis must not be negative");
+        mHedgeDelayMillis = delayMillis;
+    }
+
+    /**
+     * @return the scheduled lookup, or null if the scheduler has been shut down
+     */
+    @Nullable
+    private synchronized ScheduledFuture<?> scheduleHedge(final Runnable lookup,
+                                                          long delayMillis) {
+        if (mHedgeSchedulerShutDown) {
+            return null;
+        }
+        if (mHedgeScheduler == null) {
+            mHedgeScheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+                    .setNameFormat("songs-hedge-timer")
+                    .setDaemon(true)
+                    .build());
+            mHedgeExecutor = Executors.newCachedThreadPool(new ThreadFactoryBuilder()
+                    .setNameFormat("songs-hedge-%d")
+                    .setDaemon(true)
+                    .build());
+        }
+        // The timer thread only hands the lookup over, it never calls a data source itself
+        return mHedgeScheduler.schedule(new Runnable() {
+            @Override
+            public void run() {
+                executeHedge(lookup);
+            }
+        }, delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private synchronized void executeHedge(Runnable lookup) {
+        if (!mHedgeSchedulerShutDown) {
+            mHedgeExecutor.execute(lookup);
+        }
+    }
+
+    /**
+     * Drops the delayed remote lookups still pending: their songs are then only asked of the remote
+     * data source once the local one doesn't have them.
+     */
+    private synchronized void shutDownHedgeScheduler() {
+        mHedgeSchedulerShutDown = true;
+        if (mHedgeScheduler != null) {
+            mHedgeScheduler.shutdownNow();
+            mHedgeScheduler = null;
+            mHedgeExecutor.shutdownNow();
+            mHedgeExecutor = null;
+        }
+    }
+
+    /**
+     * Enables or disables stale-while-revalidate. When enabled, {@link #getSongs} answers from the
+     * cache even once {@link #refreshSongs()} marked it dirty, then reloads it in the background
+     * and reports the changes to {@link SongsObserver}s. Disabled by default.
+     */
+    public void setStaleWhileRevalidate(boolean enabled) {
+        mStaleWhileRevalidate = enabled;
+    }
+
+    /**
+     * Registers {@code observer} to be told about changes found by background reloads. Adding the
+     * same observer twice has no effect.
+     */
+    public void addSongsObserver(@NonNull SongsObserver observer) {
+        mObservers.addIfAbsent(checkNotNull(observer));
+    }
+
+    public void removeSongsObserver(@NonNull SongsObserver observer) {
+        mObservers.remove(checkNotNull(observer));
+    }
+
+    /**
+     * Returns the cached songs without touching any data source, or null if the cache hasn't been
+     * loaded yet or is dirty. Never blocks, so it can be called from the main thread.
+     */
+    @Nullable
+    public List<Song> getCachedSongs() {
+        if (mCacheIsDirty) {
+            return null;
+        }
+        return mCachedSongs.completeValues();
+    }
+
+    /**
+     * Returns the cached song with the given id without touching any data source, or null if it
+     * isn't cached. Never blocks, so it can be called from the main thread.
+     */
+    @Nullable
+    public Song getCachedSong(@NonNull String id) {
+        return getTaskWithId(id);
+    }
+
+    /**
+     * Returns true if a recent lookup found that no data source has a song with the given id.
+     * Never blocks, so it can be called from the main thread.
+     */
+    public boolean isCachedAsMissing(@NonNull String id) {
+        return mCachedSongs.isMissing(checkNotNull(id));
+    }
+
+    /**
+     * @return hit, miss and eviction counts of the in-memory cache, for sizing it
+     */
+    @NonNull
+    public CacheStats getCacheStats() {
+        return mCachedSongs.stats();
+    }
+
+    /**
+     * Releases cached songs in response to {@link ComponentCallbacks2#onTrimMemory(int)}.
+     */
+    public void onTrimMemory(int level) {
+        mCachedSongs.trimMemory(level);
+    }
+
     @Override
     public void refreshSongs() {
-        mCacheIsDirty = true;
+        mCachedSongs.clearMissing();
+        synchronized (mInFlightLock) {
+            mCacheIsDirty = true;
+            mRefreshGeneration++;
+            // A load started before the refresh may return stale data: let it finish for the
+            // callers already waiting on it, but don't hand it to new ones.
+            mInFlightSongsLoad = null;
+        }
     }
 
     @Override
@@ -196,9 +691,6 @@ public class SongsRepository implements SongsDataSource {
         mTasksRemoteDataSource.deleteAllSongs();
         mTasksLocalDataSource.deleteAllSongs();
 
-        if (mCachedSongs == null) {
-            mCachedSongs = new LinkedHashMap<>();
-        }
         mCachedSongs.clear();
     }
 
@@ -210,13 +702,34 @@ public class SongsRepository implements SongsDataSource {
         mCachedSongs.remove(taskId);
     }
 
-    private void getTasksFromRemoteDataSource(@NonNull final LoadSongsCallback callback) {
-        mTasksRemoteDataSource.getSongs(new LoadSongsCallback() {
+    /**
+     * Brings the local data source and the cache up to date with the remote data source, then
+     * answers {@code callback} with the resulting songs.
+     */
+    private void syncFromRemoteDataSource(@NonNull final LoadSongsCallback callback,
+                                          final int refreshGeneration) {
+        long cursor = mTasksLocalDataSource.getSyncCursor();
+        mTasksRemoteDataSource.getChangesSince(cursor, new LoadChangesCallback() {
             @Override
-            public void onSongsLoaded(List<Song> songs) {
-                refreshCache(songs);
-                refreshLocalDataSource(songs);
-                callback.onSongsLoaded(new ArrayList<>(mCachedSongs.values()));
+            public void onChangesLoaded(SongsChangeSet changes) {
+                mTasksLocalDataSource.applyChanges(changes);
+                if (changes.isReset()) {
+                    callback.onSongsLoaded(refreshCache(changes.getSavedSongs(),
+                            refreshGeneration));
+                } else {
+                    List<Song> songs = null;
+                    if (mCachedSongs.isComplete()) {
+                        mCachedSongs.applyChanges(changes);
+                        songs = mCachedSongs.completeValues();
+                    }
+                    if (songs != null) {
+                        markCacheClean(refreshGeneration);
+                        callback.onSongsLoaded(songs);
+                    } else {
+                        // Only some songs are cached: read the whole, now updated, list back
+                        reloadFromLocalDataSource(callback, refreshGeneration);
+                    }
+                }
             }
 
             @Override
@@ -226,31 +739,341 @@ public class SongsRepository implements SongsDataSource {
         });
     }
 
-    private void refreshCache(List<Song> songs) {
-        if (mCachedSongs == null) {
-            mCachedSongs = new LinkedHashMap<>();
+    private void reloadFromLocalDataSource(@NonNull final LoadSongsCallback callback,
+                                           final int refreshGeneration) {
+        mTasksLocalDataSource.getSongs(new LoadSongsCallback() {
+            @Override
+            public void onSongsLoaded(List<Song> songs) {
+                callback.onSongsLoaded(refreshCache(songs, refreshGeneration));
+            }
+
+            @Override
+            public void onDataNotAvailable() {
+                callback.onSongsLoaded(refreshCache(new ArrayList<Song>(), refreshGeneration));
+            }
+        });
+    }
+
+    /**
+     * Swaps the cache content for {@code songs} in one step, unless {@link #refreshSongs()} was
+     * called since the load that read them started at {@code refreshGeneration}.
+     *
+     * @return {@code songs}, which the cache may not hold in full if they exceed its bound
+     */
+    private List<Song> refreshCache(List<Song> songs, int refreshGeneration) {
+        synchronized (mInFlightLock) {
+            if (refreshGeneration == mRefreshGeneration) {
+                mCachedSongs.replaceAll(songs);
+                mCacheIsDirty = false;
+            }
         }
-        mCachedSongs.clear();
-        for (Song song : songs) {
-            mCachedSongs.put(song.getId(), song);
+        return songs;
+    }
+
+    /**
+     * Clears {@link #mCacheIsDirty}, unless {@link #refreshSongs()} was called since the load
+     * started at {@code refreshGeneration}.
+     */
+    private void markCacheClean(int refreshGeneration) {
+        synchronized (mInFlightLock) {
+            if (refreshGeneration == mRefreshGeneration) {
+                mCacheIsDirty = false;
+            }
         }
-        mCacheIsDirty = false;
     }
 
-    private void refreshLocalDataSource(List<Song> songs) {
-        mTasksLocalDataSource.deleteAllSongs();
-        for (Song song : songs) {
-            mTasksLocalDataSource.saveSong(song);
+    private int getRefreshGeneration() {
+        synchronized (mInFlightLock) {
+            return mRefreshGeneration;
         }
     }
 
     @Nullable
     private Song getTaskWithId(@NonNull String id) {
         checkNotNull(id);
-        if (mCachedSongs == null || mCachedSongs.isEmpty()) {
-            return null;
-        } else {
-            return mCachedSongs.get(id);
+        return mCachedSongs.get(id);
+    }
+
+    /**
+     * A full load shared by every {@link #getSongs(LoadSongsCallback)} call made while it runs.
+     */
+    private final class SongsLoad implements LoadSongsCallback {
+
+        /**
+         * Guarded by {@code mInFlightLock}.
+         */
+        final List<LoadSongsCallback> mCallbacks = new ArrayList<>(1);
+
+        /**
+         * Created under {@code mInFlightLock}, so this is read consistently.
+         */
+        final int mRefreshGeneration = SongsRepository.this.mRefreshGeneration;
+
+        SongsLoad(@NonNull LoadSongsCallback callback) {
+            mCallbacks.add(callback);
+        }
+
+        @Override
+        public void onSongsLoaded(List<Song> songs) {
+            for (LoadSongsCallback callback : complete()) {
+                // Each caller gets its own list since they are free to modify it
+                callback.onSongsLoaded(new ArrayList<>(songs));
+            }
+        }
+
+        @Override
+        public void onDataNotAvailable() {
+            for (LoadSongsCallback callback : complete()) {
+                callback.onDataNotAvailable();
+            }
+        }
+
+        private List<LoadSongsCallback> complete() {
+            synchronized (mInFlightLock) {
+                if (mInFlightSongsLoad == this) {
+                    mInFlightSongsLoad = null;
+                }
+                return new ArrayList<>(mCallbacks);
+            }
+        }
+    }
+
+    /**
+     * A single song load shared by every {@link #getSong(String, GetSongCallback)} call for the
+     * same id made while it runs.
+     */
+    private final class SongLoad implements GetSongCallback {
+
+        private final String mId;
+
+        private final long mCacheVersion = mCachedSongs.version();
+
+        /**
+         * Guarded by {@code mInFlightLock}.
+         */
+        final List<GetSongCallback> mCallbacks = new ArrayList<>(1);
+
+        SongLoad(@NonNull String id, @NonNull GetSongCallback callback) {
+            mId = id;
+            mCallbacks.add(callback);
+        }
+
+        @Override
+        public void onSongLoaded(Song song) {
+            if (song != null) {
+                mCachedSongs.putLoaded(song, mCacheVersion);
+            }
+            for (GetSongCallback callback : complete()) {
+                callback.onSongLoaded(song);
+            }
+        }
+
+        @Override
+        public void onDataNotAvailable() {
+            mCachedSongs.markMissing(mId, mCacheVersion);
+            for (GetSongCallback callback : complete()) {
+                callback.onDataNotAvailable();
+            }
+        }
+
+        private List<GetSongCallback> complete() {
+            synchronized (mInFlightLock) {
+                if (mInFlightSongLoads.get(mId) == this) {
+                    mInFlightSongLoads.remove(mId);
+                }
+                return new ArrayList<>(mCallbacks);
+            }
+        }
+    }
+
+    /**
+     * A single song lookup that asks the local data source first and the remote one too if the
+     * local one hasn't found the song within the hedge delay. The first song found is reported.
+     * The other lookup can't be interrupted once started, so its answer is ignored; a remote
+     * lookup that hasn't started yet is cancelled.
+     */
+    private final class HedgedSongLoad {
+
+        private final String mId;
+
+        private final GetSongCallback mCallback;
+
+        // All guarded by this
+        private boolean mDone;
+        private boolean mLocalFailed;
+        private boolean mRemoteStarted;
+        private boolean mRemoteFailed;
+        private ScheduledFuture<?> mPendingRemote;
+
+        HedgedSongLoad(@NonNull String id, @NonNull GetSongCallback callback) {
+            mId = id;
+            mCallback = callback;
+        }
+
+        void start(long hedgeDelayMillis) {
+            if (hedgeDelayMillis == 0) {
+                startRemote();
+            } else {
+                synchronized (this) {
+                    // Null once the repository is destroyed: the remote lookup then waits for the
+                    // local one to fail
+                    mPendingRemote = scheduleHedge(new Runnable() {
+                        @Override
+                        public void run() {
+                            startRemote();
+                        }
+                    }, hedgeDelayMillis);
+                }
+            }
+
+            mTasksLocalDataSource.getSong(mId, new GetSongCallback() {
+                @Override
+                public void onSongLoaded(Song song) {
+                    if (song == null) {
+                        onLocalFailed();
+                    } else {
+                        onFound(song);
+                    }
+                }
+
+                @Override
+                public void onDataNotAvailable() {
+                    onLocalFailed();
+                }
+            });
+        }
+
+        private void startRemote() {
+            synchronized (this) {
+                if (mDone || mRemoteStarted) {
+                    return;
+                }
+                mRemoteStarted = true;
+            }
+            // A lookup that throws never answers, and the local miss may be waiting for it
+            try {
+                mTasksRemoteDataSource.getSong(mId, new GetSongCallback() {
+                    @Override
+                    public void onSongLoaded(Song song) {
+                        if (song == null) {
+                            onRemoteFailed();
+                        } else {
+                            onFound(song);
+                        }
+                    }
+
+                    @Override
+                    public void onDataNotAvailable() {
+                        onRemoteFailed();
+                    }
+                });
+            } catch (RuntimeException e) {
+                Log.w(TAG, "Remote lookup of song " + mId + " failed", e);
+                onRemoteFailed();
+            } catch (Error e) {
+                onRemoteFailed();
+                throw e;
+            }
+        }
+
+        private void onFound(Song song) {
+            synchronized (this) {
+                if (mDone) {
+                    return;
+                }
+                finish();
+            }
+            mCallback.onSongLoaded(song);
+        }
+
+        private void onLocalFailed() {
+            boolean remoteFailed;
+            synchronized (this) {
+                if (mDone) {
+                    return;
+                }
+                mLocalFailed = true;
+                remoteFailed = mRemoteFailed;
+                if (mRemoteStarted && !remoteFailed) {
+                    // The remote lookup is running: wait for it
+                    return;
+                }
+            }
+            if (remoteFailed) {
+                notFound();
+            } else {
+                // No point waiting for the hedge delay anymore
+                startRemote();
+            }
+        }
+
+        private void onRemoteFailed() {
+            synchronized (this) {
+                mRemoteFailed = true;
+                if (mDone || !mLocalFailed) {
+                    return;
+                }
+            }
+            notFound();
+        }
+
+        private void notFound() {
+            synchronized (this) {
+                if (mDone) {
+                    return;
+                }
+                finish();
+            }
+            mCallback.onDataNotAvailable();
+        }
+
+        /**
+         * Called with the lock held.
+         */
+        private void finish() {
+            mDone = true;
+            if (mPendingRemote != null) {
+                mPendingRemote.cancel(false);
+            }
+        }
+    }
+
+    /**
+     * Told when a background reload finds that the songs differ from what was last served.
+     */
+    public interface SongsObserver {
+
+        /**
+         * Called on the thread that completed the reload, with the cache already updated.
+         */
+        void onSongsChanged(@NonNull SongsDiff diff);
+    }
+
+    /**
+     * Answers a page request from a full load.
+     */
+    private static final class PageSlicer implements LoadSongsCallback {
+
+        private final int mOffset;
+
+        private final int mLimit;
+
+        private final LoadSongsPageCallback mCallback;
+
+        PageSlicer(int offset, int limit, @NonNull LoadSongsPageCallback callback) {
+            mOffset = offset;
+            mLimit = limit;
+            mCallback = callback;
+        }
+
+        @Override
+        public void onSongsLoaded(List<Song> songs) {
+            SongsPages.deliverPage(songs, mOffset, mLimit, mCallback);
+        }
+
+        @Override
+        public void onDataNotAvailable() {
+            mCallback.onDataNotAvailable();
         }
     }
 }
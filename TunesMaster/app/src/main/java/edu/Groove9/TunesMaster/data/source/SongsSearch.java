@@ -0,0 +1,147 @@
+/*
+ * Copyright 2016, The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.Groove9.TunesMaster.data.source;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import edu.Groove9.TunesMaster.playlist.domain.model.Song;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Query parsing and matching shared by the {@link SongsDataSource#searchSongs} implementations.
+ * <p>
+ * A query is split into terms on anything that isn't a letter or a digit. A song matches if, for
+ * every term, a word of its title or description starts with that term, ignoring case. Case is
+ * folded for all of Unicode, so full-text indexes searched with these terms must fold it the same
+ * way, see {@link #isAscii(List)}.
+ */
+public final class SongsSearch {
+
+    private SongsSearch() {}
+
+    public static void checkSearchArguments(@NonNull String query, int limit) {
+        checkNotNull(query);
+        checkArgument(limit > 0, "limit must be positive");
+    }
+
+    /**
+     * @return the lower case terms of {@code query}, empty if it has none
+     */
+    @NonNull
+    public static List<String> terms(@NonNull String query) {
+        List<String> terms = new ArrayList<>();
+        String lowerCase = query.toLowerCase(Locale.ROOT);
+        int start = -1;
+        for (int i = 0; i <= lowerCase.length(); i++) {
+            boolean wordChar = i < lowerCase.length()
+                    && Character.isLetterOrDigit(lowerCase.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                terms.add(lowerCase.substring(start, i));
+                start = -1;
+            }
+        }
+        return terms;
+    }
+
+    /**
+     * @return a full-text MATCH expression requiring a prefix match on every term. Terms only
+     * hold letters and digits, so they can't contain query syntax.
+     */
+    @NonNull
+    public static String toMatchExpression(@NonNull List<String> terms) {
+        StringBuilder expression = new StringBuilder();
+        for (String term : terms) {
+            if (expression.length() > 0) {
+                expression.append(' ');
+            }
+            expression.append(term).append('*');
+        }
+        return expression.toString();
+    }
+
+    /**
+     * @return true if no term has a character outside ASCII. Such terms find the same songs in an
+     * index that only folds the case of ASCII letters.
+     */
+    public static boolean isAscii(@NonNull List<String> terms) {
+        for (String term : terms) {
+            for (int i = 0; i < term.length(); i++) {
+                if (term.charAt(i) > 0x7f) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Scans {@code songs} in order, for sources without an index.
+     */
+    @NonNull
+    public static List<Song> search(@NonNull List<Song> songs, @NonNull String query, int limit) {
+        checkSearchArguments(query, limit);
+        List<String> terms = terms(query);
+        List<Song> matches = new ArrayList<>();
+        if (terms.isEmpty()) {
+            return matches;
+        }
+        for (Song song : songs) {
+            if (matches(song, terms)) {
+                matches.add(song);
+                if (matches.size() == limit) {
+                    break;
+                }
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * @param terms as returned by {@link #terms(String)}
+     * @return true if {@code song} matches every term
+     */
+    public static boolean matches(@NonNull Song song, @NonNull List<String> terms) {
+        List<String> words = terms(nullToEmpty(song.getTitle()));
+        words.addAll(terms(nullToEmpty(song.getDescription())));
+        for (String term : terms) {
+            boolean found = false;
+            for (String word : words) {
+                if (word.startsWith(term)) {
+                    found = true;
+                    break;
+                }
+            }
+            if (!found) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String nullToEmpty(@Nullable String value) {
+        return value == null ? "" : value;
+    }
+}
@@ -0,0 +1,354 @@
+/*
+ * Copyright 2016, The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.Groove9.TunesMaster.data.source.local;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import android.content.Context;
+import android.support.annotation.NonNull;
+
+import edu.Groove9.TunesMaster.data.source.SongsBatches;
+import edu.Groove9.TunesMaster.data.source.SongsChangeSet;
+import edu.Groove9.TunesMaster.data.source.SongsDataSource;
+import edu.Groove9.TunesMaster.data.source.SongsPages;
+import edu.Groove9.TunesMaster.data.source.SongsSearch;
+import edu.Groove9.TunesMaster.playlist.domain.model.Song;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Concrete implementation of a data source as a memory-mapped binary file, see {@link SongStore}.
+ * <p>
+ * An alternative to {@link SongsLocalDataSource} for large libraries: opening the store reads a
+ * header instead of running queries, and songs are decoded straight from the mapped records
+ * instead of going through cursors. Songs are listed in the order they were last saved.
+ * <p>
+ * Looking a song up by id needs an index of the ids, which is only built on the first lookup or
+ * write. All operations are serialised.
+ */
+public class BinarySongsLocalDataSource implements SongsDataSource {
+
+    private static final String STORE_NAME = "songs";
+
+    private static BinarySongsLocalDataSource INSTANCE;
+
+    private final Context mContext;
+
+    /**
+     * Opened on first use. Guarded by {@code this}, like everything below.
+     */
+    private SongStore mStore;
+
+    /**
+     * Record number of each song, or null until needed.
+     */
+    private Map<String, Integer> mRecordsById;
+
+    // Prevent direct instantiation.
+    private BinarySongsLocalDataSource(@NonNull Context context) {
+        checkNotNull(context);
+        mContext = context.getApplicationContext();
+    }
+
+    public static BinarySongsLocalDataSource getInstance(@NonNull Context context) {
+        if (INSTANCE == null) {
+            INSTANCE = new BinarySongsLocalDataSource(context);
+        }
+        return INSTANCE;
+    }
+
+    /**
+     * Note: {@link LoadSongsCallback#onDataNotAvailable()} is fired if the store is new or empty.
+     */
+    @Override
+    public void getSongs(@NonNull LoadSongsCallback callback) {
+        List<Song> songs;
+        synchronized (this) {
+            SongStore store = getStore();
+            songs = new ArrayList<>(store.getLiveCount());
+            for (int record = 0; record < store.getRecordCount(); record++) {
+                if (store.isLive(record)) {
+                    songs.add(store.read(record));
+                }
+            }
+        }
+
+        if (songs.isEmpty()) {
+            callback.onDataNotAvailable();
+        } else {
+            callback.onSongsLoaded(songs);
+        }
+    }
+
+    /**
+     * Decodes only the records of the page. Finding the first one costs nothing unless songs were
+     * replaced or deleted since the last compaction.
+     * <p>
+     * Note: {@link LoadSongsPageCallback#onDataNotAvailable()} is fired if the store is new or
+     * empty.
+     */
+    @Override
+    public void getSongsPage(int offset, int limit, @NonNull LoadSongsPageCallback callback) {
+        SongsPages.checkPageArguments(offset, limit);
+        List<Song> songs = new ArrayList<>(Math.min(limit, 256));
+        int liveCount;
+        synchronized (this) {
+            SongStore store = getStore();
+            liveCount = store.getLiveCount();
+            int record = firstRecordOf(store, offset);
+            while (record < store.getRecordCount() && songs.size() < limit) {
+                if (store.isLive(record)) {
+                    songs.add(store.read(record));
+                }
+                record++;
+            }
+        }
+
+        if (liveCount == 0) {
+            // This will be called if the store is new or just empty.
+            callback.onDataNotAvailable();
+        } else {
+            callback.onPageLoaded(songs, (long) offset + songs.size() < liveCount);
+        }
+    }
+
+    /**
+     * @return the number of the record of the song at {@code position} in the list, or the
+     * record count if there is no such song
+     */
+    private static int firstRecordOf(SongStore store, int position) {
+        if (store.getLiveCount() == store.getRecordCount()) {
+            // No dead records: songs and records line up
+            return Math.min(position, store.getRecordCount());
+        }
+        int skipped = 0;
+        for (int record = 0; record < store.getRecordCount(); record++) {
+            if (store.isLive(record)) {
+                if (skipped == position) {
+                    return record;
+                }
+                skipped++;
+            }
+        }
+        return store.getRecordCount();
+    }
+
+    /**
+     * Note: {@link GetSongCallback#onDataNotAvailable()} is fired if the {@link Song} isn't
+     * found.
+     */
+    @Override
+    public void getSong(@NonNull String id, @NonNull GetSongCallback callback) {
+        Song song = null;
+        synchronized (this) {
+            Integer record = getRecordsById().get(id);
+            if (record != null) {
+                song = getStore().read(record);
+            }
+        }
+
+        if (song != null) {
+            callback.onSongLoaded(song);
+        } else {
+            callback.onDataNotAvailable();
+        }
+    }
+
+    @Override
+    public void getSongs(@NonNull Collection<String> ids, @NonNull GetSongsCallback callback) {
+        Map<String, Song> songs = new HashMap<>();
+        synchronized (this) {
+            Map<String, Integer> recordsById = getRecordsById();
+            for (String id : SongsBatches.distinct(ids)) {
+                Integer record = recordsById.get(id);
+                if (record != null) {
+                    songs.put(id, getStore().read(record));
+                }
+            }
+        }
+        SongsBatches.deliver(ids, songs, callback);
+    }
+
+    @Override
+    public void searchSongs(@NonNull final String query, final int limit,
+                            @NonNull final LoadSongsCallback callback) {
+        SongsSearch.checkSearchArguments(query, limit);
+        getSongs(new LoadSongsCallback() {
+            @Override
+            public void onSongsLoaded(List<Song> songs) {
+                callback.onSongsLoaded(SongsSearch.search(songs, query, limit));
+            }
+
+            @Override
+            public void onDataNotAvailable() {
+                callback.onSongsLoaded(new ArrayList<Song>());
+            }
+        });
+    }
+
+    @Override
+    public synchronized void saveSong(@NonNull Song song) {
+        checkNotNull(song);
+        try {
+            put(song);
+            commit();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Appends all songs, then flushes the store once.
+     */
+    @Override
+    public synchronized void saveSongs(@NonNull List<Song> songs) {
+        checkNotNull(songs);
+        try {
+            for (Song song : songs) {
+                put(song);
+            }
+            commit();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Note: {@link LoadChangesCallback#onDataNotAvailable()} is always fired, since changes are
+     * synced from the remote data source to this one and not the other way around.
+     */
+    @Override
+    public void getChangesSince(long cursor, @NonNull LoadChangesCallback callback) {
+        callback.onDataNotAvailable();
+    }
+
+    @Override
+    public synchronized void applyChanges(@NonNull SongsChangeSet changes) {
+        checkNotNull(changes);
+        try {
+            if (changes.isReset()) {
+                clear();
+            }
+            for (Song song : changes.getSavedSongs()) {
+                put(song);
+            }
+            for (String id : changes.getDeletedIds()) {
+                remove(id);
+            }
+            SongStore store = getStore();
+            if (changes.isReset() || changes.getCursor() > store.getSyncCursor()) {
+                store.setSyncCursor(changes.getCursor());
+            }
+            commit();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public synchronized long getSyncCursor() {
+        return getStore().getSyncCursor();
+    }
+
+    @Override
+    public void refreshSongs() {
+        // Not required because the {@link SongsRepository} handles the logic of refreshing the
+        // tasks from all the available data sources.
+    }
+
+    /**
+     * Also forgets the sync cursor, so the next sync starts from scratch.
+     */
+    @Override
+    public synchronized void deleteAllSongs() {
+        clear();
+        getStore().setSyncCursor(SongsChangeSet.NO_CURSOR);
+        getStore().force();
+    }
+
+    @Override
+    public synchronized void deleteSong(@NonNull String taskId) {
+        checkNotNull(taskId);
+        try {
+            remove(taskId);
+            commit();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private void put(Song song) throws IOException {
+        remove(song.getId());
+        getRecordsById().put(song.getId(), getStore().append(song));
+    }
+
+    private void remove(String id) {
+        Integer record = getRecordsById().remove(id);
+        if (record != null) {
+            getStore().markDeleted(record);
+        }
+    }
+
+    private void clear() {
+        getStore().clear();
+        if (mRecordsById != null) {
+            mRecordsById.clear();
+        }
+    }
+
+    /**
+     * Makes the writes so far durable, then compacts the store if it's worth it.
+     */
+    private void commit() throws IOException {
+        SongStore store = getStore();
+        store.force();
+        if (store.compactIfNeeded()) {
+            // Records were renumbered
+            mRecordsById = null;
+        }
+    }
+
+    private SongStore getStore() {
+        if (mStore == null) {
+            try {
+                mStore = new SongStore(mContext.getFilesDir(), STORE_NAME);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+        return mStore;
+    }
+
+    private Map<String, Integer> getRecordsById() {
+        if (mRecordsById == null) {
+            SongStore store = getStore();
+            Map<String, Integer> recordsById = new HashMap<>(store.getLiveCount() * 2);
+            for (int record = 0; record < store.getRecordCount(); record++) {
+                if (store.isLive(record)) {
+                    recordsById.put(store.readId(record), record);
+                }
+            }
+            mRecordsById = recordsById;
+        }
+        return mRecordsById;
+    }
+}
@@ -17,30 +17,63 @@
 package edu.Groove9.TunesMaster.data.source.local;
 
 import android.content.Context;
+import android.content.SharedPreferences;
+import android.content.pm.PackageInfo;
+import android.content.pm.PackageManager;
 import android.net.Uri;
 import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.google.common.base.Joiner;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.lang.String;
+import java.util.Map;
 import java.util.StringTokenizer;
 
+import edu.Groove9.TunesMaster.data.source.SongsBatches;
+import edu.Groove9.TunesMaster.data.source.SongsChangeSet;
 import edu.Groove9.TunesMaster.data.source.SongsDataSource;
+import edu.Groove9.TunesMaster.data.source.SongsPages;
+import edu.Groove9.TunesMaster.data.source.SongsSearch;
 import edu.Groove9.TunesMaster.playlist.domain.model.Song;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
 /**
- * Concrete implementation of a data source as a db.
+ * Concrete implementation of a data source over the songs bundled in the assets.
+ * <p>
+ * The assets are scanned once per process into a catalog indexed by id. The listing of the music
+ * folder is also saved along with the version of the APK, so later launches of the same APK skip
+ * listing the assets altogether.
  */
 public class PrototypeSongsLocalDataSource implements SongsDataSource {
 
     private static final String music_folder = "music";
     private static PrototypeSongsLocalDataSource INSTANCE;
 
+    private static final String CATALOG_PREFERENCES = "asset_catalog";
+    private static final String KEY_APK_VERSION = "apk_version";
+    private static final String KEY_FILES = "files";
+    private static final String FILE_SEPARATOR = "\n";
+
     private Context context;
 
+    /**
+     * Bundled songs by id, in listing order. Built on first use, then never modified.
+     */
+    private volatile Map<String, Song> mCatalog;
+
+    /**
+     * The values of {@link #mCatalog}, in order.
+     */
+    private volatile List<Song> mCatalogSongs;
+
     // Prevent direct instantiation.
     private PrototypeSongsLocalDataSource(@NonNull Context context) {
         checkNotNull(context);
@@ -55,36 +88,102 @@ public class PrototypeSongsLocalDataSource implements SongsDataSource {
     }
 
     /**
-     * Note: {@link LoadSongsCallback#onDataNotAvailable()} is fired if the database doesn't exist
-     * or the table is empty.
+     * Note: {@link LoadSongsCallback#onDataNotAvailable()} is fired if there are no songs at all.
      */
     @Override
     public void getSongs(@NonNull LoadSongsCallback callback) {
-        List<Song> songs = loadSongsFromAssetsFolder();
+        List<Song> songs = getCatalogSongs();
         if (songs.isEmpty()) {
-            // This will be called if the table is new or just empty.
             callback.onDataNotAvailable();
         } else {
-            callback.onSongsLoaded(songs);
+            // Callers are free to modify the list
+            callback.onSongsLoaded(new ArrayList<Song>(songs));
         }
 
     }
 
-    private List<Song> loadSongsFromAssetsFolder() {
-        List<Song> songs = new ArrayList<Song>();
+    /**
+     * Note: {@link LoadSongsPageCallback#onDataNotAvailable()} is fired if there are no songs at
+     * all.
+     */
+    @Override
+    public void getSongsPage(int offset, int limit, @NonNull LoadSongsPageCallback callback) {
+        List<Song> songs = getCatalogSongs();
+        if (songs.isEmpty()) {
+            callback.onDataNotAvailable();
+        } else {
+            SongsPages.deliverPage(songs, offset, limit, callback);
+        }
+    }
+
+    private List<Song> getCatalogSongs() {
+        getCatalog();
+        return mCatalogSongs;
+    }
+
+    private Map<String, Song> getCatalog() {
+        Map<String, Song> catalog = mCatalog;
+        if (catalog == null) {
+            synchronized (this) {
+                if (mCatalog == null) {
+                    Map<String, Song> songsById = new LinkedHashMap<String, Song>();
+                    for (String file : listMusicFiles()) {
+                        Song song = getSongFromFile(file);
+                        songsById.put(song.getId(), song);
+                    }
+                    mCatalogSongs = Collections.unmodifiableList(
+                            new ArrayList<Song>(songsById.values()));
+                    mCatalog = Collections.unmodifiableMap(songsById);
+                }
+                catalog = mCatalog;
+            }
+        }
+        return catalog;
+    }
+
+    /**
+     * Lists the music assets, or returns the listing saved by an earlier launch of the same APK.
+     */
+    private String[] listMusicFiles() {
+        SharedPreferences preferences =
+                context.getSharedPreferences(CATALOG_PREFERENCES, Context.MODE_PRIVATE);
+        String apkVersion = getApkVersion();
+        if (apkVersion != null && apkVersion.equals(preferences.getString(KEY_APK_VERSION, null))) {
+            String files = preferences.getString(KEY_FILES, null);
+            if (files != null) {
+                return files.isEmpty() ? new String[0] : files.split(FILE_SEPARATOR);
+            }
+        }
 
         String[] assetFiles;
         try {
             assetFiles = context.getAssets().list(music_folder);
-            for (String file : assetFiles) {
-                Song song = getSongFromFile(file);
-                songs.add(song);
-            }
         } catch (IOException e) {
             throw new RuntimeException(e.toString());
         }
 
-        return songs;
+        if (apkVersion != null) {
+            preferences.edit()
+                    .putString(KEY_APK_VERSION, apkVersion)
+                    .putString(KEY_FILES, Joiner.on(FILE_SEPARATOR).join(assetFiles))
+                    .apply();
+        }
+        return assetFiles;
+    }
+
+    /**
+     * @return an identifier of the installed APK, which changes whenever the app is updated or
+     * reinstalled, or null if it can't be read
+     */
+    @Nullable
+    private String getApkVersion() {
+        try {
+            PackageInfo info = context.getPackageManager()
+                    .getPackageInfo(context.getPackageName(), 0);
+            return info.versionCode + "/" + info.lastUpdateTime;
+        } catch (PackageManager.NameNotFoundException e) {
+            return null;
+        }
     }
 
     private static Song getSongFromFile(String filename) {
@@ -95,18 +194,13 @@ public class PrototypeSongsLocalDataSource implements SongsDataSource {
         return new Song(title, description, id, source);
     }
 
-    public static Song getSongFromId(String id) {
-        String filename = id;
-        return getSongFromFile(filename);
-    }
-
     /**
      * Note: {@link GetSongCallback#onDataNotAvailable()} is fired if the {@link Song} isn't
      * found.
      */
     @Override
     public void getSong(@NonNull String id, @NonNull GetSongCallback callback) {
-        Song song = getSongFromId(id);
+        Song song = getCatalog().get(id);
         if (song != null) {
             callback.onSongLoaded(song);
         } else {
@@ -114,11 +208,43 @@ public class PrototypeSongsLocalDataSource implements SongsDataSource {
         }
     }
 
+    @Override
+    public void getSongs(@NonNull Collection<String> ids, @NonNull GetSongsCallback callback) {
+        SongsBatches.deliver(ids, getCatalog(), callback);
+    }
+
+    @Override
+    public void searchSongs(@NonNull String query, int limit,
+                            @NonNull LoadSongsCallback callback) {
+        callback.onSongsLoaded(SongsSearch.search(getCatalogSongs(), query, limit));
+    }
+
     @Override
     public void saveSong(@NonNull Song song) {
         // do nothing
     }
 
+    @Override
+    public void saveSongs(@NonNull List<Song> songs) {
+        // do nothing
+    }
+
+    @Override
+    public void getChangesSince(long cursor, @NonNull LoadChangesCallback callback) {
+        // The bundled songs never change
+        callback.onDataNotAvailable();
+    }
+
+    @Override
+    public void applyChanges(@NonNull SongsChangeSet changes) {
+        // do nothing
+    }
+
+    @Override
+    public long getSyncCursor() {
+        return SongsChangeSet.NO_CURSOR;
+    }
+
     @Override
     public void refreshSongs() {
         // Not required because the {@link SongsRepository} handles the logic of refreshing the
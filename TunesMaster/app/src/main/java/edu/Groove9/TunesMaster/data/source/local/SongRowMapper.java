@@ -0,0 +1,74 @@
+/*
+ * Copyright 2016, The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.Groove9.TunesMaster.data.source.local;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import android.database.Cursor;
+import android.support.annotation.NonNull;
+
+import edu.Groove9.TunesMaster.playlist.domain.model.SerializableUri;
+import edu.Groove9.TunesMaster.playlist.domain.model.Song;
+
+/**
+ * Maps rows of a cursor over {@link #PROJECTION} to {@link Song}s. Column indices are resolved
+ * once per cursor rather than once per row, and the source uri is only parsed when it is first
+ * used.
+ */
+final class SongRowMapper {
+
+    /**
+     * Columns to query for rows mapped by this class.
+     */
+    static final String[] PROJECTION = {
+            SongsPersistenceContract.TaskEntry.COLUMN_NAME_ENTRY_ID,
+            SongsPersistenceContract.TaskEntry.COLUMN_NAME_SOURCE,
+            SongsPersistenceContract.TaskEntry.COLUMN_NAME_TITLE,
+            SongsPersistenceContract.TaskEntry.COLUMN_NAME_DESCRIPTION
+    };
+
+    private final int mIdIndex;
+
+    private final int mSourceIndex;
+
+    private final int mTitleIndex;
+
+    private final int mDescriptionIndex;
+
+    SongRowMapper(@NonNull Cursor cursor) {
+        checkNotNull(cursor);
+        mIdIndex = cursor.getColumnIndexOrThrow(
+                SongsPersistenceContract.TaskEntry.COLUMN_NAME_ENTRY_ID);
+        mSourceIndex = cursor.getColumnIndexOrThrow(
+                SongsPersistenceContract.TaskEntry.COLUMN_NAME_SOURCE);
+        mTitleIndex = cursor.getColumnIndexOrThrow(
+                SongsPersistenceContract.TaskEntry.COLUMN_NAME_TITLE);
+        mDescriptionIndex = cursor.getColumnIndexOrThrow(
+                SongsPersistenceContract.TaskEntry.COLUMN_NAME_DESCRIPTION);
+    }
+
+    /**
+     * @return the song at the current position of {@code cursor}, which must be the cursor this
+     * mapper was created for
+     */
+    @NonNull
+    Song map(@NonNull Cursor cursor) {
+        return new Song(cursor.getString(mTitleIndex), cursor.getString(mDescriptionIndex),
+                cursor.getString(mIdIndex),
+                SerializableUri.fromString(cursor.getString(mSourceIndex)));
+    }
+}
@@ -0,0 +1,409 @@
+/*
+ * Copyright 2016, The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.Groove9.TunesMaster.data.source.local;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import edu.Groove9.TunesMaster.data.source.SongsChangeSet;
+import edu.Groove9.TunesMaster.playlist.domain.model.SerializableUri;
+import edu.Groove9.TunesMaster.playlist.domain.model.Song;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Append-only store of song metadata in two memory-mapped files, used by
+ * {@link BinarySongsLocalDataSource}.
+ * <p>
+ * The record file starts with a header, followed by one fixed-size record per song saved: a flags
+ * word, then the offset and length of the id, source, title and description in the string pool.
+ * The pool file holds the UTF-8 bytes of those strings back to back. Opening the store maps both
+ * files and reads the header, nothing else: a record is only decoded when its song is read.
+ * <p>
+ * Saving a song appends a record and clears the live flag of the record it replaces. Once more
+ * than half of the records are dead, {@link #compactIfNeeded()} rewrites the live ones into a new
+ * generation of the pool and a new record file, flushes them, and renames the new record file
+ * over the old one. The header names the pool generation it uses. Until the rename the previous
+ * files are untouched, and the previous pool file is only deleted the next time the store is
+ * opened, so whichever record file is in place after a crash still has its pool.
+ * <p>
+ * The counts in the header are written after the records and strings they cover, so if the
+ * process dies mid-write, at worst the songs being written are lost. Mapped pages may reach the
+ * disk in any order though: only what {@link #force()} flushed is sure to survive a power loss.
+ * <p>
+ * Not thread-safe: {@link BinarySongsLocalDataSource} serialises access.
+ */
+final class SongStore {
+
+    private static final int MAGIC = 0x544D5342;
+
+    private static final int FORMAT_VERSION = 1;
+
+    private static final int HEADER_MAGIC = 0;
+    private static final int HEADER_FORMAT_VERSION = 4;
+    private static final int HEADER_POOL_GENERATION = 8;
+    static final int HEADER_RECORD_COUNT = 12;
+    private static final int HEADER_LIVE_COUNT = 16;
+    private static final int HEADER_POOL_SIZE = 20;
+    private static final int HEADER_SYNC_CURSOR = 24;
+    static final int HEADER_SIZE = 32;
+
+    private static final int RECORD_FLAGS = 0;
+    private static final int RECORD_ID = 4;
+    private static final int RECORD_SOURCE = 12;
+    private static final int RECORD_TITLE = 20;
+    private static final int RECORD_DESCRIPTION = 28;
+    static final int RECORD_SIZE = 36;
+
+    private static final int MAX_RECORDS = (Integer.MAX_VALUE - HEADER_SIZE) / RECORD_SIZE;
+
+    private static final int FLAG_LIVE = 1;
+
+    private static final int NULL_LENGTH = -1;
+
+    /**
+     * Files are mapped, and grown, by at least this many bytes.
+     */
+    private static final int MIN_MAPPED_SIZE = 64 * 1024;
+
+    /**
+     * Smaller stores are never compacted.
+     */
+    static final int MIN_RECORDS_TO_COMPACT = 1024;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final File mDirectory;
+
+    private final String mName;
+
+    /**
+     * The file {@link #mRecords} maps. Only differs from {@link #getRecordFile()} while
+     * {@link #compactIfNeeded()} writes the compacted records.
+     */
+    private File mRecordFile;
+
+    private MappedByteBuffer mRecords;
+
+    private MappedByteBuffer mPool;
+
+    private int mPoolGeneration;
+
+    private int mRecordCount;
+
+    private int mLiveCount;
+
+    private int mPoolSize;
+
+    /**
+     * Opens the store named {@code name} in {@code directory}, creating it if needed. A store
+     * written in another format is discarded.
+     */
+    SongStore(@NonNull File directory, @NonNull String name) throws IOException {
+        mDirectory = checkNotNull(directory);
+        mName = checkNotNull(name);
+        File recordFile = getRecordFile();
+        mRecordFile = recordFile;
+        mRecords = map(recordFile, recordFile.length());
+        if (recordFile.length() >= HEADER_SIZE
+                && mRecords.getInt(HEADER_MAGIC) == MAGIC
+                && mRecords.getInt(HEADER_FORMAT_VERSION) == FORMAT_VERSION) {
+            mPoolGeneration = mRecords.getInt(HEADER_POOL_GENERATION);
+            mRecordCount = mRecords.getInt(HEADER_RECORD_COUNT);
+            mLiveCount = mRecords.getInt(HEADER_LIVE_COUNT);
+            mPoolSize = mRecords.getInt(HEADER_POOL_SIZE);
+            File poolFile = getPoolFile(mPoolGeneration);
+            mPool = map(poolFile, poolFile.length());
+            boolean consistent = mRecordCount >= 0 && mRecordCount <= MAX_RECORDS
+                    && mLiveCount >= 0 && mLiveCount <= mRecordCount
+                    && mPoolSize >= 0 && mPoolSize <= poolFile.length()
+                    && recordOffset(mRecordCount) <= recordFile.length();
+            if (!consistent) {
+                reset();
+            }
+        } else {
+            reset();
+        }
+        deleteOtherPoolFiles();
+    }
+
+    /**
+     * @return the number of records, live or not
+     */
+    int getRecordCount() {
+        return mRecordCount;
+    }
+
+    /**
+     * @return the number of songs
+     */
+    int getLiveCount() {
+        return mLiveCount;
+    }
+
+    boolean isLive(int record) {
+        return (mRecords.getInt(recordOffset(record) + RECORD_FLAGS) & FLAG_LIVE) != 0;
+    }
+
+    @NonNull
+    String readId(int record) {
+        return readString(recordOffset(record) + RECORD_ID);
+    }
+
+    @NonNull
+    Song read(int record) {
+        int offset = recordOffset(record);
+        return new Song(readString(offset + RECORD_TITLE),
+                readString(offset + RECORD_DESCRIPTION), readString(offset + RECORD_ID),
+                SerializableUri.fromString(readString(offset + RECORD_SOURCE)));
+    }
+
+    /**
+     * Appends a live record for {@code song}. Doesn't check whether the song is stored already.
+     *
+     * @return the number of the new record
+     */
+    int append(@NonNull Song song) throws IOException {
+        checkState(mRecordCount < MAX_RECORDS, "record file is full");
+        int record = mRecordCount;
+        int offset = recordOffset(record);
+        ensureRecordCapacity(offset + RECORD_SIZE);
+        writeString(offset + RECORD_ID, song.getId());
+        writeString(offset + RECORD_SOURCE, song.getmSource().getUriString());
+        writeString(offset + RECORD_TITLE, song.getTitle());
+        writeString(offset + RECORD_DESCRIPTION, song.getDescription());
+        mRecords.putInt(offset + RECORD_FLAGS, FLAG_LIVE);
+        mRecordCount++;
+        mLiveCount++;
+        writeCounts();
+        return record;
+    }
+
+    void markDeleted(int record) {
+        checkState(isLive(record), "record %s is deleted already", record);
+        mRecords.putInt(recordOffset(record) + RECORD_FLAGS, 0);
+        mLiveCount--;
+        writeCounts();
+    }
+
+    /**
+     * Removes every song, keeping the files mapped for reuse.
+     */
+    void clear() {
+        mRecordCount = 0;
+        mLiveCount = 0;
+        mPoolSize = 0;
+        writeCounts();
+    }
+
+    long getSyncCursor() {
+        return mRecords.getLong(HEADER_SYNC_CURSOR);
+    }
+
+    void setSyncCursor(long cursor) {
+        mRecords.putLong(HEADER_SYNC_CURSOR, cursor);
+    }
+
+    /**
+     * Flushes the mapped pages to disk.
+     */
+    void force() {
+        mPool.force();
+        mRecords.force();
+    }
+
+    /**
+     * Rewrites the live records if dead ones outnumber them.
+     *
+     * @return true if the store was compacted, which renumbers the records
+     */
+    boolean compactIfNeeded() throws IOException {
+        if (mRecordCount < MIN_RECORDS_TO_COMPACT || mRecordCount - mLiveCount <= mLiveCount) {
+            return false;
+        }
+        List<Song> songs = new ArrayList<>(mLiveCount);
+        for (int record = 0; record < mRecordCount; record++) {
+            if (isLive(record)) {
+                songs.add(read(record));
+            }
+        }
+        long syncCursor = getSyncCursor();
+        File recordFile = mRecordFile;
+        MappedByteBuffer records = mRecords;
+        MappedByteBuffer pool = mPool;
+        int generation = mPoolGeneration;
+        int recordCount = mRecordCount;
+        int liveCount = mLiveCount;
+        int poolSize = mPoolSize;
+
+        File compactedFile = new File(mDirectory, mName + ".records.tmp");
+        try {
+            if (compactedFile.exists() && !compactedFile.delete()) {
+                throw new IOException("can't delete " + compactedFile);
+            }
+            startGeneration(compactedFile, generation + 1);
+            for (Song song : songs) {
+                append(song);
+            }
+            setSyncCursor(syncCursor);
+            force();
+            if (!compactedFile.renameTo(recordFile)) {
+                throw new IOException("can't rename " + compactedFile);
+            }
+            // The mapping follows the file through the rename
+            mRecordFile = recordFile;
+        } catch (IOException e) {
+            // Keep using the previous files, which weren't touched
+            mRecordFile = recordFile;
+            mRecords = records;
+            mPool = pool;
+            mPoolGeneration = generation;
+            mRecordCount = recordCount;
+            mLiveCount = liveCount;
+            mPoolSize = poolSize;
+            throw e;
+        }
+        // The previous pool file is deleted on the next open, see the class comment
+        return true;
+    }
+
+    private void reset() throws IOException {
+        startGeneration(getRecordFile(), 1);
+        force();
+    }
+
+    /**
+     * Maps an empty record file and a new pool file for {@code generation}.
+     */
+    private void startGeneration(File recordFile, int generation) throws IOException {
+        mRecordFile = recordFile;
+        mRecords = map(recordFile, MIN_MAPPED_SIZE);
+        mPool = map(getPoolFile(generation), MIN_MAPPED_SIZE);
+        mPoolGeneration = generation;
+        mRecords.putLong(HEADER_SYNC_CURSOR, SongsChangeSet.NO_CURSOR);
+        mRecords.putInt(HEADER_POOL_GENERATION, generation);
+        mRecords.putInt(HEADER_FORMAT_VERSION, FORMAT_VERSION);
+        mRecords.putInt(HEADER_MAGIC, MAGIC);
+        clear();
+    }
+
+    private void writeCounts() {
+        mRecords.putInt(HEADER_POOL_SIZE, mPoolSize);
+        mRecords.putInt(HEADER_LIVE_COUNT, mLiveCount);
+        mRecords.putInt(HEADER_RECORD_COUNT, mRecordCount);
+    }
+
+    @Nullable
+    private String readString(int field) {
+        int length = mRecords.getInt(field + 4);
+        if (length == NULL_LENGTH) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        ByteBuffer pool = mPool.duplicate();
+        pool.position(mRecords.getInt(field));
+        pool.get(bytes);
+        return new String(bytes, UTF_8);
+    }
+
+    private void writeString(int field, @Nullable String value) throws IOException {
+        if (value == null) {
+            mRecords.putInt(field, 0);
+            mRecords.putInt(field + 4, NULL_LENGTH);
+            return;
+        }
+        byte[] bytes = value.getBytes(UTF_8);
+        checkState(mPoolSize <= Integer.MAX_VALUE - bytes.length, "string pool is full");
+        ensurePoolCapacity(mPoolSize + bytes.length);
+        ByteBuffer pool = mPool.duplicate();
+        pool.position(mPoolSize);
+        pool.put(bytes);
+        mRecords.putInt(field, mPoolSize);
+        mRecords.putInt(field + 4, bytes.length);
+        mPoolSize += bytes.length;
+    }
+
+    private void ensureRecordCapacity(int size) throws IOException {
+        if (size > mRecords.capacity()) {
+            mRecords = map(mRecordFile, grow(mRecords.capacity(), size));
+        }
+    }
+
+    private void ensurePoolCapacity(int size) throws IOException {
+        if (size > mPool.capacity()) {
+            mPool = map(getPoolFile(mPoolGeneration), grow(mPool.capacity(), size));
+        }
+    }
+
+    private static long grow(int capacity, int size) {
+        return Math.max(size, Math.min((long) capacity * 2, Integer.MAX_VALUE));
+    }
+
+    /**
+     * Can't overflow for record numbers up to {@link #MAX_RECORDS}.
+     */
+    private static int recordOffset(int record) {
+        return HEADER_SIZE + record * RECORD_SIZE;
+    }
+
+    private File getRecordFile() {
+        return new File(mDirectory, mName + ".records");
+    }
+
+    private File getPoolFile(int generation) {
+        return new File(mDirectory, mName + ".pool." + generation);
+    }
+
+    private void deleteOtherPoolFiles() {
+        String prefix = mName + ".pool.";
+        String current = getPoolFile(mPoolGeneration).getName();
+        File[] files = mDirectory.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            if (file.getName().startsWith(prefix) && !file.getName().equals(current)) {
+                file.delete();
+            }
+        }
+    }
+
+    /**
+     * Maps the first {@code size} bytes of {@code file}, at least {@link #MIN_MAPPED_SIZE},
+     * growing the file if needed. The mapping stays valid once the file is closed.
+     */
+    private static MappedByteBuffer map(File file, long size) throws IOException {
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+        try {
+            return randomAccessFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0,
+                    Math.max(size, MIN_MAPPED_SIZE));
+        } finally {
+            randomAccessFile.close();
+        }
+    }
+}
@@ -17,11 +17,20 @@
 package edu.Groove9.TunesMaster.data.source.local;
 
 import android.content.Context;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
 import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteException;
 import android.database.sqlite.SQLiteOpenHelper;
 
 public class SongsDbHelper extends SQLiteOpenHelper {
-    public static final int DATABASE_VERSION = 1;
+    /**
+     * Version 2 replaced the unused TEXT primary key with an integer row id and added a unique
+     * index on the entry id. Version 3 added the full-text search index. Version 4 added the
+     * version column and the sync state table. Version 5 rebuilt the search index to fold case
+     * beyond ASCII.
+     */
+    public static final int DATABASE_VERSION = 5;
 
     public static final String DATABASE_NAME = "Songs.db";
 
@@ -29,31 +38,236 @@ public class SongsDbHelper extends SQLiteOpenHelper {
 
     private static final String BOOLEAN_TYPE = " INTEGER";
 
+    private static final String INTEGER_TYPE = " INTEGER";
+
     private static final String COMMA_SEP = ",";
 
-    private static final String SQL_CREATE_ENTRIES =
-            "CREATE TABLE " + SongsPersistenceContract.TaskEntry.TABLE_NAME + " (" +
-                    SongsPersistenceContract.TaskEntry._ID + TEXT_TYPE + " PRIMARY KEY," +
-                    SongsPersistenceContract.TaskEntry.COLUMN_NAME_ENTRY_ID + TEXT_TYPE + COMMA_SEP +
+    private static final String INDEX_ENTRY_ID =
+            SongsPersistenceContract.TaskEntry.TABLE_NAME + "_"
+                    + SongsPersistenceContract.TaskEntry.COLUMN_NAME_ENTRY_ID;
+
+    private static final String ENTRY_COLUMNS_V2 =
+            SongsPersistenceContract.TaskEntry._ID + " INTEGER PRIMARY KEY," +
+                    SongsPersistenceContract.TaskEntry.COLUMN_NAME_ENTRY_ID + TEXT_TYPE + " NOT NULL" + COMMA_SEP +
                     SongsPersistenceContract.TaskEntry.COLUMN_NAME_SOURCE + TEXT_TYPE + COMMA_SEP +
                     SongsPersistenceContract.TaskEntry.COLUMN_NAME_TITLE + TEXT_TYPE + COMMA_SEP +
                     SongsPersistenceContract.TaskEntry.COLUMN_NAME_DESCRIPTION + TEXT_TYPE + COMMA_SEP +
-                    SongsPersistenceContract.TaskEntry.COLUMN_NAME_COMPLETED + BOOLEAN_TYPE +
+                    SongsPersistenceContract.TaskEntry.COLUMN_NAME_COMPLETED + BOOLEAN_TYPE;
+
+    private static final String VERSION_COLUMN =
+            SongsPersistenceContract.TaskEntry.COLUMN_NAME_VERSION + INTEGER_TYPE;
+
+    private static final String SQL_CREATE_ENTRIES =
+            "CREATE TABLE " + SongsPersistenceContract.TaskEntry.TABLE_NAME + " (" +
+                    ENTRY_COLUMNS_V2 + COMMA_SEP + VERSION_COLUMN + " )";
+
+    /**
+     * The song table as it was created by version 2, which later migrations start from.
+     */
+    private static final String SQL_CREATE_ENTRIES_V2 =
+            "CREATE TABLE " + SongsPersistenceContract.TaskEntry.TABLE_NAME + " (" +
+                    ENTRY_COLUMNS_V2 + " )";
+
+    private static final String SQL_ADD_VERSION_COLUMN =
+            "ALTER TABLE " + SongsPersistenceContract.TaskEntry.TABLE_NAME + " ADD COLUMN " +
+                    VERSION_COLUMN;
+
+    private static final String SQL_CREATE_SYNC_STATE =
+            "CREATE TABLE IF NOT EXISTS " + SongsPersistenceContract.SyncStateEntry.TABLE_NAME +
+                    " (" +
+                    SongsPersistenceContract.SyncStateEntry.COLUMN_NAME_SOURCE + TEXT_TYPE +
+                    " PRIMARY KEY" + COMMA_SEP +
+                    SongsPersistenceContract.SyncStateEntry.COLUMN_NAME_CURSOR + INTEGER_TYPE +
             " )";
 
+    private static final String SQL_CREATE_ENTRY_ID_INDEX =
+            "CREATE UNIQUE INDEX " + INDEX_ENTRY_ID + " ON " +
+                    SongsPersistenceContract.TaskEntry.TABLE_NAME + " (" +
+                    SongsPersistenceContract.TaskEntry.COLUMN_NAME_ENTRY_ID + ")";
+
+    private static final String FTS_COLUMNS =
+            SongsPersistenceContract.TaskEntry.COLUMN_NAME_TITLE + COMMA_SEP +
+                    SongsPersistenceContract.TaskEntry.COLUMN_NAME_DESCRIPTION;
+
+    private static final String NEW_FTS_VALUES =
+            "new." + SongsPersistenceContract.TaskEntry._ID + COMMA_SEP +
+                    "new." + SongsPersistenceContract.TaskEntry.COLUMN_NAME_TITLE + COMMA_SEP +
+                    "new." + SongsPersistenceContract.TaskEntry.COLUMN_NAME_DESCRIPTION;
+
+    /**
+     * External content table: the index reads the text from the song table instead of keeping a
+     * second copy of it.
+     */
+    private static final String SQL_CREATE_SEARCH_INDEX =
+            "CREATE VIRTUAL TABLE IF NOT EXISTS " +
+                    SongsPersistenceContract.SongSearchEntry.TABLE_NAME +
+                    " USING fts4(content=\"" + SongsPersistenceContract.TaskEntry.TABLE_NAME +
+                    "\"" + COMMA_SEP + FTS_COLUMNS;
+
+    /**
+     * Folds case for all of Unicode, like {@link edu.Groove9.TunesMaster.data.source.SongsSearch},
+     * where the default tokenizer only folds ASCII letters. Diacritics are kept, as they are there.
+     */
+    private static final String UNICODE_TOKENIZER = "tokenize=unicode61 \"remove_diacritics=0\"";
+
+    private static final String SQL_FIND_UNICODE_SEARCH_INDEX =
+            "SELECT COUNT(*) FROM sqlite_master WHERE name = ? AND sql LIKE '%unicode61%'";
+
+    private static final String[] SEARCH_TRIGGER_NAMES =
+            {"song_fts_bu", "song_fts_bd", "song_fts_au", "song_fts_ai"};
+
+    /**
+     * Keep the index in sync with the song table. Removals run before the row changes, since the
+     * index needs the old text to remove it.
+     */
+    private static final String[] SQL_CREATE_SEARCH_TRIGGERS = {
+            createSearchTrigger(SEARCH_TRIGGER_NAMES[0], "BEFORE UPDATE", removeFromSearchIndex()),
+            createSearchTrigger(SEARCH_TRIGGER_NAMES[1], "BEFORE DELETE", removeFromSearchIndex()),
+            createSearchTrigger(SEARCH_TRIGGER_NAMES[2], "AFTER UPDATE", addToSearchIndex()),
+            createSearchTrigger(SEARCH_TRIGGER_NAMES[3], "AFTER INSERT", addToSearchIndex())
+    };
+
+    private static final String SQL_REBUILD_SEARCH_INDEX =
+            "INSERT INTO " + SongsPersistenceContract.SongSearchEntry.TABLE_NAME + "(" +
+                    SongsPersistenceContract.SongSearchEntry.TABLE_NAME + ") VALUES('rebuild')";
+
+    private static final String TABLE_NAME_V1 =
+            SongsPersistenceContract.TaskEntry.TABLE_NAME + "_v1";
+
+    private static final String DATA_COLUMNS =
+            SongsPersistenceContract.TaskEntry.COLUMN_NAME_ENTRY_ID + COMMA_SEP +
+                    SongsPersistenceContract.TaskEntry.COLUMN_NAME_SOURCE + COMMA_SEP +
+                    SongsPersistenceContract.TaskEntry.COLUMN_NAME_TITLE + COMMA_SEP +
+                    SongsPersistenceContract.TaskEntry.COLUMN_NAME_DESCRIPTION + COMMA_SEP +
+                    SongsPersistenceContract.TaskEntry.COLUMN_NAME_COMPLETED;
+
     public SongsDbHelper(Context context) {
         super(context, DATABASE_NAME, null, DATABASE_VERSION);
+        // Lets readers run concurrently on pooled connections, and alongside the writer
+        setWriteAheadLoggingEnabled(true);
+    }
+
+    @Override
+    public void onConfigure(SQLiteDatabase db) {
+        // INSERT OR REPLACE deletes the row it replaces, and only fires the delete trigger that
+        // keeps the search index in sync when recursive triggers are on
+        db.execSQL("PRAGMA recursive_triggers = ON");
     }
 
     public void onCreate(SQLiteDatabase db) {
         db.execSQL(SQL_CREATE_ENTRIES);
+        db.execSQL(SQL_CREATE_ENTRY_ID_INDEX);
+        createSearchIndex(db);
+        db.execSQL(SQL_CREATE_SYNC_STATE);
     }
 
+    /**
+     * Each step can run again over what it, or a later version, already created: after a
+     * downgrade, see {@link #onDowngrade}, the next upgrade starts from the older version again.
+     */
     public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
-        // Not required as at version 1
+        // Runs inside a transaction opened by SQLiteOpenHelper
+        if (oldVersion < 2) {
+            migrateToVersion2(db);
+        }
+        if (oldVersion < 3) {
+            createSearchIndex(db);
+            db.execSQL(SQL_REBUILD_SEARCH_INDEX);
+        }
+        if (oldVersion < 4) {
+            // Existing rows were never synced incrementally: their version stays null and the
+            // first sync starts from scratch
+            if (!hasColumn(db, SongsPersistenceContract.TaskEntry.TABLE_NAME,
+                    SongsPersistenceContract.TaskEntry.COLUMN_NAME_VERSION)) {
+                db.execSQL(SQL_ADD_VERSION_COLUMN);
+            }
+            db.execSQL(SQL_CREATE_SYNC_STATE);
+        }
+        if (oldVersion < 5 && !searchIndexFoldsUnicodeCase(db)) {
+            dropSearchIndex(db);
+            createSearchIndex(db);
+            db.execSQL(SQL_REBUILD_SEARCH_INDEX);
+        }
     }
 
     public void onDowngrade(SQLiteDatabase db, int oldVersion, int newVersion) {
-        // Not required as at version 1
+        // Nothing to undo: earlier versions read and write the same song columns and ignore the
+        // rest, which the triggers keep in sync. Upgrading again then reruns the later steps of
+        // onUpgrade, which skip what already exists.
+    }
+
+    private static boolean hasColumn(SQLiteDatabase db, String table, String column) {
+        Cursor c = db.rawQuery("SELECT * FROM " + table + " LIMIT 0", null);
+        try {
+            return c.getColumnIndex(column) >= 0;
+        } finally {
+            c.close();
+        }
+    }
+
+    /**
+     * @return true if the search index folds case like
+     * {@link edu.Groove9.TunesMaster.data.source.SongsSearch}. False if the SQLite of the device
+     * lacks the tokenizer needed for it, in which case only ASCII letters are folded.
+     */
+    static boolean searchIndexFoldsUnicodeCase(SQLiteDatabase db) {
+        return DatabaseUtils.longForQuery(db, SQL_FIND_UNICODE_SEARCH_INDEX,
+                new String[] {SongsPersistenceContract.SongSearchEntry.TABLE_NAME}) > 0;
+    }
+
+    private static void createSearchIndex(SQLiteDatabase db) {
+        try {
+            db.execSQL(SQL_CREATE_SEARCH_INDEX + COMMA_SEP + UNICODE_TOKENIZER + ")");
+        } catch (SQLiteException e) {
+            // Older SQLite versions don't know the tokenizer or its option
+            db.execSQL(SQL_CREATE_SEARCH_INDEX + ")");
+        }
+        for (String trigger : SQL_CREATE_SEARCH_TRIGGERS) {
+            db.execSQL(trigger);
+        }
+    }
+
+    private static void dropSearchIndex(SQLiteDatabase db) {
+        for (String trigger : SEARCH_TRIGGER_NAMES) {
+            db.execSQL("DROP TRIGGER IF EXISTS " + trigger);
+        }
+        db.execSQL("DROP TABLE IF EXISTS " + SongsPersistenceContract.SongSearchEntry.TABLE_NAME);
+    }
+
+    private static String createSearchTrigger(String name, String event, String action) {
+        return "CREATE TRIGGER IF NOT EXISTS " + name + " " + event + " ON " +
+                SongsPersistenceContract.TaskEntry.TABLE_NAME + " BEGIN " + action + "; END";
+    }
+
+    private static String removeFromSearchIndex() {
+        return "DELETE FROM " + SongsPersistenceContract.SongSearchEntry.TABLE_NAME + " WHERE " +
+                SongsPersistenceContract.SongSearchEntry.COLUMN_NAME_DOC_ID + " = old." +
+                SongsPersistenceContract.TaskEntry._ID;
+    }
+
+    private static String addToSearchIndex() {
+        return "INSERT INTO " + SongsPersistenceContract.SongSearchEntry.TABLE_NAME + "(" +
+                SongsPersistenceContract.SongSearchEntry.COLUMN_NAME_DOC_ID + COMMA_SEP +
+                FTS_COLUMNS + ") VALUES(" + NEW_FTS_VALUES + ")";
+    }
+
+    /**
+     * Copies the songs into the version 2 table. Version 1 didn't enforce unique entry ids, so if
+     * a song was saved more than once, its most recently inserted row wins.
+     */
+    private static void migrateToVersion2(SQLiteDatabase db) {
+        db.execSQL("ALTER TABLE " + SongsPersistenceContract.TaskEntry.TABLE_NAME
+                + " RENAME TO " + TABLE_NAME_V1);
+        // Left by a later version if the database was downgraded since: its index and triggers
+        // moved to the renamed table, and its search index would now be out of step
+        db.execSQL("DROP INDEX IF EXISTS " + INDEX_ENTRY_ID);
+        dropSearchIndex(db);
+        db.execSQL(SQL_CREATE_ENTRIES_V2);
+        db.execSQL(SQL_CREATE_ENTRY_ID_INDEX);
+        db.execSQL("INSERT OR REPLACE INTO " + SongsPersistenceContract.TaskEntry.TABLE_NAME
+                + " (" + DATA_COLUMNS + ") SELECT " + DATA_COLUMNS + " FROM " + TABLE_NAME_V1
+                + " WHERE " + SongsPersistenceContract.TaskEntry.COLUMN_NAME_ENTRY_ID
+                + " IS NOT NULL ORDER BY rowid");
+        db.execSQL("DROP TABLE " + TABLE_NAME_V1);
     }
 }
@@ -20,30 +20,192 @@ import android.content.ContentValues;
 import android.content.Context;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
-import android.net.Uri;
+import android.database.sqlite.SQLiteStatement;
 import android.support.annotation.NonNull;
 
 import edu.Groove9.TunesMaster.playlist.domain.model.Song;
+import edu.Groove9.TunesMaster.data.source.SongsBatches;
+import edu.Groove9.TunesMaster.data.source.SongsChangeSet;
 import edu.Groove9.TunesMaster.data.source.SongsDataSource;
+import edu.Groove9.TunesMaster.data.source.SongsPages;
+import edu.Groove9.TunesMaster.data.source.SongsSearch;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
+import com.google.common.collect.ObjectArrays;
+
 /**
  * Concrete implementation of a data source as a db.
+ * <p>
+ * All operations share one long-lived connection in write-ahead logging mode, see
+ * {@link SongsDbHelper}.
+ * <p>
+ * Changes synced from the remote data source are applied row by row, and each row written that way
+ * records the cursor of its changes in its version column. A row is never overwritten or deleted by
+ * changes older than the ones that last wrote it, so overlapping syncs can't roll a song back.
  */
 public class SongsLocalDataSource implements SongsDataSource {
 
     private static SongsLocalDataSource INSTANCE;
 
+    /**
+     * Parameters: 1 entry id, 2 source, 3 title, 4 description. Updates the row in place, so the
+     * song keeps its row id, which is its position in the list, and its version.
+     */
+    private static final String SQL_UPDATE_SONG =
+            "UPDATE " + SongsPersistenceContract.TaskEntry.TABLE_NAME + " SET " +
+                    SongsPersistenceContract.TaskEntry.COLUMN_NAME_SOURCE + " = ?2," +
+                    SongsPersistenceContract.TaskEntry.COLUMN_NAME_TITLE + " = ?3," +
+                    SongsPersistenceContract.TaskEntry.COLUMN_NAME_DESCRIPTION + " = ?4" +
+                    " WHERE " + SongsPersistenceContract.TaskEntry.COLUMN_NAME_ENTRY_ID + " = ?1";
+
+    /**
+     * Only runs for songs the update didn't find.
+     */
+    private static final String SQL_INSERT_SONG =
+            "INSERT INTO " + SongsPersistenceContract.TaskEntry.TABLE_NAME + " (" +
+                    SongsPersistenceContract.TaskEntry.COLUMN_NAME_ENTRY_ID + "," +
+                    SongsPersistenceContract.TaskEntry.COLUMN_NAME_SOURCE + "," +
+                    SongsPersistenceContract.TaskEntry.COLUMN_NAME_TITLE + "," +
+                    SongsPersistenceContract.TaskEntry.COLUMN_NAME_DESCRIPTION +
+            ") VALUES (?,?,?,?)";
+
+    /**
+     * Insertion order, which is the order songs are listed in.
+     */
+    private static final String ORDER_BY_ROW_ID = SongsPersistenceContract.TaskEntry._ID;
+
+    /**
+     * The columns of a song plus its row id, to continue the next page from it.
+     */
+    private static final String[] PAGE_PROJECTION = ObjectArrays.concat(SongRowMapper.PROJECTION,
+            SongsPersistenceContract.TaskEntry._ID);
+
+    private static final String SELECTION_AFTER_ROW_ID =
+            SongsPersistenceContract.TaskEntry._ID + " > ?";
+
+    /**
+     * How many page ends {@link #mPageEnds} remembers, enough for a few lists paging at once.
+     */
+    private static final int MAX_PAGE_ENDS = 8;
+
+    private static final String SELECTION_BY_ENTRY_ID =
+            SongsPersistenceContract.TaskEntry.COLUMN_NAME_ENTRY_ID + " = ?";
+
+    /**
+     * SQLite's default limit on the number of parameters of a statement.
+     */
+    private static final int MAX_IDS_PER_QUERY = 999;
+
+    private static final String SELECTION_MATCHING_SEARCH =
+            SongsPersistenceContract.TaskEntry._ID + " IN (SELECT " +
+                    SongsPersistenceContract.SongSearchEntry.COLUMN_NAME_DOC_ID + " FROM " +
+                    SongsPersistenceContract.SongSearchEntry.TABLE_NAME + " WHERE " +
+                    SongsPersistenceContract.SongSearchEntry.TABLE_NAME + " MATCH ?)";
+
+    private static final String SQL_DELETE_SONG =
+            "DELETE FROM " + SongsPersistenceContract.TaskEntry.TABLE_NAME + " WHERE " +
+                    SELECTION_BY_ENTRY_ID;
+
+    /**
+     * Parameters: 1 entry id, 2 source, 3 title, 4 description, 5 cursor of the changes.
+     */
+    private static final String SQL_UPDATE_SYNCED_SONG =
+            "UPDATE " + SongsPersistenceContract.TaskEntry.TABLE_NAME + " SET " +
+                    SongsPersistenceContract.TaskEntry.COLUMN_NAME_SOURCE + " = ?2," +
+                    SongsPersistenceContract.TaskEntry.COLUMN_NAME_TITLE + " = ?3," +
+                    SongsPersistenceContract.TaskEntry.COLUMN_NAME_DESCRIPTION + " = ?4," +
+                    SongsPersistenceContract.TaskEntry.COLUMN_NAME_VERSION + " = ?5" +
+                    " WHERE " + SongsPersistenceContract.TaskEntry.COLUMN_NAME_ENTRY_ID + " = ?1" +
+                    " AND " + notNewerThan("?5");
+
+    /**
+     * Only runs for songs the update didn't find. Ignored if the song exists with a newer version.
+     */
+    private static final String SQL_INSERT_SYNCED_SONG =
+            "INSERT OR IGNORE INTO " + SongsPersistenceContract.TaskEntry.TABLE_NAME + " (" +
+                    SongsPersistenceContract.TaskEntry.COLUMN_NAME_ENTRY_ID + "," +
+                    SongsPersistenceContract.TaskEntry.COLUMN_NAME_SOURCE + "," +
+                    SongsPersistenceContract.TaskEntry.COLUMN_NAME_TITLE + "," +
+                    SongsPersistenceContract.TaskEntry.COLUMN_NAME_DESCRIPTION + "," +
+                    SongsPersistenceContract.TaskEntry.COLUMN_NAME_VERSION +
+            ") VALUES (?,?,?,?,?)";
+
+    private static final String SQL_DELETE_SYNCED_SONG =
+            "DELETE FROM " + SongsPersistenceContract.TaskEntry.TABLE_NAME + " WHERE " +
+                    SongsPersistenceContract.TaskEntry.COLUMN_NAME_ENTRY_ID + " = ?1 AND " +
+                    notNewerThan("?2");
+
+    private static final String SELECTION_BY_SYNC_SOURCE =
+            SongsPersistenceContract.SyncStateEntry.COLUMN_NAME_SOURCE + " = ?";
+
+    /**
+     * The only source synced with so far.
+     */
+    private static final String SYNC_SOURCE_REMOTE = "remote";
+
+    private final Context mContext;
+
+    /**
+     * Created on first use, see {@link #getDatabase()}. Guarded by {@code this}.
+     */
     private SongsDbHelper mDbHelper;
 
+    /**
+     * Null until first needed, see {@link #searchIndexFoldsUnicodeCase}. Guarded by {@code this}.
+     */
+    private Boolean mSearchIndexFoldsUnicodeCase;
+
+    /**
+     * Guards the compiled statements below, which are kept for the life of the database and must
+     * not be bound by two threads at once.
+     */
+    private final Object mStatementLock = new Object();
+
+    private SQLiteStatement mUpdateStatement;
+
+    private SQLiteStatement mInsertStatement;
+
+    private SQLiteStatement mDeleteStatement;
+
+    private SQLiteStatement mSyncUpdateStatement;
+
+    private SQLiteStatement mSyncInsertStatement;
+
+    private SQLiteStatement mSyncDeleteStatement;
+
+    /**
+     * Row id of the last row of recently served pages, by the offset of the row after it. A page
+     * starting where an earlier one ended seeks past that row through the primary key, rather than
+     * having SQLite step over every row before the offset, so reading the whole list a page at a
+     * time stays linear. Guarded by itself.
+     */
+    @SuppressWarnings("serial")
+    private final Map<Integer, Long> mPageEnds =
+            new LinkedHashMap<Integer, Long>(MAX_PAGE_ENDS, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Integer, Long> eldest) {
+                    return size() > MAX_PAGE_ENDS;
+                }
+            };
+
+    /**
+     * Bumped by every write, since writes may move rows to other offsets. Guarded by
+     * {@code mPageEnds}.
+     */
+    private long mPageEndsVersion;
+
     // Prevent direct instantiation.
     private SongsLocalDataSource(@NonNull Context context) {
         checkNotNull(context);
-        mDbHelper = new SongsDbHelper(context);
+        mContext = context.getApplicationContext();
     }
 
     public static SongsLocalDataSource getInstance(@NonNull Context context) {
@@ -53,6 +215,36 @@ public class SongsLocalDataSource implements SongsDataSource {
         return INSTANCE;
     }
 
+    /**
+     * Returns the database, opening it on first use. It is never closed: reopening it for each
+     * operation would throw away SQLite's page cache every time.
+     * <p>
+     * The first call creates or upgrades the schema, so it belongs on a background thread, such as
+     * the load {@link edu.Groove9.TunesMaster.TunesMasterApplication} starts at launch. Calls made
+     * meanwhile from other threads wait for it to finish.
+     */
+    /**
+     * Asks {@link SongsDbHelper} once, since the index only changes on upgrades.
+     */
+    private synchronized boolean searchIndexFoldsUnicodeCase(SQLiteDatabase db) {
+        if (mSearchIndexFoldsUnicodeCase == null) {
+            mSearchIndexFoldsUnicodeCase = SongsDbHelper.searchIndexFoldsUnicodeCase(db);
+        }
+        return mSearchIndexFoldsUnicodeCase;
+    }
+
+    private SQLiteDatabase getDatabase() {
+        SongsDbHelper dbHelper;
+        synchronized (this) {
+            if (mDbHelper == null) {
+                mDbHelper = new SongsDbHelper(mContext);
+            }
+            dbHelper = mDbHelper;
+        }
+        // SQLiteOpenHelper keeps the opened database and hands out the same instance every time
+        return dbHelper.getWritableDatabase();
+    }
+
     /**
      * Note: {@link LoadSongsCallback#onDataNotAvailable()} is fired if the database doesn't exist
      * or the table is empty.
@@ -60,43 +252,104 @@ public class SongsLocalDataSource implements SongsDataSource {
     @Override
     public void getSongs(@NonNull LoadSongsCallback callback) {
         List<Song> songs = new ArrayList<Song>();
-        SQLiteDatabase db = mDbHelper.getReadableDatabase();
-
-        String[] projection = {
-                SongsPersistenceContract.TaskEntry.COLUMN_NAME_ENTRY_ID,
-                SongsPersistenceContract.TaskEntry.COLUMN_NAME_SOURCE,
-                SongsPersistenceContract.TaskEntry.COLUMN_NAME_TITLE,
-                SongsPersistenceContract.TaskEntry.COLUMN_NAME_DESCRIPTION,
-                SongsPersistenceContract.TaskEntry.COLUMN_NAME_COMPLETED
-        };
-
-        Cursor c = db.query(
-                SongsPersistenceContract.TaskEntry.TABLE_NAME, projection, null, null, null, null, null);
-
-        if (c != null && c.getCount() > 0) {
-            while (c.moveToNext()) {
-                String itemId = c.getString(c.getColumnIndexOrThrow(SongsPersistenceContract.TaskEntry.COLUMN_NAME_ENTRY_ID));
-                Uri source = Uri.parse(c.getString(c.getColumnIndexOrThrow(SongsPersistenceContract.TaskEntry.COLUMN_NAME_SOURCE)));
-                String title = c.getString(c.getColumnIndexOrThrow(SongsPersistenceContract.TaskEntry.COLUMN_NAME_TITLE));
-                String description =
-                        c.getString(c.getColumnIndexOrThrow(SongsPersistenceContract.TaskEntry.COLUMN_NAME_DESCRIPTION));
-                Song song = new Song(title, description, itemId, source);
-                songs.add(song);
+        SQLiteDatabase db = getDatabase();
+
+        Cursor c = db.query(SongsPersistenceContract.TaskEntry.TABLE_NAME,
+                SongRowMapper.PROJECTION, null, null, null, null, ORDER_BY_ROW_ID);
+
+        if (c != null) {
+            try {
+                SongRowMapper mapper = new SongRowMapper(c);
+                while (c.moveToNext()) {
+                    songs.add(mapper.map(c));
+                }
+            } finally {
+                c.close();
             }
         }
+
+        if (songs.isEmpty()) {
+            // This will be called if the table is new or just empty.
+            callback.onDataNotAvailable();
+        } else {
+            callback.onSongsLoaded(songs);
+        }
+
+    }
+
+    /**
+     * Reads only the rows of the page, plus one to find out whether more follow. A page that starts
+     * where a recent one ended is read by row id, see {@link #mPageEnds}.
+     * <p>
+     * Note: {@link LoadSongsPageCallback#onDataNotAvailable()} is fired if the table is new or
+     * empty.
+     */
+    @Override
+    public void getSongsPage(int offset, int limit, @NonNull LoadSongsPageCallback callback) {
+        SongsPages.checkPageArguments(offset, limit);
+        List<Song> songs = new ArrayList<Song>(limit);
+        boolean hasMore = false;
+        long lastRowId = -1;
+        SQLiteDatabase db = getDatabase();
+
+        Long previousRowId;
+        long pageEndsVersion;
+        synchronized (mPageEnds) {
+            previousRowId = mPageEnds.get(offset);
+            pageEndsVersion = mPageEndsVersion;
+        }
+        String fetchLimit = String.valueOf((long) limit + 1);
+        Cursor c;
+        if (previousRowId != null) {
+            c = db.query(SongsPersistenceContract.TaskEntry.TABLE_NAME, PAGE_PROJECTION,
+                    SELECTION_AFTER_ROW_ID, new String[]{String.valueOf(previousRowId)}, null, null,
+                    ORDER_BY_ROW_ID, fetchLimit);
+        } else {
+            c = db.query(SongsPersistenceContract.TaskEntry.TABLE_NAME, PAGE_PROJECTION, null, null,
+                    null, null, ORDER_BY_ROW_ID, offset + "," + fetchLimit);
+        }
+
         if (c != null) {
-            c.close();
+            try {
+                SongRowMapper mapper = new SongRowMapper(c);
+                int rowIdIndex = c.getColumnIndexOrThrow(SongsPersistenceContract.TaskEntry._ID);
+                while (c.moveToNext()) {
+                    if (songs.size() == limit) {
+                        hasMore = true;
+                        break;
+                    }
+                    songs.add(mapper.map(c));
+                    lastRowId = c.getLong(rowIdIndex);
+                }
+            } finally {
+                c.close();
+            }
         }
 
-        db.close();
+        if (hasMore) {
+            synchronized (mPageEnds) {
+                if (mPageEndsVersion == pageEndsVersion) {
+                    mPageEnds.put(offset + songs.size(), lastRowId);
+                }
+            }
+        }
 
-        if (songs.isEmpty()) {
+        if (songs.isEmpty() && offset == 0) {
             // This will be called if the table is new or just empty.
             callback.onDataNotAvailable();
         } else {
-            callback.onSongsLoaded(songs);
+            callback.onPageLoaded(songs, hasMore);
         }
+    }
 
+    /**
+     * Called by every write once it's done, so that a page read while it ran isn't remembered.
+     */
+    private void forgetPageEnds() {
+        synchronized (mPageEnds) {
+            mPageEnds.clear();
+            mPageEndsVersion++;
+        }
     }
 
     /**
@@ -105,39 +358,25 @@ public class SongsLocalDataSource implements SongsDataSource {
      */
     @Override
     public void getSong(@NonNull String id, @NonNull GetSongCallback callback) {
-        SQLiteDatabase db = mDbHelper.getReadableDatabase();
-
-        String[] projection = {
-                SongsPersistenceContract.TaskEntry.COLUMN_NAME_ENTRY_ID,
-                SongsPersistenceContract.TaskEntry.COLUMN_NAME_SOURCE,
-                SongsPersistenceContract.TaskEntry.COLUMN_NAME_TITLE,
-                SongsPersistenceContract.TaskEntry.COLUMN_NAME_DESCRIPTION,
-                SongsPersistenceContract.TaskEntry.COLUMN_NAME_COMPLETED
-        };
+        SQLiteDatabase db = getDatabase();
 
-        String selection = SongsPersistenceContract.TaskEntry.COLUMN_NAME_ENTRY_ID + " LIKE ?";
         String[] selectionArgs = {id};
 
-        Cursor c = db.query(
-                SongsPersistenceContract.TaskEntry.TABLE_NAME, projection, selection, selectionArgs, null, null, null);
+        Cursor c = db.query(SongsPersistenceContract.TaskEntry.TABLE_NAME,
+                SongRowMapper.PROJECTION, SELECTION_BY_ENTRY_ID, selectionArgs, null, null, null);
 
         Song song = null;
 
-        if (c != null && c.getCount() > 0) {
-            c.moveToFirst();
-            String itemId = c.getString(c.getColumnIndexOrThrow(SongsPersistenceContract.TaskEntry.COLUMN_NAME_ENTRY_ID));
-            Uri source = Uri.parse(c.getString(c.getColumnIndexOrThrow(SongsPersistenceContract.TaskEntry.COLUMN_NAME_SOURCE)));
-            String title = c.getString(c.getColumnIndexOrThrow(SongsPersistenceContract.TaskEntry.COLUMN_NAME_TITLE));
-            String description =
-                    c.getString(c.getColumnIndexOrThrow(SongsPersistenceContract.TaskEntry.COLUMN_NAME_DESCRIPTION));
-            song = new Song(title, description, itemId, source);
-        }
         if (c != null) {
-            c.close();
+            try {
+                if (c.moveToFirst()) {
+                    song = new SongRowMapper(c).map(c);
+                }
+            } finally {
+                c.close();
+            }
         }
 
-        db.close();
-
         if (song != null) {
             callback.onSongLoaded(song);
         } else {
@@ -145,20 +384,277 @@ public class SongsLocalDataSource implements SongsDataSource {
         }
     }
 
+    /**
+     * Reads the songs with a single {@code IN} query, or one per {@link #MAX_IDS_PER_QUERY} ids
+     * for larger batches.
+     */
+    @Override
+    public void getSongs(@NonNull Collection<String> ids, @NonNull GetSongsCallback callback) {
+        List<String> distinctIds = new ArrayList<String>(SongsBatches.distinct(ids));
+        Map<String, Song> songs = new HashMap<String, Song>();
+        SQLiteDatabase db = getDatabase();
+
+        for (int from = 0; from < distinctIds.size(); from += MAX_IDS_PER_QUERY) {
+            List<String> batch = distinctIds.subList(from,
+                    Math.min(from + MAX_IDS_PER_QUERY, distinctIds.size()));
+            Cursor c = db.query(SongsPersistenceContract.TaskEntry.TABLE_NAME,
+                    SongRowMapper.PROJECTION, selectionByEntryIds(batch.size()),
+                    batch.toArray(new String[batch.size()]), null, null, null);
+
+            if (c != null) {
+                try {
+                    SongRowMapper mapper = new SongRowMapper(c);
+                    while (c.moveToNext()) {
+                        Song song = mapper.map(c);
+                        songs.put(song.getId(), song);
+                    }
+                } finally {
+                    c.close();
+                }
+            }
+        }
+
+        SongsBatches.deliver(distinctIds, songs, callback);
+    }
+
+    private static String selectionByEntryIds(int count) {
+        StringBuilder selection = new StringBuilder(
+                SongsPersistenceContract.TaskEntry.COLUMN_NAME_ENTRY_ID).append(" IN (");
+        for (int i = 0; i < count; i++) {
+            selection.append(i == 0 ? "?" : ",?");
+        }
+        return selection.append(')').toString();
+    }
+
+    /**
+     * Looks the query up in the full-text index kept alongside the song table, see
+     * {@link SongsDbHelper}. If the index only folds ASCII case and a term isn't ASCII, the table
+     * is scanned instead, so that the results are the same as {@link SongsSearch#search}'s.
+     */
+    @Override
+    public void searchSongs(@NonNull String query, int limit,
+                            @NonNull LoadSongsCallback callback) {
+        SongsSearch.checkSearchArguments(query, limit);
+        List<String> terms = SongsSearch.terms(query);
+        List<Song> songs = new ArrayList<Song>();
+        if (terms.isEmpty()) {
+            callback.onSongsLoaded(songs);
+            return;
+        }
+        SQLiteDatabase db = getDatabase();
+        boolean scan = !SongsSearch.isAscii(terms) && !searchIndexFoldsUnicodeCase(db);
+
+        Cursor c;
+        if (scan) {
+            c = db.query(SongsPersistenceContract.TaskEntry.TABLE_NAME, SongRowMapper.PROJECTION,
+                    null, null, null, null, ORDER_BY_ROW_ID);
+        } else {
+            String[] selectionArgs = {SongsSearch.toMatchExpression(terms)};
+            c = db.query(SongsPersistenceContract.TaskEntry.TABLE_NAME,
+                    SongRowMapper.PROJECTION, SELECTION_MATCHING_SEARCH, selectionArgs, null, null,
+                    ORDER_BY_ROW_ID, String.valueOf(limit));
+        }
+
+        if (c != null) {
+            try {
+                SongRowMapper mapper = new SongRowMapper(c);
+                while (songs.size() < limit && c.moveToNext()) {
+                    Song song = mapper.map(c);
+                    if (!scan || SongsSearch.matches(song, terms)) {
+                        songs.add(song);
+                    }
+                }
+            } finally {
+                c.close();
+            }
+        }
+
+        callback.onSongsLoaded(songs);
+    }
+
     @Override
     public void saveSong(@NonNull Song song) {
         checkNotNull(song);
-        SQLiteDatabase db = mDbHelper.getWritableDatabase();
+        synchronized (mStatementLock) {
+            prepareSaveStatements();
+            writeSong(song);
+        }
+        forgetPageEnds();
+    }
+
+    /**
+     * Writes all songs in a single transaction with one precompiled statement, instead of one
+     * implicit transaction per song.
+     */
+    @Override
+    public void saveSongs(@NonNull List<Song> songs) {
+        checkNotNull(songs);
+        SQLiteDatabase db = getDatabase();
+
+        // Take the lock before starting the transaction, never the other way around: another
+        // writer holding the lock would otherwise wait for our transaction while we wait for it
+        synchronized (mStatementLock) {
+            prepareSaveStatements();
+            db.beginTransaction();
+            try {
+                for (Song song : songs) {
+                    writeSong(song);
+                }
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+        }
+        forgetPageEnds();
+    }
+
+    /**
+     * Compiles the statements shared by {@link #saveSong} and {@link #saveSongs} on first use.
+     * Must be called, and the statements used, while holding {@code mStatementLock}.
+     */
+    private void prepareSaveStatements() {
+        if (mUpdateStatement == null) {
+            SQLiteDatabase db = getDatabase();
+            mUpdateStatement = db.compileStatement(SQL_UPDATE_SONG);
+            mInsertStatement = db.compileStatement(SQL_INSERT_SONG);
+        }
+    }
 
-        ContentValues values = new ContentValues();
-        values.put(SongsPersistenceContract.TaskEntry.COLUMN_NAME_ENTRY_ID, song.getId());
-        values.put(SongsPersistenceContract.TaskEntry.COLUMN_NAME_SOURCE, song.getSource().toString());
-        values.put(SongsPersistenceContract.TaskEntry.COLUMN_NAME_TITLE, song.getTitle());
-        values.put(SongsPersistenceContract.TaskEntry.COLUMN_NAME_DESCRIPTION, song.getDescription());
+    /**
+     * Updates the row of {@code song} if it has one, or else inserts it. Replacing the row instead
+     * would move the song to the end of the list and drop its version. Must be called while
+     * holding {@code mStatementLock}, which also keeps any other save from inserting the same song
+     * in between.
+     */
+    private void writeSong(Song song) {
+        bindSong(mUpdateStatement, song);
+        int updated = mUpdateStatement.executeUpdateDelete();
+        mUpdateStatement.clearBindings();
+        if (updated == 0) {
+            bindSong(mInsertStatement, song);
+            mInsertStatement.executeInsert();
+            mInsertStatement.clearBindings();
+        }
+    }
+
+    private static void bindSong(SQLiteStatement statement, Song song) {
+        statement.bindString(1, song.getId());
+        statement.bindString(2, song.getmSource().getUriString());
+        bindStringOrNull(statement, 3, song.getTitle());
+        bindStringOrNull(statement, 4, song.getDescription());
+    }
+
+    private static void bindStringOrNull(SQLiteStatement statement, int index, String value) {
+        if (value == null) {
+            statement.bindNull(index);
+        } else {
+            statement.bindString(index, value);
+        }
+    }
+
+    /**
+     * Note: {@link LoadChangesCallback#onDataNotAvailable()} is always fired, since changes are
+     * synced from the remote data source to this one and not the other way around.
+     */
+    @Override
+    public void getChangesSince(long cursor, @NonNull LoadChangesCallback callback) {
+        callback.onDataNotAvailable();
+    }
+
+    /**
+     * Writes only the rows that changed, along with the new cursor, in a single transaction. A
+     * reset replaces the whole table.
+     */
+    @Override
+    public void applyChanges(@NonNull SongsChangeSet changes) {
+        checkNotNull(changes);
+        SQLiteDatabase db = getDatabase();
+
+        // Same lock ordering as saveSongs
+        synchronized (mStatementLock) {
+            prepareSyncStatements();
+            long cursor = changes.getCursor();
+            db.beginTransaction();
+            try {
+                if (changes.isReset()) {
+                    db.delete(SongsPersistenceContract.TaskEntry.TABLE_NAME, null, null);
+                }
+                for (Song song : changes.getSavedSongs()) {
+                    bindSong(mSyncUpdateStatement, song);
+                    mSyncUpdateStatement.bindLong(5, cursor);
+                    int updated = mSyncUpdateStatement.executeUpdateDelete();
+                    mSyncUpdateStatement.clearBindings();
+                    if (updated == 0) {
+                        bindSong(mSyncInsertStatement, song);
+                        mSyncInsertStatement.bindLong(5, cursor);
+                        mSyncInsertStatement.executeInsert();
+                        mSyncInsertStatement.clearBindings();
+                    }
+                }
+                for (String id : changes.getDeletedIds()) {
+                    mSyncDeleteStatement.bindString(1, id);
+                    mSyncDeleteStatement.bindLong(2, cursor);
+                    mSyncDeleteStatement.executeUpdateDelete();
+                    mSyncDeleteStatement.clearBindings();
+                }
+                if (changes.isReset() || cursor > readSyncCursor(db)) {
+                    ContentValues values = new ContentValues();
+                    values.put(SongsPersistenceContract.SyncStateEntry.COLUMN_NAME_SOURCE,
+                            SYNC_SOURCE_REMOTE);
+                    values.put(SongsPersistenceContract.SyncStateEntry.COLUMN_NAME_CURSOR, cursor);
+                    db.insertWithOnConflict(SongsPersistenceContract.SyncStateEntry.TABLE_NAME,
+                            null, values, SQLiteDatabase.CONFLICT_REPLACE);
+                }
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+        }
+        forgetPageEnds();
+    }
+
+    @Override
+    public long getSyncCursor() {
+        return readSyncCursor(getDatabase());
+    }
+
+    private static long readSyncCursor(SQLiteDatabase db) {
+        String[] projection = {SongsPersistenceContract.SyncStateEntry.COLUMN_NAME_CURSOR};
+        String[] selectionArgs = {SYNC_SOURCE_REMOTE};
 
-        db.insert(SongsPersistenceContract.TaskEntry.TABLE_NAME, null, values);
+        Cursor c = db.query(SongsPersistenceContract.SyncStateEntry.TABLE_NAME, projection,
+                SELECTION_BY_SYNC_SOURCE, selectionArgs, null, null, null);
+
+        long cursor = SongsChangeSet.NO_CURSOR;
+        if (c != null) {
+            try {
+                if (c.moveToFirst()) {
+                    cursor = c.getLong(0);
+                }
+            } finally {
+                c.close();
+            }
+        }
+        return cursor;
+    }
 
-        db.close();
+    /**
+     * Compiles the statements used by {@link #applyChanges} on first use. Must be called while
+     * holding {@code mStatementLock}.
+     */
+    private void prepareSyncStatements() {
+        if (mSyncUpdateStatement == null) {
+            SQLiteDatabase db = getDatabase();
+            mSyncUpdateStatement = db.compileStatement(SQL_UPDATE_SYNCED_SONG);
+            mSyncInsertStatement = db.compileStatement(SQL_INSERT_SYNCED_SONG);
+            mSyncDeleteStatement = db.compileStatement(SQL_DELETE_SYNCED_SONG);
+        }
+    }
+
+    private static String notNewerThan(String cursorParameter) {
+        return "(" + SongsPersistenceContract.TaskEntry.COLUMN_NAME_VERSION + " IS NULL OR " +
+                SongsPersistenceContract.TaskEntry.COLUMN_NAME_VERSION + " <= " + cursorParameter +
+                ")";
     }
 
     @Override
@@ -167,24 +663,35 @@ public class SongsLocalDataSource implements SongsDataSource {
         // tasks from all the available data sources.
     }
 
+    /**
+     * Also forgets the sync cursor, so the next sync starts from scratch.
+     */
     @Override
     public void deleteAllSongs() {
-        SQLiteDatabase db = mDbHelper.getWritableDatabase();
-
-        db.delete(SongsPersistenceContract.TaskEntry.TABLE_NAME, null, null);
-
-        db.close();
+        SQLiteDatabase db = getDatabase();
+
+        db.beginTransaction();
+        try {
+            db.delete(SongsPersistenceContract.TaskEntry.TABLE_NAME, null, null);
+            db.delete(SongsPersistenceContract.SyncStateEntry.TABLE_NAME, null, null);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        forgetPageEnds();
     }
 
     @Override
     public void deleteSong(@NonNull String taskId) {
-        SQLiteDatabase db = mDbHelper.getWritableDatabase();
-
-        String selection = SongsPersistenceContract.TaskEntry.COLUMN_NAME_ENTRY_ID + " LIKE ?";
-        String[] selectionArgs = { taskId };
-
-        db.delete(SongsPersistenceContract.TaskEntry.TABLE_NAME, selection, selectionArgs);
-
-        db.close();
+        checkNotNull(taskId);
+        synchronized (mStatementLock) {
+            if (mDeleteStatement == null) {
+                mDeleteStatement = getDatabase().compileStatement(SQL_DELETE_SONG);
+            }
+            mDeleteStatement.bindString(1, taskId);
+            mDeleteStatement.executeUpdateDelete();
+            mDeleteStatement.clearBindings();
+        }
+        forgetPageEnds();
     }
 }
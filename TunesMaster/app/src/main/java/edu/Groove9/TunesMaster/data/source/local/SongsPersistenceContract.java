@@ -35,5 +35,29 @@ public final class SongsPersistenceContract {
         public static final String COLUMN_NAME_TITLE = "title";
         public static final String COLUMN_NAME_DESCRIPTION = "description";
         public static final String COLUMN_NAME_COMPLETED = "completed";
+        /**
+         * Sync cursor of the changes that last wrote the row, or null if it was saved locally
+         * since.
+         */
+        public static final String COLUMN_NAME_VERSION = "version";
+    }
+
+    /**
+     * Full-text index over the title and description of {@link TaskEntry}. Its docid is the
+     * {@link TaskEntry#_ID} of the indexed row.
+     */
+    public static abstract class SongSearchEntry {
+        public static final String TABLE_NAME = "song_fts";
+        public static final String COLUMN_NAME_DOC_ID = "docid";
+    }
+
+    /**
+     * Cursor of the last changes applied from each source synced with, see
+     * {@link edu.Groove9.TunesMaster.data.source.SongsChangeSet}.
+     */
+    public static abstract class SyncStateEntry {
+        public static final String TABLE_NAME = "sync_state";
+        public static final String COLUMN_NAME_SOURCE = "source";
+        public static final String COLUMN_NAME_CURSOR = "cursor";
     }
 }
@@ -0,0 +1,281 @@
+/*
+ * Copyright 2016, The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.Groove9.TunesMaster.data.source.remote;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.google.common.io.ByteStreams;
+import com.google.common.io.Files;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Makes the HTTP requests of {@link HttpSongsRemoteDataSource}, asking for gzip transfer and
+ * keeping the last response of each resource on disk.
+ * <p>
+ * A resource that was fetched before is requested conditionally, with {@code If-None-Match} and
+ * {@code If-Modified-Since}, so that the server answers a bodiless 304 if it hasn't changed. Each
+ * cache entry is a body file and a metadata file with the url and validators. The metadata is
+ * deleted before the body is replaced and written after it, so a crash in between leaves no
+ * validators that don't match the body.
+ * <p>
+ * Not thread-safe: every call is made from the data source's single worker thread.
+ */
+final class ConditionalHttpClient {
+
+    static final int CONNECT_TIMEOUT_MILLIS = 10000;
+
+    static final int READ_TIMEOUT_MILLIS = 15000;
+
+    private static final String BODY_SUFFIX = ".body";
+
+    private static final String META_SUFFIX = ".meta";
+
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    private final String mBaseUrl;
+
+    private final File mCacheDir;
+
+    /**
+     * @param baseUrl  prepended to the path of every request, without a trailing slash
+     * @param cacheDir where responses are kept, created if needed
+     */
+    ConditionalHttpClient(@NonNull String baseUrl, @NonNull File cacheDir) {
+        mBaseUrl = checkNotNull(baseUrl);
+        mCacheDir = checkNotNull(cacheDir);
+    }
+
+    /**
+     * GETs {@code path}, revalidating the response cached under {@code cacheKey} if it was for the
+     * same url.
+     *
+     * @throws IOException if the server can't be reached or answers with an error
+     */
+    @NonNull
+    Response get(@NonNull String path, @NonNull String cacheKey) throws IOException {
+        URL url = new URL(mBaseUrl + path);
+        CacheEntry cached = readCacheEntry(cacheKey);
+        if (cached != null && !cached.mUrl.equals(url.toString())) {
+            cached = null;
+        }
+
+        HttpURLConnection connection = open(url, "GET");
+        try {
+            // Asking explicitly turns off transparent decompression: the body is unzipped below
+            connection.setRequestProperty("Accept-Encoding", "gzip");
+            if (cached != null && cached.mETag != null) {
+                connection.setRequestProperty("If-None-Match", cached.mETag);
+            }
+            if (cached != null && cached.mLastModified != null) {
+                connection.setRequestProperty("If-Modified-Since", cached.mLastModified);
+            }
+
+            int code = connection.getResponseCode();
+            if (code == HttpURLConnection.HTTP_NOT_MODIFIED && cached != null) {
+                return new Response(cached.mBodyFile, true);
+            }
+            if (code != HttpURLConnection.HTTP_OK) {
+                throw new IOException("GET " + url + " failed with " + code);
+            }
+
+            InputStream in = connection.getInputStream();
+            if ("gzip".equalsIgnoreCase(connection.getContentEncoding())) {
+                in = new GZIPInputStream(in);
+            }
+            File bodyFile = writeCacheEntry(cacheKey, url.toString(), in,
+                    connection.getHeaderField("ETag"), connection.getHeaderField("Last-Modified"));
+            return new Response(bodyFile, false);
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    /**
+     * @return the body last cached under {@code cacheKey}, whatever its url, or null if there
+     * is none. Used to keep working offline.
+     */
+    @Nullable
+    byte[] getCached(@NonNull String cacheKey) throws IOException {
+        CacheEntry cached = readCacheEntry(cacheKey);
+        return cached != null ? Files.toByteArray(cached.mBodyFile) : null;
+    }
+
+    /**
+     * Sends a request with an optional JSON body, for which no response body is expected.
+     *
+     * @throws IOException if the server can't be reached or answers with an error
+     */
+    void send(@NonNull String method, @NonNull String path, @Nullable byte[] json)
+            throws IOException {
+        URL url = new URL(mBaseUrl + path);
+        HttpURLConnection connection = open(url, method);
+        try {
+            if (json != null) {
+                connection.setDoOutput(true);
+                connection.setFixedLengthStreamingMode(json.length);
+                connection.setRequestProperty("Content-Type", "application/json; charset=utf-8");
+                OutputStream out = connection.getOutputStream();
+                try {
+                    out.write(json);
+                } finally {
+                    out.close();
+                }
+            }
+            int code = connection.getResponseCode();
+            if (code / 100 != 2) {
+                throw new IOException(method + " " + url + " failed with " + code);
+            }
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    private static HttpURLConnection open(URL url, String method) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        connection.setRequestMethod(method);
+        connection.setConnectTimeout(CONNECT_TIMEOUT_MILLIS);
+        connection.setReadTimeout(READ_TIMEOUT_MILLIS);
+        connection.setUseCaches(false);
+        return connection;
+    }
+
+    @Nullable
+    private CacheEntry readCacheEntry(String cacheKey) throws IOException {
+        File metaFile = new File(mCacheDir, cacheKey + META_SUFFIX);
+        File bodyFile = new File(mCacheDir, cacheKey + BODY_SUFFIX);
+        if (!metaFile.exists() || !bodyFile.exists()) {
+            return null;
+        }
+        DataInputStream in = new DataInputStream(new FileInputStream(metaFile));
+        try {
+            String url = in.readUTF();
+            String eTag = in.readBoolean() ? in.readUTF() : null;
+            String lastModified = in.readBoolean() ? in.readUTF() : null;
+            return new CacheEntry(url, eTag, lastModified, bodyFile);
+        } finally {
+            in.close();
+        }
+    }
+
+    private File writeCacheEntry(String cacheKey, String url, InputStream body,
+                                 @Nullable String eTag, @Nullable String lastModified)
+            throws IOException {
+        if (!mCacheDir.isDirectory() && !mCacheDir.mkdirs()) {
+            throw new IOException("Can't create " + mCacheDir);
+        }
+        File metaFile = new File(mCacheDir, cacheKey + META_SUFFIX);
+        File bodyFile = new File(mCacheDir, cacheKey + BODY_SUFFIX);
+        metaFile.delete();
+
+        File bodyTemp = new File(mCacheDir, cacheKey + BODY_SUFFIX + TEMP_SUFFIX);
+        OutputStream out = new FileOutputStream(bodyTemp);
+        try {
+            ByteStreams.copy(body, out);
+        } finally {
+            out.close();
+        }
+        rename(bodyTemp, bodyFile);
+
+        File metaTemp = new File(mCacheDir, cacheKey + META_SUFFIX + TEMP_SUFFIX);
+        DataOutputStream meta = new DataOutputStream(new FileOutputStream(metaTemp));
+        try {
+            meta.writeUTF(url);
+            writeOptionalUTF(meta, eTag);
+            writeOptionalUTF(meta, lastModified);
+        } finally {
+            meta.close();
+        }
+        rename(metaTemp, metaFile);
+        return bodyFile;
+    }
+
+    private static void writeOptionalUTF(DataOutputStream out, @Nullable String value)
+            throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static void rename(File from, File to) throws IOException {
+        if (!from.renameTo(to)) {
+            throw new IOException("Can't rename " + from + " to " + to);
+        }
+    }
+
+    /**
+     * Outcome of {@link #get(String, String)}. The body is read from the cache either way.
+     */
+    static final class Response {
+
+        private final File mBodyFile;
+
+        private final boolean mNotModified;
+
+        Response(@NonNull File bodyFile, boolean notModified) {
+            mBodyFile = bodyFile;
+            mNotModified = notModified;
+        }
+
+        /**
+         * @return true if the server answered 304, i.e. the body is the one cached before
+         */
+        boolean isNotModified() {
+            return mNotModified;
+        }
+
+        @NonNull
+        byte[] getBody() throws IOException {
+            return Files.toByteArray(mBodyFile);
+        }
+    }
+
+    private static final class CacheEntry {
+
+        final String mUrl;
+
+        @Nullable
+        final String mETag;
+
+        @Nullable
+        final String mLastModified;
+
+        final File mBodyFile;
+
+        CacheEntry(String url, @Nullable String eTag, @Nullable String lastModified,
+                   File bodyFile) {
+            mUrl = url;
+            mETag = eTag;
+            mLastModified = lastModified;
+            mBodyFile = bodyFile;
+        }
+    }
+}
@@ -0,0 +1,361 @@
+/*
+ * Copyright 2016, The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.Groove9.TunesMaster.data.source.remote;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import android.content.Context;
+import android.net.Uri;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.util.Log;
+
+import edu.Groove9.TunesMaster.data.source.SongsBatches;
+import edu.Groove9.TunesMaster.data.source.SongsChangeSet;
+import edu.Groove9.TunesMaster.data.source.SongsDataSource;
+import edu.Groove9.TunesMaster.data.source.SongsPages;
+import edu.Groove9.TunesMaster.data.source.SongsSearch;
+import edu.Groove9.TunesMaster.playlist.domain.model.Song;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Implementation of the data source that talks to the songs service over HTTP.
+ * <p>
+ * The service exposes:
+ * <ul>
+ * <li>{@code GET /songs}: the catalog, see {@link SongsJson}</li>
+ * <li>{@code GET /songs/changes?since=cursor}: the changes made after {@code cursor}</li>
+ * <li>{@code PUT /songs/id}, {@code DELETE /songs/id} and {@code DELETE /songs}</li>
+ * </ul>
+ * Responses are gzipped and kept on disk, and later requests for them are conditional, see
+ * {@link ConditionalHttpClient}. A refresh of an unchanged catalog therefore costs one bodiless
+ * 304 round-trip, after which the catalog already parsed in memory is reused. If the service
+ * can't be reached, the catalog last received is served.
+ * <p>
+ * Requests run one at a time on a worker thread, and callbacks are fired on that thread.
+ */
+public class HttpSongsRemoteDataSource implements SongsDataSource {
+
+    private static final String TAG = "HttpSongsRemote";
+
+    private static HttpSongsRemoteDataSource INSTANCE;
+
+    static final String SONGS_PATH = "/songs";
+
+    static final String CHANGES_PATH = "/songs/changes?since=";
+
+    static final String CACHE_DIR = "songs-http";
+
+    private static final String CATALOG_CACHE_KEY = "catalog";
+
+    private static final String CHANGES_CACHE_KEY = "changes";
+
+    private final ConditionalHttpClient mClient;
+
+    private final ExecutorService mExecutor = Executors.newSingleThreadExecutor();
+
+    /**
+     * The catalog as last received, by id and in order. Only accessed on the worker thread.
+     */
+    private Map<String, Song> mCatalog;
+
+    // Prevent direct instantiation.
+    private HttpSongsRemoteDataSource(@NonNull String baseUrl, @NonNull File cacheDir) {
+        mClient = new ConditionalHttpClient(baseUrl, cacheDir);
+    }
+
+    /**
+     * @param baseUrl the url of the service, without a trailing slash
+     */
+    public static HttpSongsRemoteDataSource getInstance(@NonNull Context context,
+                                                        @NonNull String baseUrl) {
+        checkNotNull(context);
+        checkNotNull(baseUrl);
+        if (INSTANCE == null) {
+            INSTANCE = new HttpSongsRemoteDataSource(baseUrl,
+                    new File(context.getApplicationContext().getCacheDir(), CACHE_DIR));
+        }
+        return INSTANCE;
+    }
+
+    /**
+     * Used to force {@link #getInstance(Context, String)} to create a new instance next time it's
+     * called.
+     */
+    public static void destroyInstance() {
+        if (INSTANCE != null) {
+            INSTANCE.mExecutor.shutdown();
+        }
+        INSTANCE = null;
+    }
+
+    /**
+     * Note: {@link LoadSongsCallback#onDataNotAvailable()} is fired if the service can't be reached
+     * and no catalog was ever received.
+     */
+    @Override
+    public void getSongs(@NonNull final LoadSongsCallback callback) {
+        checkNotNull(callback);
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                Map<String, Song> catalog = loadCatalog();
+                if (catalog == null) {
+                    callback.onDataNotAvailable();
+                } else {
+                    callback.onSongsLoaded(new ArrayList<>(catalog.values()));
+                }
+            }
+        });
+    }
+
+    /**
+     * Pages are sliced from the catalog, which is cached as a whole.
+     */
+    @Override
+    public void getSongsPage(final int offset, final int limit,
+                             @NonNull final LoadSongsPageCallback callback) {
+        SongsPages.checkPageArguments(offset, limit);
+        checkNotNull(callback);
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                Map<String, Song> catalog = loadCatalog();
+                if (catalog == null) {
+                    callback.onDataNotAvailable();
+                } else {
+                    SongsPages.deliverPage(new ArrayList<>(catalog.values()), offset, limit,
+                            callback);
+                }
+            }
+        });
+    }
+
+    /**
+     * Note: {@link GetSongCallback#onDataNotAvailable()} is fired if the song isn't in the catalog
+     * or no catalog is available.
+     */
+    @Override
+    public void getSong(@NonNull final String id, @NonNull final GetSongCallback callback) {
+        checkNotNull(id);
+        checkNotNull(callback);
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                Map<String, Song> catalog = loadCatalog();
+                Song song = catalog != null ? catalog.get(id) : null;
+                if (song == null) {
+                    callback.onDataNotAvailable();
+                } else {
+                    callback.onSongLoaded(song);
+                }
+            }
+        });
+    }
+
+    /**
+     * The songs are looked up in the catalog, so the whole batch costs one conditional request.
+     * <p>
+     * Note: {@link GetSongsCallback#onDataNotAvailable()} is fired if no catalog is available.
+     */
+    @Override
+    public void getSongs(@NonNull final Collection<String> ids,
+                         @NonNull final GetSongsCallback callback) {
+        // Copied now: the caller may change the collection before the request runs
+        final List<String> distinctIds = new ArrayList<>(SongsBatches.distinct(ids));
+        checkNotNull(callback);
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                Map<String, Song> catalog = loadCatalog();
+                if (catalog == null) {
+                    callback.onDataNotAvailable();
+                } else {
+                    SongsBatches.deliver(distinctIds, catalog, callback);
+                }
+            }
+        });
+    }
+
+    @Override
+    public void searchSongs(@NonNull final String query, final int limit,
+                            @NonNull final LoadSongsCallback callback) {
+        SongsSearch.checkSearchArguments(query, limit);
+        checkNotNull(callback);
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                Map<String, Song> catalog = loadCatalog();
+                if (catalog == null) {
+                    callback.onDataNotAvailable();
+                } else {
+                    callback.onSongsLoaded(SongsSearch.search(
+                            new ArrayList<>(catalog.values()), query, limit));
+                }
+            }
+        });
+    }
+
+    /**
+     * A 304 means the change set cached for this cursor is still the answer, so it's read back
+     * from disk rather than downloaded again.
+     * <p>
+     * Note: {@link LoadChangesCallback#onDataNotAvailable()} is fired if the service can't be
+     * reached.
+     */
+    @Override
+    public void getChangesSince(final long cursor, @NonNull final LoadChangesCallback callback) {
+        checkNotNull(callback);
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                SongsChangeSet changes;
+                try {
+                    changes = SongsJson.readChangeSet(
+                            mClient.get(CHANGES_PATH + cursor, CHANGES_CACHE_KEY).getBody());
+                } catch (IOException e) {
+                    Log.w(TAG, "Can't load the changes since " + cursor, e);
+                    callback.onDataNotAvailable();
+                    return;
+                }
+                callback.onChangesLoaded(changes);
+            }
+        });
+    }
+
+    @Override
+    public void applyChanges(@NonNull SongsChangeSet changes) {
+        // Not required because the server is where changes come from.
+    }
+
+    @Override
+    public long getSyncCursor() {
+        return SongsChangeSet.NO_CURSOR;
+    }
+
+    @Override
+    public void saveSong(@NonNull final Song song) {
+        checkNotNull(song);
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    mClient.send("PUT", songPath(song.getId()), SongsJson.writeSong(song));
+                } catch (IOException e) {
+                    Log.w(TAG, "Can't save song " + song.getId(), e);
+                }
+            }
+        });
+    }
+
+    @Override
+    public void saveSongs(@NonNull List<Song> songs) {
+        checkNotNull(songs);
+        for (Song song : songs) {
+            saveSong(song);
+        }
+    }
+
+    @Override
+    public void refreshSongs() {
+        // Not required because the {@link SongsRepository} handles the logic of refreshing the
+        // tasks from all the available data sources.
+    }
+
+    @Override
+    public void deleteAllSongs() {
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    mClient.send("DELETE", SONGS_PATH, null);
+                } catch (IOException e) {
+                    Log.w(TAG, "Can't delete the songs", e);
+                }
+            }
+        });
+    }
+
+    @Override
+    public void deleteSong(@NonNull final String taskId) {
+        checkNotNull(taskId);
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    mClient.send("DELETE", songPath(taskId), null);
+                } catch (IOException e) {
+                    Log.w(TAG, "Can't delete song " + taskId, e);
+                }
+            }
+        });
+    }
+
+    /**
+     * Revalidates the catalog, parsing it only if it changed or isn't in memory yet.
+     *
+     * @return the catalog, possibly stale if the service can't be reached, or null if there's none
+     */
+    @Nullable
+    private Map<String, Song> loadCatalog() {
+        try {
+            ConditionalHttpClient.Response response = mClient.get(SONGS_PATH, CATALOG_CACHE_KEY);
+            if (!response.isNotModified() || mCatalog == null) {
+                mCatalog = index(SongsJson.readSongs(response.getBody()));
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "Can't load the catalog", e);
+            if (mCatalog == null) {
+                mCatalog = loadCachedCatalog();
+            }
+        }
+        return mCatalog;
+    }
+
+    @Nullable
+    private Map<String, Song> loadCachedCatalog() {
+        try {
+            byte[] body = mClient.getCached(CATALOG_CACHE_KEY);
+            return body != null ? index(SongsJson.readSongs(body)) : null;
+        } catch (IOException e) {
+            Log.w(TAG, "Can't read the cached catalog", e);
+            return null;
+        }
+    }
+
+    private static Map<String, Song> index(List<Song> songs) {
+        Map<String, Song> catalog = new LinkedHashMap<>(songs.size() * 4 / 3 + 1);
+        for (Song song : songs) {
+            catalog.put(song.getId(), song);
+        }
+        return Collections.unmodifiableMap(catalog);
+    }
+
+    private static String songPath(String id) {
+        return SONGS_PATH + "/" + Uri.encode(id);
+    }
+}
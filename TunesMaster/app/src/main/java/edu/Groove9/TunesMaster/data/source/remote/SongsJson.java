@@ -0,0 +1,229 @@
+/*
+ * Copyright 2016, The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.Groove9.TunesMaster.data.source.remote;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.util.JsonReader;
+import android.util.JsonToken;
+import android.util.JsonWriter;
+
+import edu.Groove9.TunesMaster.data.source.SongsChangeSet;
+import edu.Groove9.TunesMaster.playlist.domain.model.SerializableUri;
+import edu.Groove9.TunesMaster.playlist.domain.model.Song;
+
+import com.google.common.base.Charsets;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads and writes the JSON documents of the songs service.
+ * <p>
+ * A song is {@code {"id": ..., "title": ..., "description": ..., "source": ...}}. The catalog is an
+ * array of songs. A change set is
+ * {@code {"cursor": ..., "reset": ..., "saved": [songs], "deleted": [ids]}}.
+ * <p>
+ * Any document that can't be read is reported as an {@link IOException}, including values of the
+ * wrong type, which {@link JsonReader} reports with unchecked exceptions. Callers then have a
+ * single failure to handle.
+ */
+final class SongsJson {
+
+    private static final String ID = "id";
+    private static final String TITLE = "title";
+    private static final String DESCRIPTION = "description";
+    private static final String SOURCE = "source";
+
+    private static final String CURSOR = "cursor";
+    private static final String RESET = "reset";
+    private static final String SAVED = "saved";
+    private static final String DELETED = "deleted";
+
+    private SongsJson() {}
+
+    @NonNull
+    static List<Song> readSongs(@NonNull byte[] json) throws IOException {
+        JsonReader reader = newReader(json);
+        try {
+            return readSongArray(reader);
+        } catch (RuntimeException e) {
+            throw new IOException("Malformed songs: " + e.getMessage(), e);
+        } finally {
+            reader.close();
+        }
+    }
+
+    @NonNull
+    static Song readSong(@NonNull byte[] json) throws IOException {
+        JsonReader reader = newReader(json);
+        try {
+            return readSong(reader);
+        } catch (RuntimeException e) {
+            throw new IOException("Malformed song: " + e.getMessage(), e);
+        } finally {
+            reader.close();
+        }
+    }
+
+    @NonNull
+    static SongsChangeSet readChangeSet(@NonNull byte[] json) throws IOException {
+        JsonReader reader = newReader(json);
+        try {
+            long cursor = SongsChangeSet.NO_CURSOR;
+            boolean reset = false;
+            List<Song> saved = new ArrayList<>();
+            List<String> deleted = new ArrayList<>();
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String name = reader.nextName();
+                if (CURSOR.equals(name)) {
+                    cursor = reader.nextLong();
+                } else if (RESET.equals(name)) {
+                    reset = reader.nextBoolean();
+                } else if (SAVED.equals(name)) {
+                    saved = readSongArray(reader);
+                } else if (DELETED.equals(name)) {
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        deleted.add(reader.nextString());
+                    }
+                    reader.endArray();
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+            return new SongsChangeSet(saved, deleted, cursor, reset);
+        } catch (RuntimeException e) {
+            throw new IOException("Malformed change set: " + e.getMessage(), e);
+        } finally {
+            reader.close();
+        }
+    }
+
+    @NonNull
+    static byte[] writeSong(@NonNull Song song) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        JsonWriter writer = new JsonWriter(new OutputStreamWriter(out, Charsets.UTF_8));
+        writeSong(writer, song);
+        writer.close();
+        return out.toByteArray();
+    }
+
+    @NonNull
+    static byte[] writeSongs(@NonNull List<Song> songs) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        JsonWriter writer = new JsonWriter(new OutputStreamWriter(out, Charsets.UTF_8));
+        writeSongArray(writer, songs);
+        writer.close();
+        return out.toByteArray();
+    }
+
+    @NonNull
+    static byte[] writeChangeSet(@NonNull SongsChangeSet changes) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        JsonWriter writer = new JsonWriter(new OutputStreamWriter(out, Charsets.UTF_8));
+        writer.beginObject();
+        writer.name(CURSOR).value(changes.getCursor());
+        writer.name(RESET).value(changes.isReset());
+        writer.name(SAVED);
+        writeSongArray(writer, changes.getSavedSongs());
+        writer.name(DELETED).beginArray();
+        for (String id : changes.getDeletedIds()) {
+            writer.value(id);
+        }
+        writer.endArray();
+        writer.endObject();
+        writer.close();
+        return out.toByteArray();
+    }
+
+    private static JsonReader newReader(byte[] json) {
+        return new JsonReader(new InputStreamReader(new ByteArrayInputStream(json),
+                Charsets.UTF_8));
+    }
+
+    private static List<Song> readSongArray(JsonReader reader) throws IOException {
+        List<Song> songs = new ArrayList<>();
+        reader.beginArray();
+        while (reader.hasNext()) {
+            songs.add(readSong(reader));
+        }
+        reader.endArray();
+        return songs;
+    }
+
+    private static Song readSong(JsonReader reader) throws IOException {
+        String id = null;
+        String title = null;
+        String description = null;
+        String source = null;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (ID.equals(name)) {
+                id = nextNullableString(reader);
+            } else if (TITLE.equals(name)) {
+                title = nextNullableString(reader);
+            } else if (DESCRIPTION.equals(name)) {
+                description = nextNullableString(reader);
+            } else if (SOURCE.equals(name)) {
+                source = nextNullableString(reader);
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        if (id == null || source == null) {
+            throw new IOException("Song without an id or a source");
+        }
+        // The source is parsed when the song is played, not for every song of the catalog
+        return new Song(title, description, id, SerializableUri.fromString(source));
+    }
+
+    @Nullable
+    private static String nextNullableString(JsonReader reader) throws IOException {
+        if (reader.peek() == JsonToken.NULL) {
+            reader.nextNull();
+            return null;
+        }
+        return reader.nextString();
+    }
+
+    private static void writeSongArray(JsonWriter writer, List<Song> songs) throws IOException {
+        writer.beginArray();
+        for (Song song : songs) {
+            writeSong(writer, song);
+        }
+        writer.endArray();
+    }
+
+    private static void writeSong(JsonWriter writer, Song song) throws IOException {
+        writer.beginObject();
+        writer.name(ID).value(song.getId());
+        writer.name(TITLE).value(song.getTitle());
+        writer.name(DESCRIPTION).value(song.getDescription());
+        writer.name(SOURCE).value(song.getmSource().getUriString());
+        writer.endObject();
+    }
+}
@@ -22,12 +22,17 @@ import android.os.Looper;
 import android.support.annotation.NonNull;
 
 import edu.Groove9.TunesMaster.playlist.domain.model.Song;
+import edu.Groove9.TunesMaster.data.source.SongsBatches;
+import edu.Groove9.TunesMaster.data.source.SongsChangeLog;
+import edu.Groove9.TunesMaster.data.source.SongsChangeSet;
 import edu.Groove9.TunesMaster.data.source.SongsDataSource;
-import com.google.common.collect.Lists;
+import edu.Groove9.TunesMaster.data.source.SongsPages;
+import edu.Groove9.TunesMaster.data.source.SongsSearch;
 
+import java.util.Collection;
 import java.util.Iterator;
-import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.List;
 
 /**
  * Implementation of the data source that adds a latency simulating network.
@@ -38,10 +43,10 @@ public class SongsRemoteDataSource implements SongsDataSource {
 
     private static final int SERVICE_LATENCY_IN_MILLIS = 5000;
 
-    private static final Map<String, Song> TASKS_SERVICE_DATA;
+    private static final SongsChangeLog TASKS_SERVICE_DATA;
 
     static {
-        TASKS_SERVICE_DATA = new LinkedHashMap<>(2);
+        TASKS_SERVICE_DATA = new SongsChangeLog();
         addTask("One Punch Man Theme", "1st song on OST.", Uri.parse("https://www.youtube.com/watch?v=E8XaV1yjabk"));
         addTask("Transistor OST", "Full soundtrack to the game Transistor.", Uri.parse("https://www.youtube.com/watch?v=-zA1jRmAYfU&t"));
     }
@@ -58,7 +63,7 @@ public class SongsRemoteDataSource implements SongsDataSource {
 
     private static void addTask(String title, String description, Uri source) {
         Song newSong = new Song(title, description, source);
-        TASKS_SERVICE_DATA.put(newSong.getId(), newSong);
+        TASKS_SERVICE_DATA.put(newSong);
     }
 
     /**
@@ -73,7 +78,44 @@ public class SongsRemoteDataSource implements SongsDataSource {
         handler.postDelayed(new Runnable() {
             @Override
             public void run() {
-                callback.onSongsLoaded(Lists.newArrayList(TASKS_SERVICE_DATA.values()));
+                callback.onSongsLoaded(TASKS_SERVICE_DATA.getSongs());
+            }
+        }, SERVICE_LATENCY_IN_MILLIS);
+    }
+
+    /**
+     * Note: {@link LoadSongsPageCallback#onDataNotAvailable()} is never fired.
+     */
+    @Override
+    public void getSongsPage(final int offset, final int limit,
+                             final @NonNull LoadSongsPageCallback callback) {
+        SongsPages.checkPageArguments(offset, limit);
+        // Simulate network by delaying the execution.
+        Handler handler = new Handler(Looper.getMainLooper());
+        handler.postDelayed(new Runnable() {
+            @Override
+            public void run() {
+                SongsPages.deliverPage(TASKS_SERVICE_DATA.getSongs(), offset, limit, callback);
+            }
+        }, SERVICE_LATENCY_IN_MILLIS);
+    }
+
+    /**
+     * All the songs are looked up in one simulated round-trip.
+     * <p>
+     * Note: {@link GetSongsCallback#onDataNotAvailable()} is never fired.
+     */
+    @Override
+    public void getSongs(@NonNull final Collection<String> ids,
+                         final @NonNull GetSongsCallback callback) {
+        final Map<String, Song> songs = TASKS_SERVICE_DATA.getAll(ids);
+
+        // Simulate network by delaying the execution.
+        Handler handler = new Handler(Looper.getMainLooper());
+        handler.postDelayed(new Runnable() {
+            @Override
+            public void run() {
+                SongsBatches.deliver(ids, songs, callback);
             }
         }, SERVICE_LATENCY_IN_MILLIS);
     }
@@ -88,7 +130,7 @@ public class SongsRemoteDataSource implements SongsDataSource {
         final Song song = TASKS_SERVICE_DATA.get(id);
 
         // Simulate network by delaying the execution.
-        Handler handler = new Handler();
+        Handler handler = new Handler(Looper.getMainLooper());
         handler.postDelayed(new Runnable() {
             @Override
             public void run() {
@@ -97,9 +139,63 @@ public class SongsRemoteDataSource implements SongsDataSource {
         }, SERVICE_LATENCY_IN_MILLIS);
     }
 
+    /**
+     * Note: {@link LoadSongsCallback#onDataNotAvailable()} is never fired.
+     */
+    @Override
+    public void searchSongs(final @NonNull String query, final int limit,
+                            final @NonNull LoadSongsCallback callback) {
+        SongsSearch.checkSearchArguments(query, limit);
+        // Simulate network by delaying the execution.
+        Handler handler = new Handler(Looper.getMainLooper());
+        handler.postDelayed(new Runnable() {
+            @Override
+            public void run() {
+                callback.onSongsLoaded(SongsSearch.search(TASKS_SERVICE_DATA.getSongs(), query,
+                        limit));
+            }
+        }, SERVICE_LATENCY_IN_MILLIS);
+    }
+
+    /**
+     * Only the songs changed after {@code cursor} are sent, see {@link SongsChangeLog}.
+     * <p>
+     * Note: {@link LoadChangesCallback#onDataNotAvailable()} is never fired.
+     */
+    @Override
+    public void getChangesSince(long cursor, final @NonNull LoadChangesCallback callback) {
+        final SongsChangeSet changes = TASKS_SERVICE_DATA.changesSince(cursor);
+
+        // Simulate network by delaying the execution.
+        Handler handler = new Handler(Looper.getMainLooper());
+        handler.postDelayed(new Runnable() {
+            @Override
+            public void run() {
+                callback.onChangesLoaded(changes);
+            }
+        }, SERVICE_LATENCY_IN_MILLIS);
+    }
+
+    @Override
+    public void applyChanges(@NonNull SongsChangeSet changes) {
+        // Not required because the server is where changes come from.
+    }
+
+    @Override
+    public long getSyncCursor() {
+        return SongsChangeSet.NO_CURSOR;
+    }
+
     @Override
     public void saveSong(@NonNull Song song) {
-        TASKS_SERVICE_DATA.put(song.getId(), song);
+        TASKS_SERVICE_DATA.put(song);
+    }
+
+    @Override
+    public void saveSongs(@NonNull List<Song> songs) {
+        for (Song song : songs) {
+            TASKS_SERVICE_DATA.put(song);
+        }
     }
 
     @Override
@@ -36,6 +36,8 @@ public interface PlaylistContract {
 
         void showTasks(List<Song> songs);
 
+        void showMoreTasks(List<Song> songs);
+
         void showAddTask();
 
         void showSongPlayerUI(Playlist playlist);
@@ -69,10 +71,14 @@ public interface PlaylistContract {
 
     interface Presenter extends BasePresenter {
 
+        void stop();
+
         void result(int requestCode, int resultCode);
 
         void loadTasks(boolean forceUpdate);
 
+        void loadMoreTasks();
+
         void addNewTask();
 
         void openSongPlayer(@NonNull Playlist playlist);
@@ -32,12 +32,14 @@ import android.view.MenuInflater;
 import android.view.MenuItem;
 import android.view.View;
 import android.view.ViewGroup;
+import android.widget.AbsListView;
 import android.widget.BaseAdapter;
 import android.widget.ImageView;
 import android.widget.LinearLayout;
 import android.widget.ListView;
 import android.widget.TextView;
 
+import edu.Groove9.TunesMaster.ColdStartTimer;
 import edu.Groove9.TunesMaster.Injection;
 import edu.Groove9.TunesMaster.R;
 import edu.Groove9.TunesMaster.addedittask.AddEditTaskActivity;
@@ -103,6 +105,12 @@ public class PlaylistFragment extends Fragment implements PlaylistContract.View
         mPresenter.start();
     }
 
+    @Override
+    public void onPause() {
+        mPresenter.stop();
+        super.onPause();
+    }
+
     @Override
     public void setPresenter(@NonNull PlaylistContract.Presenter presenter) {
         mPresenter = checkNotNull(presenter);
@@ -122,6 +130,21 @@ public class PlaylistFragment extends Fragment implements PlaylistContract.View
         // Set up tasks view
         ListView listView = (ListView) root.findViewById(R.id.tasks_list);
         listView.setAdapter(mListAdapter);
+        listView.setOnScrollListener(new AbsListView.OnScrollListener() {
+            @Override
+            public void onScrollStateChanged(AbsListView view, int scrollState) {
+            }
+
+            @Override
+            public void onScroll(AbsListView view, int firstVisibleItem, int visibleItemCount,
+                                 int totalItemCount) {
+                // Ask for the next page while there's still about a screen left to scroll through
+                if (totalItemCount > 0
+                        && firstVisibleItem + 2 * visibleItemCount >= totalItemCount) {
+                    mPresenter.loadMoreTasks();
+                }
+            }
+        });
         mFilteringLabelView = (TextView) root.findViewById(R.id.filteringLabel);
         mSongsView = (LinearLayout) root.findViewById(R.id.tasksLL);
 
@@ -243,6 +266,13 @@ public class PlaylistFragment extends Fragment implements PlaylistContract.View
 
         mSongsView.setVisibility(View.VISIBLE);
         mNoSongsView.setVisibility(View.GONE);
+
+        ColdStartTimer.onPlaylistShown();
+    }
+
+    @Override
+    public void showMoreTasks(List<Song> songs) {
+        mListAdapter.addData(songs);
     }
 
     @Override
@@ -311,9 +341,7 @@ public class PlaylistFragment extends Fragment implements PlaylistContract.View
     public void showSongPlayerUI(Playlist playlist) {
         // in it's own Activity, since it makes more sense that way and it gives us the flexibility
         // to show some Intent stubbing.
-        Intent intent = new Intent(getContext(), SongPlayerActivity.class);
-        intent.putExtra("edu.Groove9.TunesMaster.playlist.domain.model.Playlist", playlist);
-        startActivity(intent);
+        startActivity(SongPlayerActivity.newIntent(getContext(), playlist));
     }
 
     @Override
@@ -360,8 +388,17 @@ public class PlaylistFragment extends Fragment implements PlaylistContract.View
             notifyDataSetChanged();
         }
 
+        /**
+         * Appends to the list in place, so only the new rows are bound.
+         */
+        public void addData(List<Song> songs) {
+            mSongs.addAll(songs);
+            notifyDataSetChanged();
+        }
+
         private void setList(List<Song> songs) {
-            mSongs = checkNotNull(songs);
+            // Our own copy, which addData appends to
+            mSongs = new ArrayList<>(checkNotNull(songs));
         }
 
         @Override
@@ -388,7 +425,7 @@ public class PlaylistFragment extends Fragment implements PlaylistContract.View
             }
 
             final Song song = getItem(i);
-            final List<Song> songs = mSongs;
+            final int position = i;
 
             TextView titleTV = (TextView) rowView.findViewById(R.id.title);
             titleTV.setText(song.getTitleForList());
@@ -403,7 +440,9 @@ public class PlaylistFragment extends Fragment implements PlaylistContract.View
             rowView.setOnClickListener(new View.OnClickListener() {
                 @Override
                 public void onClick(View view) {
-                    mItemListener.onTaskClick(new Playlist(songs, song));
+                    // A copy, since later pages are appended to the list
+                    List<Song> songs = new ArrayList<>(mSongs);
+                    mItemListener.onTaskClick(new Playlist(songs, position));
                 }
             });
 
@@ -27,6 +27,8 @@ import edu.Groove9.TunesMaster.addedittask.AddEditTaskActivity;
 import edu.Groove9.TunesMaster.playlist.domain.model.Playlist;
 import edu.Groove9.TunesMaster.playlist.domain.model.Song;
 import edu.Groove9.TunesMaster.data.source.SongsDataSource;
+import edu.Groove9.TunesMaster.data.source.SongsDiff;
+import edu.Groove9.TunesMaster.data.source.SongsRepository;
 import edu.Groove9.TunesMaster.playlist.domain.usecase.GetTasks;
 
 import java.util.List;
@@ -37,14 +39,36 @@ import java.util.List;
  */
 public class PlaylistPresenter implements PlaylistContract.Presenter {
 
+    /**
+     * Songs requested per page. About two screens, so the first one fills the list right away.
+     */
+    public static final int PAGE_SIZE = 30;
+
+    private static final String LOAD_TASKS_KEY = "playlist.load";
 
     private final PlaylistContract.View mTasksView;
     private final GetTasks mGetTasks;
 
-    private PlaylistFilterType mCurrentFiltering = PlaylistFilterType.ALL_TASKS;
+    private volatile PlaylistFilterType mCurrentFiltering = PlaylistFilterType.ALL_TASKS;
 
     private boolean mFirstLoad = true;
 
+    /**
+     * Guards the paging state below, which a reload started by {@link #mSongsObserver} resets from
+     * another thread.
+     */
+    private final Object mPagingLock = new Object();
+
+    /**
+     * Bumped by every load of the list, so that pages of a superseded load are ignored.
+     */
+    private int mLoadGeneration;
+
+    /**
+     * Where the next page starts, or -1 while a page is loading or once the last one is shown.
+     */
+    private int mNextOffset = -1;
+
     private final UseCaseHandler mUseCaseHandler;
 
     public PlaylistPresenter(@NonNull UseCaseHandler useCaseHandler,
@@ -56,11 +80,29 @@ public class PlaylistPresenter implements PlaylistContract.Presenter {
         mTasksView.setPresenter(this);
     }
 
+    /**
+     * Reloads the list, without the loading indicator, when songs that were served stale turn out
+     * to have changed.
+     */
+    private final SongsRepository.SongsObserver mSongsObserver =
+            new SongsRepository.SongsObserver() {
+                @Override
+                public void onSongsChanged(@NonNull SongsDiff diff) {
+                    loadTasks(false, false);
+                }
+            };
+
     @Override
     public void start() {
+        mGetTasks.addSongsObserver(mSongsObserver);
         loadTasks(false);
     }
 
+    @Override
+    public void stop() {
+        mGetTasks.removeSongsObserver(mSongsObserver);
+    }
+
     @Override
     public void result(int requestCode, int resultCode) {
         // If a task was successfully added, show snackbar
@@ -81,13 +123,49 @@ public class PlaylistPresenter implements PlaylistContract.Presenter {
      * @param forceUpdate   Pass in true to refresh the data in the {@link SongsDataSource}
      * @param showLoadingUI Pass in true to display a loading icon in the UI
      */
-    private void loadTasks(boolean forceUpdate, final boolean showLoadingUI) {
+    private void loadTasks(boolean forceUpdate, boolean showLoadingUI) {
         if (showLoadingUI) {
             mTasksView.setLoadingIndicator(true);
         }
+        int generation;
+        synchronized (mPagingLock) {
+            generation = ++mLoadGeneration;
+            mNextOffset = -1;
+        }
+        loadPage(generation, forceUpdate, 0, true, showLoadingUI);
+    }
+
+    /**
+     * Loads the next page of the list, if there is one and it isn't loading already. Called by the
+     * view as the user scrolls towards the end of what is shown.
+     */
+    @Override
+    public void loadMoreTasks() {
+        int generation;
+        int offset;
+        synchronized (mPagingLock) {
+            if (mNextOffset < 0) {
+                return;
+            }
+            generation = mLoadGeneration;
+            offset = mNextOffset;
+            mNextOffset = -1;
+        }
+        loadPage(generation, false, offset, false, false);
+    }
 
+    /**
+     * Loads one page and shows it. The next one is only loaded on {@link #loadMoreTasks()}, unless
+     * this one had nothing to show. Starting a new load supersedes the page still pending from the
+     * previous one.
+     *
+     * @param replace Pass in true until something has been shown, so the first songs replace the
+     *                previous list
+     */
+    private void loadPage(final int generation, boolean forceUpdate, int offset,
+                          final boolean replace, final boolean showLoadingUI) {
         GetTasks.RequestValues requestValue = new GetTasks.RequestValues(forceUpdate,
-                mCurrentFiltering);
+                mCurrentFiltering, offset, PAGE_SIZE);
 
         mUseCaseHandler.execute(mGetTasks, requestValue,
                 new UseCase.UseCaseCallback<GetTasks.ResponseValue>() {
@@ -98,11 +176,31 @@ public class PlaylistPresenter implements PlaylistContract.Presenter {
                         if (!mTasksView.isActive()) {
                             return;
                         }
-                        if (showLoadingUI) {
-                            mTasksView.setLoadingIndicator(false);
+                        // A filtered page can be empty even though later ones are not
+                        boolean nothingToShowYet = songs.isEmpty() && response.hasMore();
+                        if (replace && !nothingToShowYet) {
+                            if (showLoadingUI) {
+                                mTasksView.setLoadingIndicator(false);
+                            }
+                            processTasks(songs);
+                        } else if (!replace && !songs.isEmpty()) {
+                            mTasksView.showMoreTasks(songs);
                         }
 
-                        processTasks(songs);
+                        if (!response.hasMore()) {
+                            return;
+                        }
+                        if (songs.isEmpty()) {
+                            // Nothing new to scroll to, so the view wouldn't ask for more
+                            loadPage(generation, false, response.getNextOffset(), replace,
+                                    showLoadingUI);
+                            return;
+                        }
+                        synchronized (mPagingLock) {
+                            if (mLoadGeneration == generation) {
+                                mNextOffset = response.getNextOffset();
+                            }
+                        }
                     }
 
                     @Override
@@ -113,7 +211,7 @@ public class PlaylistPresenter implements PlaylistContract.Presenter {
                         }
                         mTasksView.showLoadingTasksError();
                     }
-                });
+                }, LOAD_TASKS_KEY);
     }
 
     private void processTasks(List<Song> songs) {
@@ -1,19 +1,62 @@
 package edu.Groove9.TunesMaster.playlist.domain.model;
 
+import android.os.Parcel;
+import android.os.Parcelable;
 import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Random;
 
 /**
  * Created by ConnorM on 2/22/2017.
+ * <p>
+ * Playlists are written to parcels as {@link Parcelable}s, which is much smaller and faster than
+ * the {@link Serializable} form for large playlists, see {@link #writeToParcel}. A large playlist
+ * still doesn't fit in an Intent, so the player is handed it in memory.
+ * <p>
+ * The position of the current song is tracked, so moving to the next or last song takes constant
+ * time. Jumping to a song with {@link #setCurrentSong(Song)} looks its id up in an index of
+ * positions, built the first time it's needed. The songs must not be changed through
+ * {@link #getSongs()}; use {@link #setSongs(List)} instead.
  */
 
-@SuppressWarnings("serial")
-public class Playlist implements Serializable {
+public class Playlist implements Serializable, Parcelable {
+
+    /**
+     * The one computed for the original class. The serialized fields are still only the songs and
+     * the current song, see {@link #readObject}.
+     */
+    private static final long serialVersionUID = 2682211214389358577L;
+
+    public static final Creator<Playlist> CREATOR = new Creator<Playlist>() {
+        @Override
+        public Playlist createFromParcel(Parcel source) {
+            int size = source.readInt();
+            List<Song> songs = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                String id = source.readString();
+                String title = source.readString();
+                String description = source.readString();
+                SerializableUri uri = SerializableUri.fromString(source.readString());
+                songs.add(new Song(title, description, id, uri));
+            }
+            return new Playlist(songs, source.readInt());
+        }
+
+        @Override
+        public Playlist[] newArray(int size) {
+            return new Playlist[size];
+        }
+    };
 
     @NonNull
     private List<Song> songs;
@@ -21,61 +64,91 @@ public class Playlist implements Serializable {
     @NonNull
     private Song currentSong = null;
 
+    /**
+     * Position of {@link #currentSong} in {@link #songs}, or -1 if there's no current song or it
+     * isn't in the playlist. Not serialized, but found again from the current song.
+     */
+    private transient int currentIndex = -1;
+
+    /**
+     * Position of each song by id, or null until {@link #setCurrentSong(Song)} needs it.
+     */
+    private transient Map<String, Integer> positions;
+
     public Playlist(List<Song> songs) {
-        ensureIsValid(songs);
-        this.songs = songs;
-        if (!songs.isEmpty()) {
-            currentSong = songs.get(0);
-        }
+        this(songs, songs.isEmpty() ? -1 : 0);
     }
 
     public Playlist(Song... songs) {
         this(Arrays.asList(songs));
     }
 
-    public Playlist(List<Song> songs, Song currentSong) {
-        this(songs);
-        this.currentSong = currentSong;
+    /**
+     * @param currentSong the song to start from, or null for none
+     */
+    public Playlist(List<Song> songs, @Nullable Song currentSong) {
+        this(songs, -1);
+        if (currentSong != null) {
+            setCurrentSong(currentSong);
+        }
+    }
+
+    /**
+     * @param currentIndex position of the current song, or -1 for none
+     */
+    public Playlist(List<Song> songs, int currentIndex) {
+        ensureIsValid(songs);
+        if (currentIndex < -1 || currentIndex >= songs.size()) {
+            throw new IndexOutOfBoundsException(
+                    "Current index " + currentIndex + " out of " + songs.size() + " songs");
+        }
+        this.songs = songs;
+        moveTo(currentIndex);
     }
 
-    public Song getCurrentSong() {
+    public synchronized Song getCurrentSong() {
         return currentSong;
     }
 
-    public Song getNextSong() {
+    /**
+     * @return position of the current song, or -1 if there is none or it isn't in the playlist
+     */
+    public synchronized int getCurrentIndex() {
+        return currentIndex;
+    }
+
+    public synchronized Song getNextSong() {
         if (songs.isEmpty() || currentSong == null) {
             return null;
         }
 
-        int currentIndex = songs.indexOf(currentSong);
         int lastIndex = songs.size() - 1;
         if (currentIndex == lastIndex) {
-            currentSong = songs.get(0);
+            moveTo(0);
         } else {
-            currentSong = songs.get(++currentIndex);
+            moveTo(currentIndex + 1);
         }
 
         return currentSong;
     }
 
-    public Song getLastSong() {
+    public synchronized Song getLastSong() {
         if (songs.isEmpty() || currentSong == null) {
             return null;
         }
 
-        int currentIndex = songs.indexOf(currentSong);
         int firstIndex = 0;
-        if (currentIndex == firstIndex) {
+        if (currentIndex <= firstIndex) {
             int lastIndex = songs.size() - 1;
-            currentSong = songs.get(lastIndex);
+            moveTo(lastIndex);
         } else {
-            currentSong = songs.get(--currentIndex);
+            moveTo(currentIndex - 1);
         }
 
         return currentSong;
     }
 
-    public void Shuffle() {
+    public synchronized void Shuffle() {
         if (songs.isEmpty()) {
             return;
         }
@@ -88,7 +161,24 @@ public class Playlist implements Serializable {
         int min = 0;
         int max = songs.size() - 1;
         int randomIndex = min + (int)(Math.random() * ((max - min) + 1));
-        currentSong = songs.get(randomIndex);
+        moveTo(randomIndex);
+        positions = null;
+    }
+
+    private void moveTo(int index) {
+        currentIndex = index;
+        currentSong = index >= 0 ? songs.get(index) : null;
+    }
+
+    private Map<String, Integer> getPositions() {
+        if (positions == null) {
+            positions = new HashMap<>(songs.size() * 4 / 3 + 1);
+            // Backwards, so that a repeated song maps to its first position
+            for (int i = songs.size() - 1; i >= 0; i--) {
+                positions.put(songs.get(i).getId(), i);
+            }
+        }
+        return positions;
     }
 
     private static void ensureIsValid(List<Song> songs) {
@@ -99,18 +189,60 @@ public class Playlist implements Serializable {
         }
     }
 
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        currentIndex = -1;
+        if (currentSong != null) {
+            setCurrentSong(currentSong);
+        }
+    }
+
+    @Override
+    public int describeContents() {
+        return 0;
+    }
+
+    /**
+     * Writes the number of songs, then the id, title, description and source of each one, then
+     * the position of the current song or -1. Sources are written as they were read, without
+     * parsing them.
+     */
+    @Override
+    public synchronized void writeToParcel(Parcel dest, int flags) {
+        dest.writeInt(songs.size());
+        for (int i = 0; i < songs.size(); i++) {
+            Song song = songs.get(i);
+            dest.writeString(song.getId());
+            dest.writeString(song.getTitle());
+            dest.writeString(song.getDescription());
+            dest.writeString(song.getmSource().getUriString());
+        }
+        dest.writeInt(currentIndex);
+    }
+
     // for serializability
 
     @NonNull
-    public List<Song> getSongs() {
+    public synchronized List<Song> getSongs() {
         return songs;
     }
 
-    public void setSongs(@NonNull List<Song> songs) {
+    public synchronized void setSongs(@NonNull List<Song> songs) {
+        ensureIsValid(songs);
         this.songs = songs;
+        positions = null;
+        if (currentSong != null) {
+            setCurrentSong(currentSong);
+        }
     }
 
-    public void setCurrentSong(@NonNull Song currentSong) {
-        this.currentSong = currentSong;
+    /**
+     * Jumps to the first song with the id of {@code currentSong}. A song that isn't in the
+     * playlist still becomes the current one, and the next song after it is the first.
+     */
+    public synchronized void setCurrentSong(@NonNull Song currentSong) {
+        Integer position = getPositions().get(currentSong.getId());
+        currentIndex = position != null ? position : -1;
+        this.currentSong = position != null ? songs.get(position) : currentSong;
     }
 }
@@ -17,13 +17,34 @@ public class SerializableUri implements Serializable {
 
     private String path;
 
+    /**
+     * String form of the uri, when it was created by {@link #fromString(String)}.
+     */
+    private String uriString;
+
+    private SerializableUri() {}
+
     public SerializableUri(Uri uri) {
         checkNotNull(uri);
         setUri(uri);
     }
 
+    /**
+     * Creates a SerializableUri that only parses {@code uriString} once the uri or its path is
+     * needed, which saves the parsing for songs that are listed but never played.
+     */
+    @NonNull
+    public static SerializableUri fromString(@NonNull String uriString) {
+        SerializableUri serializableUri = new SerializableUri();
+        serializableUri.uriString = checkNotNull(uriString);
+        return serializableUri;
+    }
+
     @NonNull
     public Uri getUri() {
+        if (uri == null && uriString != null) {
+            setUri(Uri.parse(uriString));
+        }
         if (uri == null || uri.getPath() == null || uri.getPath().isEmpty()) {
             uri = Uri.parse(path);
         }
@@ -37,9 +58,20 @@ public class SerializableUri implements Serializable {
     }
 
     public String getPath() {
+        if (path == null && uriString != null) {
+            getUri();
+        }
         return path;
     }
 
+    /**
+     * @return the uri in string form, without parsing it if it hasn't been yet
+     */
+    @NonNull
+    public String getUriString() {
+        return uriString != null ? uriString : getUri().toString();
+    }
+
     public void setPath(String path) {
         this.path = path;
     }
@@ -63,10 +63,22 @@ public final class Song implements Serializable {
      * @param id          id of the task
      */
     public Song(@Nullable String title, @Nullable String description, @NonNull String id, @NonNull Uri source) {
+        this(title, description, id, new SerializableUri(source));
+    }
+
+    /**
+     * Use this constructor to create a Song read from storage, whose source may not be parsed yet.
+     *
+     * @param title       title of the task
+     * @param description description of the task
+     * @param id          id of the task
+     */
+    public Song(@Nullable String title, @Nullable String description, @NonNull String id,
+                @NonNull SerializableUri source) {
         mId = id;
         mTitle = title;
         mDescription = description;
-        mSource = new SerializableUri(source);
+        mSource = source;
     }
 
     @NonNull
@@ -24,6 +24,7 @@ import edu.Groove9.TunesMaster.UseCase;
 import edu.Groove9.TunesMaster.data.source.SongsRepository;
 import edu.Groove9.TunesMaster.playlist.domain.model.Song;
 import edu.Groove9.TunesMaster.data.source.SongsDataSource;
+import edu.Groove9.TunesMaster.data.source.SongsPages;
 import edu.Groove9.TunesMaster.playlist.PlaylistFilterType;
 import edu.Groove9.TunesMaster.playlist.domain.filter.FilterFactory;
 import edu.Groove9.TunesMaster.playlist.domain.filter.TaskFilter;
@@ -31,7 +32,7 @@ import edu.Groove9.TunesMaster.playlist.domain.filter.TaskFilter;
 import java.util.List;
 
 /**
- * Fetches the list of tasks.
+ * Fetches the list of tasks, either whole or a page at a time.
  */
 public class GetTasks extends UseCase<GetTasks.RequestValues, GetTasks.ResponseValue> {
 
@@ -45,38 +46,124 @@ public class GetTasks extends UseCase<GetTasks.RequestValues, GetTasks.ResponseV
     }
 
     @Override
-    protected void executeUseCase(final RequestValues values) {
+    protected void executeUseCase(final RequestValues values,
+                                  final UseCaseCallback<ResponseValue> callback) {
         if (values.isForceUpdate()) {
             mSongsRepository.refreshSongs();
         }
 
+        if (values.isPaged()) {
+            mSongsRepository.getSongsPage(values.getOffset(), values.getLimit(),
+                    new SongsDataSource.LoadSongsPageCallback() {
+                        @Override
+                        public void onPageLoaded(List<Song> songs, boolean hasMore) {
+                            callback.onSuccess(new ResponseValue(filter(songs, values), hasMore,
+                                    values.getOffset() + songs.size()));
+                        }
+
+                        @Override
+                        public void onDataNotAvailable() {
+                            callback.onError();
+                        }
+                    });
+            return;
+        }
+
         mSongsRepository.getSongs(new SongsDataSource.LoadSongsCallback() {
             @Override
             public void onSongsLoaded(List<Song> songs) {
-                PlaylistFilterType currentFiltering = values.getCurrentFiltering();
-                TaskFilter taskFilter = mFilterFactory.create(currentFiltering);
-
-                List<Song> tasksFiltered = taskFilter.filter(songs);
-                ResponseValue responseValue = new ResponseValue(tasksFiltered);
-                getUseCaseCallback().onSuccess(responseValue);
+                callback.onSuccess(new ResponseValue(filter(songs, values)));
             }
 
             @Override
             public void onDataNotAvailable() {
-                getUseCaseCallback().onError();
+                callback.onError();
             }
         });
 
     }
 
+    @Override
+    protected boolean executeFromMemory(RequestValues values,
+                                        UseCaseCallback<ResponseValue> callback) {
+        if (values.isForceUpdate()) {
+            return false;
+        }
+        List<Song> songs = mSongsRepository.getCachedSongs();
+        if (songs == null) {
+            return false;
+        }
+        if (values.isPaged()) {
+            // Same page as the repository would return. Filters go song by song, so filtering the
+            // page alone keeps this as cheap as the page is small.
+            int from = Math.min(values.getOffset(), songs.size());
+            int to = (int) Math.min((long) from + values.getLimit(), songs.size());
+            callback.onSuccess(new ResponseValue(filter(songs.subList(from, to), values),
+                    to < songs.size(), to));
+        } else {
+            callback.onSuccess(new ResponseValue(filter(songs, values)));
+        }
+        return true;
+    }
+
+    /**
+     * Registers {@code observer} to be told when a background reload changes the songs, so that
+     * callers can run this use case again. See {@link SongsRepository#setStaleWhileRevalidate}.
+     */
+    public void addSongsObserver(@NonNull SongsRepository.SongsObserver observer) {
+        mSongsRepository.addSongsObserver(observer);
+    }
+
+    public void removeSongsObserver(@NonNull SongsRepository.SongsObserver observer) {
+        mSongsRepository.removeSongsObserver(observer);
+    }
+
+    private List<Song> filter(List<Song> songs, RequestValues values) {
+        PlaylistFilterType currentFiltering = values.getCurrentFiltering();
+        TaskFilter taskFilter = mFilterFactory.create(currentFiltering);
+
+        return taskFilter.filter(songs);
+    }
+
     public static final class RequestValues implements UseCase.RequestValues {
 
+        private static final int NO_LIMIT = Integer.MAX_VALUE;
+
         private final PlaylistFilterType mCurrentFiltering;
         private final boolean mForceUpdate;
+        private final int mOffset;
+        private final int mLimit;
 
+        /**
+         * Requests the whole list.
+         */
         public RequestValues(boolean forceUpdate, @NonNull PlaylistFilterType currentFiltering) {
+            this(forceUpdate, currentFiltering, 0, NO_LIMIT);
+        }
+
+        /**
+         * Requests one page of the list: at most {@code limit} songs, before filtering, starting at
+         * {@code offset}. The response tells where the next page starts.
+         */
+        public RequestValues(boolean forceUpdate, @NonNull PlaylistFilterType currentFiltering,
+                             int offset, int limit) {
+            SongsPages.checkPageArguments(offset, limit);
             mForceUpdate = forceUpdate;
             mCurrentFiltering = checkNotNull(currentFiltering, "currentFiltering cannot be null!");
+            mOffset = offset;
+            mLimit = limit;
+        }
+
+        public boolean isPaged() {
+            return mLimit != NO_LIMIT;
+        }
+
+        public int getOffset() {
+            return mOffset;
+        }
+
+        public int getLimit() {
+            return mLimit;
         }
 
         public boolean isForceUpdate() {
@@ -91,13 +178,35 @@ public class GetTasks extends UseCase<GetTasks.RequestValues, GetTasks.ResponseV
     public static final class ResponseValue implements UseCase.ResponseValue {
 
         private final List<Song> mSongs;
+        private final boolean mHasMore;
+        private final int mNextOffset;
 
         public ResponseValue(@NonNull List<Song> songs) {
+            this(songs, false, songs.size());
+        }
+
+        public ResponseValue(@NonNull List<Song> songs, boolean hasMore, int nextOffset) {
             mSongs = checkNotNull(songs, "songs cannot be null!");
+            mHasMore = hasMore;
+            mNextOffset = nextOffset;
         }
 
         public List<Song> getTasks() {
             return mSongs;
         }
+
+        /**
+         * @return true if this is a page and more songs follow it
+         */
+        public boolean hasMore() {
+            return mHasMore;
+        }
+
+        /**
+         * @return the offset to request the next page at
+         */
+        public int getNextOffset() {
+            return mNextOffset;
+        }
     }
 }
@@ -0,0 +1,99 @@
+/*
+ * Copyright 2016, The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.Groove9.TunesMaster.playlist.domain.usecase;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import android.support.annotation.NonNull;
+
+import edu.Groove9.TunesMaster.UseCase;
+import edu.Groove9.TunesMaster.data.source.SongsDataSource;
+import edu.Groove9.TunesMaster.data.source.SongsRepository;
+import edu.Groove9.TunesMaster.data.source.SongsSearch;
+import edu.Groove9.TunesMaster.playlist.domain.model.Song;
+
+import java.util.List;
+
+/**
+ * Finds the songs whose title or description has words starting with every term of a query.
+ */
+public class SearchSongs extends UseCase<SearchSongs.RequestValues, SearchSongs.ResponseValue> {
+
+    private final SongsRepository mSongsRepository;
+
+    public SearchSongs(@NonNull SongsRepository songsRepository) {
+        mSongsRepository = checkNotNull(songsRepository, "songsRepository cannot be null!");
+    }
+
+    @Override
+    protected void executeUseCase(final RequestValues values,
+                                  final UseCaseCallback<ResponseValue> callback) {
+        mSongsRepository.searchSongs(values.getQuery(), values.getLimit(),
+                new SongsDataSource.LoadSongsCallback() {
+                    @Override
+                    public void onSongsLoaded(List<Song> songs) {
+                        callback.onSuccess(new ResponseValue(songs));
+                    }
+
+                    @Override
+                    public void onDataNotAvailable() {
+                        callback.onError();
+                    }
+                });
+    }
+
+    /**
+     * Queries are typed one key at a time, so this runs in the interactive lane.
+     */
+    @Override
+    public Priority getPriority() {
+        return Priority.INTERACTIVE;
+    }
+
+    public static final class RequestValues implements UseCase.RequestValues {
+
+        private final String mQuery;
+        private final int mLimit;
+
+        public RequestValues(@NonNull String query, int limit) {
+            SongsSearch.checkSearchArguments(query, limit);
+            mQuery = query;
+            mLimit = limit;
+        }
+
+        public String getQuery() {
+            return mQuery;
+        }
+
+        public int getLimit() {
+            return mLimit;
+        }
+    }
+
+    public static final class ResponseValue implements UseCase.ResponseValue {
+
+        private final List<Song> mSongs;
+
+        public ResponseValue(@NonNull List<Song> songs) {
+            mSongs = checkNotNull(songs, "songs cannot be null!");
+        }
+
+        public List<Song> getSongs() {
+            return mSongs;
+        }
+    }
+}
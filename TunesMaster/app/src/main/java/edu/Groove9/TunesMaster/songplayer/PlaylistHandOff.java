@@ -0,0 +1,126 @@
+/*
+ * Copyright 2016, The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.Groove9.TunesMaster.songplayer;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import edu.Groove9.TunesMaster.playlist.domain.model.Playlist;
+import edu.Groove9.TunesMaster.playlist.domain.model.Song;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Hands the playlist over to {@link SongPlayerActivity}, see {@link SongPlayerActivity#newIntent}.
+ * <p>
+ * The playlist itself is kept in memory until the player takes it, so that it starts without
+ * loading any song. Only the latest one is kept, and keys are random, so a key restored by the
+ * system into a new process never finds a playlist handed off in that process. The player then
+ * rebuilds it from the song ids, which {@link #encodeSongIds(List)} packs small enough for an
+ * Intent: a parcelled {@code String[]} of 10k ids is already close to the Binder transaction
+ * limit.
+ */
+final class PlaylistHandOff {
+
+    // All guarded by the class
+    private static String sKey;
+    private static Playlist sPlaylist;
+
+    private PlaylistHandOff() {}
+
+    /**
+     * @return the key to take {@code playlist} back with {@link #take(String)}
+     */
+    @NonNull
+    static synchronized String put(@NonNull Playlist playlist) {
+        sPlaylist = checkNotNull(playlist);
+        sKey = UUID.randomUUID().toString();
+        return sKey;
+    }
+
+    /**
+     * Takes back the playlist handed off with {@code key}. It is forgotten afterwards, so it is
+     * found only once.
+     *
+     * @return the playlist, or null if it was taken already, another one was handed off since or
+     * the process was restarted
+     */
+    @Nullable
+    static synchronized Playlist take(@Nullable String key) {
+        if (key == null || !key.equals(sKey)) {
+            return null;
+        }
+        Playlist playlist = sPlaylist;
+        sKey = null;
+        sPlaylist = null;
+        return playlist;
+    }
+
+    /**
+     * @return the ids of {@code songs}, in order, compressed
+     */
+    @NonNull
+    static byte[] encodeSongIds(@NonNull List<Song> songs) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try {
+            DataOutputStream out = new DataOutputStream(new DeflaterOutputStream(bytes));
+            out.writeInt(songs.size());
+            for (Song song : songs) {
+                out.writeUTF(song.getId());
+            }
+            out.close();
+        } catch (IOException e) {
+            // Only the stream in memory is written to
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * @return the ids written by {@link #encodeSongIds(List)}, or an empty list if
+     * {@code encoded} is null or can't be read
+     */
+    @NonNull
+    static List<String> decodeSongIds(@Nullable byte[] encoded) {
+        if (encoded == null) {
+            return new ArrayList<>();
+        }
+        try {
+            DataInputStream in = new DataInputStream(
+                    new InflaterInputStream(new ByteArrayInputStream(encoded)));
+            int count = in.readInt();
+            List<String> ids = new ArrayList<>();
+            for (int i = 0; i < count; i++) {
+                ids.add(in.readUTF());
+            }
+            return ids;
+        } catch (IOException e) {
+            return new ArrayList<>();
+        }
+    }
+}
@@ -16,8 +16,10 @@
 
 package edu.Groove9.TunesMaster.songplayer;
 
+import android.content.Context;
 import android.content.Intent;
 import android.os.Bundle;
+import android.support.annotation.NonNull;
 import android.support.v7.app.ActionBar;
 import android.support.v7.app.AppCompatActivity;
 import android.support.v7.widget.Toolbar;
@@ -27,8 +29,11 @@ import edu.Groove9.TunesMaster.Injection;
 import edu.Groove9.TunesMaster.R;
 import edu.Groove9.TunesMaster.help.HelpActivity;
 import edu.Groove9.TunesMaster.playlist.domain.model.Playlist;
+import edu.Groove9.TunesMaster.playlist.domain.model.Song;
 import edu.Groove9.TunesMaster.util.ActivityUtils;
 
+import java.util.List;
+
 import static java.security.AccessController.getContext;
 
 /**
@@ -36,7 +41,47 @@ import static java.security.AccessController.getContext;
  */
 public class SongPlayerActivity extends AppCompatActivity {
 
-//    public static final String PLAYLIST_KEY = "PLAYLIST_KEY";
+    /**
+     * A {@link Playlist} to play as is, instead of the ones {@link #newIntent} hands over. Only
+     * fit for short playlists, since the whole playlist is written to the Intent.
+     */
+    public static final String EXTRA_PLAYLIST =
+            "edu.Groove9.TunesMaster.playlist.domain.model.Playlist";
+
+    /**
+     * Key of the playlist in {@link PlaylistHandOff}.
+     */
+    public static final String EXTRA_PLAYLIST_KEY =
+            "edu.Groove9.TunesMaster.playlist.domain.model.Playlist.key";
+
+    /**
+     * Ids of the songs of the playlist, in order, see {@link PlaylistHandOff#encodeSongIds}.
+     */
+    public static final String EXTRA_SONG_IDS =
+            "edu.Groove9.TunesMaster.playlist.domain.model.Playlist.songIds";
+
+    /**
+     * Position of the current song in {@link #EXTRA_SONG_IDS}, or -1 for none.
+     */
+    public static final String EXTRA_CURRENT_INDEX =
+            "edu.Groove9.TunesMaster.playlist.domain.model.Playlist.currentIndex";
+
+    /**
+     * Creates an Intent to play {@code playlist}. The playlist itself stays in memory, since a
+     * large one would exceed the Binder transaction limit once written to the Intent: the Intent
+     * carries the key to find it, and the song ids and current position to load it again if the
+     * process was restarted or another playlist was handed over since.
+     */
+    @NonNull
+    public static Intent newIntent(@NonNull Context context, @NonNull Playlist playlist) {
+        Intent intent = new Intent(context, SongPlayerActivity.class);
+        intent.putExtra(EXTRA_PLAYLIST_KEY, PlaylistHandOff.put(playlist));
+        intent.putExtra(EXTRA_SONG_IDS, PlaylistHandOff.encodeSongIds(playlist.getSongs()));
+        intent.putExtra(EXTRA_CURRENT_INDEX, playlist.getCurrentIndex());
+        return intent;
+    }
+
+    private SongPlayerPresenter mSongPlayerPresenter;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -50,21 +95,43 @@ public class SongPlayerActivity extends AppCompatActivity {
         ab.setDisplayHomeAsUpEnabled(true);
         ab.setDisplayShowHomeEnabled(true);
 
-        // Get the playlist
-        Playlist playlist = (Playlist)getIntent().getSerializableExtra("edu.Groove9.TunesMaster.playlist.domain.model.Playlist");
+        // Get the playlist, kept across configuration changes, else loaded again from the ids
+        Intent intent = getIntent();
+        Playlist playlist = (Playlist) getLastCustomNonConfigurationInstance();
+        if (playlist == null) {
+            playlist = PlaylistHandOff.take(intent.getStringExtra(EXTRA_PLAYLIST_KEY));
+        }
+        if (playlist == null) {
+            playlist = intent.getParcelableExtra(EXTRA_PLAYLIST);
+        }
+        List<String> songIds = null;
+        int currentIndex = -1;
+        String currentSongId = null;
+        if (playlist != null) {
+            Song currentSong = playlist.getCurrentSong();
+            currentSongId = currentSong != null ? currentSong.getId() : null;
+        } else {
+            songIds = PlaylistHandOff.decodeSongIds(intent.getByteArrayExtra(EXTRA_SONG_IDS));
+            currentIndex = intent.getIntExtra(EXTRA_CURRENT_INDEX, -1);
+            if (currentIndex >= 0 && currentIndex < songIds.size()) {
+                currentSongId = songIds.get(currentIndex);
+            } else {
+                currentIndex = -1;
+            }
+        }
 
         SongPlayerFragment songPlayerFragment = (SongPlayerFragment) getSupportFragmentManager()
                 .findFragmentById(R.id.contentFrame);
 
         if (songPlayerFragment == null) {
-            songPlayerFragment = SongPlayerFragment.newInstance(playlist.getCurrentSong().getId());
+            songPlayerFragment = SongPlayerFragment.newInstance(currentSongId);
 
             ActivityUtils.addFragmentToActivity(getSupportFragmentManager(),
                     songPlayerFragment, R.id.contentFrame);
         }
 
         // Create the presenter
-        new SongPlayerPresenter(
+        mSongPlayerPresenter = new SongPlayerPresenter(
                 Injection.provideUseCaseHandler(),
                 playlist,
                 songPlayerFragment,
@@ -77,6 +144,15 @@ public class SongPlayerActivity extends AppCompatActivity {
                 Injection.provideVolumeDown(getApplicationContext()),
                 Injection.provideRepeatSong(getApplicationContext())
                 );
+        if (playlist == null) {
+            mSongPlayerPresenter.loadPlaylist(
+                    Injection.provideLoadPlaylist(getApplicationContext()), songIds, currentIndex);
+        }
+    }
+
+    @Override
+    public Object onRetainCustomNonConfigurationInstance() {
+        return mSongPlayerPresenter.getPlaylist();
     }
 
     @Override
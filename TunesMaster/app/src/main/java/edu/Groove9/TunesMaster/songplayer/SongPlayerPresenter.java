@@ -25,6 +25,7 @@ import edu.Groove9.TunesMaster.addedittask.domain.usecase.GetTask;
 import edu.Groove9.TunesMaster.playlist.domain.model.Playlist;
 import edu.Groove9.TunesMaster.playlist.domain.model.Song;
 import edu.Groove9.TunesMaster.songplayer.domain.usecase.LastSong;
+import edu.Groove9.TunesMaster.songplayer.domain.usecase.LoadPlaylist;
 import edu.Groove9.TunesMaster.songplayer.domain.usecase.NextSong;
 import edu.Groove9.TunesMaster.songplayer.domain.usecase.PlayPauseSong;
 import edu.Groove9.TunesMaster.songplayer.domain.usecase.RepeatSong;
@@ -36,14 +37,32 @@ import edu.Groove9.TunesMaster.songplayer.player.SongStatus;
 
 import com.google.common.base.Strings;
 
+import java.util.Collections;
+import java.util.List;
+
 import static com.google.common.base.Preconditions.checkNotNull;
 
 /**
  * Listens to user actions from the UI ({@link SongPlayerFragment}), retrieves the data and updates
  * the UI as required.
+ * <p>
+ * The playlist is either given up front or loaded with {@link #loadPlaylist}. Until it is loaded
+ * the song controls do nothing, and neither do the ones acting on the current song while the
+ * playlist has none.
  */
 public class SongPlayerPresenter implements SongPlayerContract.Presenter {
 
+    /**
+     * Coalescing key for loading the current song's details; only the latest load is shown.
+     */
+    private static final String OPEN_SONG_KEY = "songplayer.open";
+
+    /**
+     * Coalescing key for starting playback after skipping, so that a burst of skips only
+     * prepares the final navigation target.
+     */
+    private static final String NAVIGATION_PLAYBACK_KEY = "songplayer.navigate";
+
     private final SongPlayerContract.View mView;
     private final UseCaseHandler mUseCaseHandler;
     private final GetTask mGetTask;
@@ -55,9 +74,28 @@ public class SongPlayerPresenter implements SongPlayerContract.Presenter {
     private final VolumeUp mVolumeUp;
     private final VolumeDown mVolumeDown;
 
+    /**
+     * Null until {@link #loadPlaylist} loads it.
+     */
     @Nullable
     private Playlist mPlaylist;
 
+    private boolean mStarted;
+
+    private final UseCase.UseCaseCallback<PlayPauseSong.ResponseValue> mPlayPauseCallback =
+            new UseCase.UseCaseCallback<PlayPauseSong.ResponseValue>() {
+                @Override
+                public void onSuccess(PlayPauseSong.ResponseValue response) {
+                    openSong();
+                    mView.showPlaypauseFeedback();
+                }
+
+                @Override
+                public void onError() {
+                    // Show error, log, etc.
+                }
+            };
+
     public SongPlayerPresenter(@NonNull UseCaseHandler useCaseHandler,
                                @Nullable Playlist playlist,
                                @NonNull SongPlayerContract.View taskDetailView,
@@ -87,20 +125,71 @@ public class SongPlayerPresenter implements SongPlayerContract.Presenter {
 
 
 
+    /**
+     * Loads the playlist with the given song ids, for a presenter created without one. Songs that
+     * no longer exist are left out; if that includes the current one, no song is shown.
+     *
+     * @param currentIndex position of the current song in {@code songIds}, or -1 for none
+     */
+    public void loadPlaylist(@NonNull LoadPlaylist loadPlaylist, @NonNull List<String> songIds,
+                             int currentIndex) {
+        checkNotNull(loadPlaylist, "loadPlaylist cannot be null!");
+        mUseCaseHandler.execute(loadPlaylist, new LoadPlaylist.RequestValues(songIds, currentIndex),
+                new UseCase.UseCaseCallback<LoadPlaylist.ResponseValue>() {
+                    @Override
+                    public void onSuccess(LoadPlaylist.ResponseValue response) {
+                        onPlaylistLoaded(response.getPlaylist());
+                    }
+
+                    @Override
+                    public void onError() {
+                        onPlaylistLoaded(new Playlist(Collections.<Song>emptyList()));
+                    }
+                });
+    }
+
+    private void onPlaylistLoaded(@NonNull Playlist playlist) {
+        mPlaylist = playlist;
+        // Otherwise start() shows it once the view is ready
+        if (mStarted) {
+            openSong();
+        }
+    }
+
+    /**
+     * @return the playlist, or null while it is loaded
+     */
+    @Nullable
+    public Playlist getPlaylist() {
+        return mPlaylist;
+    }
+
     @Override
     public void start() {
+        mStarted = true;
         openSong();
     }
 
+    @Nullable
+    private Song getCurrentSong() {
+        return mPlaylist != null ? mPlaylist.getCurrentSong() : null;
+    }
+
     private void openSong() {
-        if (Strings.isNullOrEmpty(mPlaylist.getCurrentSong().getId())) {
+        if (mPlaylist == null) {
+            // Shown once loadPlaylist() is done
+            mView.setLoadingIndicator(true);
+            return;
+        }
+        Song currentSong = mPlaylist.getCurrentSong();
+        if (currentSong == null || Strings.isNullOrEmpty(currentSong.getId())) {
             mView.showMissingSong();
             return;
         }
 
         mView.setLoadingIndicator(true);
 
-        mUseCaseHandler.execute(mGetTask, new GetTask.RequestValues(mPlaylist.getCurrentSong().getId()),
+        mUseCaseHandler.execute(mGetTask, new GetTask.RequestValues(currentSong.getId()),
                 new UseCase.UseCaseCallback<GetTask.ResponseValue>() {
                     @Override
                     public void onSuccess(GetTask.ResponseValue response) {
@@ -116,25 +205,29 @@ public class SongPlayerPresenter implements SongPlayerContract.Presenter {
                         // The view may not be able to handle UI updates anymore
                         mView.showMissingSong();
                     }
-                });
+                }, OPEN_SONG_KEY);
     }
 
     @Override
     public void editSong() {
-        if (Strings.isNullOrEmpty(mPlaylist.getCurrentSong().getId())) {
+        Song currentSong = getCurrentSong();
+        if (currentSong == null || Strings.isNullOrEmpty(currentSong.getId())) {
             mView.showMissingSong();
             return;
         }
-        mView.showEditSong(mPlaylist.getCurrentSong().getId());
+        mView.showEditSong(currentSong.getId());
     }
 
     @Override
     public void shuffleSong() {
+        if (mPlaylist == null) {
+            return;
+        }
         mUseCaseHandler.execute(mShuffleSong, new ShuffleSong.RequestValues(mPlaylist),
                 new UseCase.UseCaseCallback<ShuffleSong.ResponseValue>() {
                     @Override
                     public void onSuccess(ShuffleSong.ResponseValue response) {
-                        playPauseSong();
+                        playNavigationTarget();
                         mView.showShuffleFeedback();
                     }
 
@@ -147,11 +240,14 @@ public class SongPlayerPresenter implements SongPlayerContract.Presenter {
 
     @Override
     public void lastSong() {
+        if (mPlaylist == null) {
+            return;
+        }
         mUseCaseHandler.execute(mLastSong, new LastSong.RequestValues(mPlaylist),
                 new UseCase.UseCaseCallback<LastSong.ResponseValue>() {
                     @Override
                     public void onSuccess(LastSong.ResponseValue response) {
-                        playPauseSong();
+                        playNavigationTarget();
                         mView.showLastSongFeedback();
                     }
 
@@ -164,23 +260,34 @@ public class SongPlayerPresenter implements SongPlayerContract.Presenter {
 
     @Override
     public void playPauseSong() {
-        mUseCaseHandler.execute(mPlayPauseSong, new PlayPauseSong.RequestValues(mPlaylist.getCurrentSong()),
-                new UseCase.UseCaseCallback<PlayPauseSong.ResponseValue>() {
-                    @Override
-                    public void onSuccess(PlayPauseSong.ResponseValue response) {
-                        openSong();
-                        mView.showPlaypauseFeedback();
-                    }
+        Song currentSong = getCurrentSong();
+        if (currentSong == null) {
+            return;
+        }
+        mUseCaseHandler.execute(mPlayPauseSong, new PlayPauseSong.RequestValues(currentSong),
+                mPlayPauseCallback);
+    }
 
-                    @Override
-                    public void onError() {
-                        // Show error, log, etc.
-                    }
-                });
+    /**
+     * Starts the song the playlist moved to. Unlike a play/pause tap, a newer navigation
+     * supersedes this one, so skipping quickly doesn't prepare every song on the way.
+     */
+    private void playNavigationTarget() {
+        Song currentSong = getCurrentSong();
+        if (currentSong == null) {
+            return;
+        }
+        mUseCaseHandler.execute(mPlayPauseSong, new PlayPauseSong.RequestValues(currentSong),
+                mPlayPauseCallback, NAVIGATION_PLAYBACK_KEY);
     }
+
     @Override
     public void repeatSong() {
-        mUseCaseHandler.execute(mRepeatSong, new RepeatSong.RequestValues(mPlaylist.getCurrentSong()),
+        Song currentSong = getCurrentSong();
+        if (currentSong == null) {
+            return;
+        }
+        mUseCaseHandler.execute(mRepeatSong, new RepeatSong.RequestValues(currentSong),
                new UseCase.UseCaseCallback<RepeatSong.ResponseValue>() {
                     @Override
                     public void onSuccess(RepeatSong.ResponseValue response) {
@@ -195,11 +302,14 @@ public class SongPlayerPresenter implements SongPlayerContract.Presenter {
 
     @Override
     public void nextSong() {
+        if (mPlaylist == null) {
+            return;
+        }
         mUseCaseHandler.execute(mNextSong, new NextSong.RequestValues(mPlaylist),
                 new UseCase.UseCaseCallback<NextSong.ResponseValue>() {
                     @Override
                     public void onSuccess(NextSong.ResponseValue response) {
-                        playPauseSong();
+                        playNavigationTarget();
                         mView.showNextSongFeedback();
                     }
 
@@ -258,8 +368,11 @@ public class SongPlayerPresenter implements SongPlayerContract.Presenter {
 
     @Override
     public void updateProgress(AudioPlayerContract audioPlayer) {
+        Song currentSong = getCurrentSong();
+        if (currentSong == null) {
+            return;
+        }
         int progress = audioPlayer.percentageProgress();
-        Song currentSong = mPlaylist.getCurrentSong();
         if (audioPlayer.getStatus(currentSong) == SongStatus.PLAYING) {
             mView.showSongProgress(progress);
         }
@@ -267,8 +380,9 @@ public class SongPlayerPresenter implements SongPlayerContract.Presenter {
 
     @Override
     public void updatePlayPauseIcon(AudioPlayerContract audioPlayer) {
-        Song currentSong = mPlaylist.getCurrentSong();
-        SongStatus songStatus = audioPlayer.getStatus(currentSong);
+        Song currentSong = getCurrentSong();
+        SongStatus songStatus = currentSong != null
+                ? audioPlayer.getStatus(currentSong) : SongStatus.NOT_SELECTED;
         mView.updatePlayPauseIcon(songStatus);
     }
 }
@@ -44,12 +44,18 @@ public class LastSong extends UseCase<LastSong.RequestValues, LastSong.ResponseV
     }
 
     @Override
-    protected void executeUseCase(final LastSong.RequestValues values) {
+    protected void executeUseCase(final LastSong.RequestValues values,
+                                  final UseCaseCallback<LastSong.ResponseValue> callback) {
         Playlist playlist = values.getPlaylist();
 
         playlist.getLastSong();
 
-        getUseCaseCallback().onSuccess(new LastSong.ResponseValue(playlist));
+        callback.onSuccess(new LastSong.ResponseValue(playlist));
+    }
+
+    @Override
+    public Priority getPriority() {
+        return Priority.INTERACTIVE;
     }
 
     public static final class RequestValues implements UseCase.RequestValues {
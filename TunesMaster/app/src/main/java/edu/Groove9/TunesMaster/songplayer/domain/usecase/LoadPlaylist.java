@@ -0,0 +1,122 @@
+/*
+ * Copyright 2016, The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package edu.Groove9.TunesMaster.songplayer.domain.usecase;
+
+import android.support.annotation.NonNull;
+
+import edu.Groove9.TunesMaster.UseCase;
+import edu.Groove9.TunesMaster.data.source.SongsDataSource;
+import edu.Groove9.TunesMaster.data.source.SongsRepository;
+import edu.Groove9.TunesMaster.playlist.domain.model.Playlist;
+import edu.Groove9.TunesMaster.playlist.domain.model.Song;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Rebuilds a {@link Playlist} from the ids of its songs, loaded with one batch call to the
+ * {@link SongsRepository}. Songs that no longer exist are left out, and if the current one is
+ * among them the playlist has no current song.
+ */
+public class LoadPlaylist extends UseCase<LoadPlaylist.RequestValues, LoadPlaylist.ResponseValue> {
+
+    private final SongsRepository mSongsRepository;
+
+    public LoadPlaylist(@NonNull SongsRepository songsRepository) {
+        mSongsRepository = checkNotNull(songsRepository, "songsRepository cannot be null!");
+    }
+
+    @Override
+    protected void executeUseCase(final RequestValues values,
+                                  final UseCaseCallback<ResponseValue> callback) {
+        mSongsRepository.getSongs(values.getSongIds(), new SongsDataSource.GetSongsCallback() {
+            @Override
+            public void onSongsLoaded(List<Song> songs, List<String> missingIds) {
+                callback.onSuccess(new ResponseValue(buildPlaylist(values, songs)));
+            }
+
+            @Override
+            public void onDataNotAvailable() {
+                callback.onError();
+            }
+        });
+    }
+
+    @NonNull
+    private static Playlist buildPlaylist(@NonNull RequestValues values, List<Song> loaded) {
+        // The repository reports each id once, while a playlist may repeat songs
+        Map<String, Song> songsById = new HashMap<>();
+        for (Song song : loaded) {
+            songsById.put(song.getId(), song);
+        }
+
+        List<String> ids = values.getSongIds();
+        List<Song> songs = new ArrayList<>(ids.size());
+        int currentIndex = -1;
+        for (int i = 0; i < ids.size(); i++) {
+            Song song = songsById.get(ids.get(i));
+            if (song == null) {
+                continue;
+            }
+            if (i == values.getCurrentIndex()) {
+                currentIndex = songs.size();
+            }
+            songs.add(song);
+        }
+        return new Playlist(songs, currentIndex);
+    }
+
+    public static final class RequestValues implements UseCase.RequestValues {
+
+        private final List<String> mSongIds;
+        private final int mCurrentIndex;
+
+        /**
+         * @param currentIndex position of the current song in {@code songIds}, or -1 for none
+         */
+        public RequestValues(@NonNull List<String> songIds, int currentIndex) {
+            mSongIds = checkNotNull(songIds, "songIds cannot be null!");
+            mCurrentIndex = currentIndex;
+        }
+
+        public List<String> getSongIds() {
+            return mSongIds;
+        }
+
+        public int getCurrentIndex() {
+            return mCurrentIndex;
+        }
+    }
+
+    public static final class ResponseValue implements UseCase.ResponseValue {
+
+        private final Playlist mPlaylist;
+
+        public ResponseValue(@NonNull Playlist playlist) {
+            mPlaylist = checkNotNull(playlist, "playlist cannot be null!");
+        }
+
+        public Playlist getPlaylist() {
+            return mPlaylist;
+        }
+    }
+}
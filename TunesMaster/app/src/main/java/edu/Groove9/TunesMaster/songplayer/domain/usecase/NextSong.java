@@ -39,12 +39,18 @@ public class NextSong extends UseCase<NextSong.RequestValues, NextSong.ResponseV
     }
 
     @Override
-    protected void executeUseCase(final RequestValues values) {
+    protected void executeUseCase(final RequestValues values,
+                                  final UseCaseCallback<ResponseValue> callback) {
         Playlist playlist = values.getPlaylist();
 
         playlist.getNextSong();
 
-        getUseCaseCallback().onSuccess(new ResponseValue(playlist));
+        callback.onSuccess(new ResponseValue(playlist));
+    }
+
+    @Override
+    public Priority getPriority() {
+        return Priority.INTERACTIVE;
     }
 
     public static final class RequestValues implements UseCase.RequestValues {
@@ -37,7 +37,8 @@ public class PlayPauseSong extends UseCase<PlayPauseSong.RequestValues, PlayPaus
     }
 
     @Override
-    protected void executeUseCase(final RequestValues values) {
+    protected void executeUseCase(final RequestValues values,
+                                  final UseCaseCallback<ResponseValue> callback) {
         Song song = values.getSong();
 
         SongStatus songStatus = musicPlayer.getStatus(song);
@@ -55,7 +56,12 @@ public class PlayPauseSong extends UseCase<PlayPauseSong.RequestValues, PlayPaus
                 throw new RuntimeException("Unknown case: " + songStatus);
         }
 
-        getUseCaseCallback().onSuccess(new ResponseValue());
+        callback.onSuccess(new ResponseValue());
+    }
+
+    @Override
+    public Priority getPriority() {
+        return Priority.INTERACTIVE;
     }
 
     public static final class RequestValues implements UseCase.RequestValues {
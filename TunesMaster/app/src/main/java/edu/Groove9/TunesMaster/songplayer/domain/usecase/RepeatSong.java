@@ -20,12 +20,18 @@ public class RepeatSong extends UseCase<RepeatSong.RequestValues, RepeatSong.Res
     }
 
     @Override
-    protected void executeUseCase(final RequestValues values) {
+    protected void executeUseCase(final RequestValues values,
+                                  final UseCaseCallback<ResponseValue> callback) {
         Song song = values.getSong();
         musicPlayer.play(song);
-        getUseCaseCallback().onSuccess(new RepeatSong.ResponseValue());
+        callback.onSuccess(new RepeatSong.ResponseValue());
 
     }
+    @Override
+    public Priority getPriority() {
+        return Priority.INTERACTIVE;
+    }
+
     public static final class RequestValues implements UseCase.RequestValues {
 
         private final Song song;
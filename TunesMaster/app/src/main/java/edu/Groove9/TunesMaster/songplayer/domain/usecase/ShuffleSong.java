@@ -37,12 +37,18 @@ public class ShuffleSong extends UseCase<ShuffleSong.RequestValues, ShuffleSong.
     }
 
     @Override
-    protected void executeUseCase(final ShuffleSong.RequestValues values) {
+    protected void executeUseCase(final ShuffleSong.RequestValues values,
+                                  final UseCaseCallback<ShuffleSong.ResponseValue> callback) {
         Playlist playlist = values.getPlaylist();
 
         playlist.Shuffle();
 
-        getUseCaseCallback().onSuccess(new ShuffleSong.ResponseValue(playlist));
+        callback.onSuccess(new ShuffleSong.ResponseValue(playlist));
+    }
+
+    @Override
+    public Priority getPriority() {
+        return Priority.INTERACTIVE;
     }
 
     public static final class RequestValues implements UseCase.RequestValues {
@@ -36,9 +36,15 @@ public class VolumeDown extends UseCase<VolumeDown.RequestValues, VolumeDown.Res
     }
 
     @Override
-    protected void executeUseCase(final RequestValues values) {
+    protected void executeUseCase(final RequestValues values,
+                                  final UseCaseCallback<ResponseValue> callback) {
         musicPlayer.changeVolume(VolumeIncrement.DOWN);
-        getUseCaseCallback().onSuccess(new ResponseValue());
+        callback.onSuccess(new ResponseValue());
+    }
+
+    @Override
+    public Priority getPriority() {
+        return Priority.INTERACTIVE;
     }
 
     public static final class RequestValues implements UseCase.RequestValues {
@@ -37,9 +37,15 @@ public class VolumeUp extends UseCase<VolumeUp.RequestValues, VolumeUp.ResponseV
     }
 
     @Override
-    protected void executeUseCase(final RequestValues values) {
+    protected void executeUseCase(final RequestValues values,
+                                  final UseCaseCallback<ResponseValue> callback) {
         musicPlayer.changeVolume(VolumeIncrement.UP);
-        getUseCaseCallback().onSuccess(new ResponseValue());
+        callback.onSuccess(new ResponseValue());
+    }
+
+    @Override
+    public Priority getPriority() {
+        return Priority.INTERACTIVE;
     }
 
     public static final class RequestValues implements UseCase.RequestValues {
@@ -22,7 +22,8 @@ public class GetStatistics extends UseCase<GetStatistics.RequestValues, GetStati
     }
 
     @Override
-    protected void executeUseCase(RequestValues requestValues) {
+    protected void executeUseCase(final RequestValues requestValues,
+                                  final UseCaseCallback<ResponseValue> callback) {
 
     }
 
@@ -27,8 +27,11 @@ import edu.Groove9.TunesMaster.addedittask.domain.usecase.SaveTask;
 import edu.Groove9.TunesMaster.data.FakeSongsRemoteDataSource;
 import edu.Groove9.TunesMaster.data.source.SongsDataSource;
 import edu.Groove9.TunesMaster.data.source.SongsRepository;
+import edu.Groove9.TunesMaster.data.source.local.BinarySongsLocalDataSource;
 import edu.Groove9.TunesMaster.data.source.local.PrototypeSongsLocalDataSource;
+import edu.Groove9.TunesMaster.data.source.remote.HttpSongsRemoteDataSource;
 import edu.Groove9.TunesMaster.songplayer.domain.usecase.LastSong;
+import edu.Groove9.TunesMaster.songplayer.domain.usecase.LoadPlaylist;
 import edu.Groove9.TunesMaster.songplayer.domain.usecase.NextSong;
 import edu.Groove9.TunesMaster.songplayer.domain.usecase.PlayPauseSong;
 import edu.Groove9.TunesMaster.songplayer.domain.usecase.RepeatSong;
@@ -40,6 +43,7 @@ import edu.Groove9.TunesMaster.songplayer.player.PrototypeAudioPlayer;
 import edu.Groove9.TunesMaster.statistics.domain.usecase.GetStatistics;
 import edu.Groove9.TunesMaster.playlist.domain.filter.FilterFactory;
 import edu.Groove9.TunesMaster.playlist.domain.usecase.GetTasks;
+import edu.Groove9.TunesMaster.playlist.domain.usecase.SearchSongs;
 
 /**
  * Enables injection of mock implementations for
@@ -48,12 +52,51 @@ import edu.Groove9.TunesMaster.playlist.domain.usecase.GetTasks;
  */
 public class Injection {
 
+    /**
+     * Keeps the library in a memory-mapped binary store instead of reading the bundled songs.
+     */
+    private static final boolean USE_BINARY_SONG_STORE = false;
+
+    /**
+     * Syncs with a songs service over HTTP instead of the in-memory fake. The default url reaches
+     * the development machine from the emulator.
+     */
+    private static final boolean USE_HTTP_REMOTE = false;
+
+    private static final String SONGS_SERVICE_URL = "http://10.0.2.2:8080";
+
+    /**
+     * How long opening a song waits for the local data source before asking the remote one too.
+     */
+    private static final long SONG_HEDGE_DELAY_MILLIS = 150;
+
     public static SongsRepository provideSongsRepository(@NonNull Context context) {
         checkNotNull(context);
-        return SongsRepository.getInstance(FakeSongsRemoteDataSource.getInstance(),
-                PrototypeSongsLocalDataSource.getInstance(context));
+        SongsRepository repository = SongsRepository.getInstance(
+                provideSongsRemoteDataSource(context),
+                provideSongsLocalDataSource(context));
+        // Show the last known songs right away on warm starts, refresh them behind the list
+        repository.setStaleWhileRevalidate(true);
+        repository.setUseRemoteDataSource(USE_HTTP_REMOTE);
+        repository.setHedgeDelay(SONG_HEDGE_DELAY_MILLIS);
+        return repository;
     }
 
+    public static SongsDataSource provideSongsRemoteDataSource(@NonNull Context context) {
+        checkNotNull(context);
+        if (USE_HTTP_REMOTE) {
+            return HttpSongsRemoteDataSource.getInstance(context, SONGS_SERVICE_URL);
+        }
+        return FakeSongsRemoteDataSource.getInstance();
+    }
+
+    public static SongsDataSource provideSongsLocalDataSource(@NonNull Context context) {
+        checkNotNull(context);
+        if (USE_BINARY_SONG_STORE) {
+            return BinarySongsLocalDataSource.getInstance(context);
+        }
+        return PrototypeSongsLocalDataSource.getInstance(context);
+    }
 
     public static AudioPlayerContract provideAudioPlayer(@NonNull Context context) {
         checkNotNull(context);
@@ -64,6 +107,10 @@ public class Injection {
         return new GetTasks(provideSongsRepository(context), new FilterFactory());
     }
 
+    public static SearchSongs provideSearchSongs(@NonNull Context context) {
+        return new SearchSongs(provideSongsRepository(context));
+    }
+
     public static UseCaseHandler provideUseCaseHandler() {
         return UseCaseHandler.getInstance();
     }
@@ -72,6 +119,10 @@ public class Injection {
         return new GetTask(Injection.provideSongsRepository(context));
     }
 
+    public static LoadPlaylist provideLoadPlaylist(@NonNull Context context) {
+        return new LoadPlaylist(Injection.provideSongsRepository(context));
+    }
+
     public static SaveTask provideSaveTask(@NonNull Context context) {
         return new SaveTask(Injection.provideSongsRepository(context));
     }
@@ -19,14 +19,17 @@ package edu.Groove9.TunesMaster.data;
 import android.support.annotation.NonNull;
 import android.support.annotation.VisibleForTesting;
 
+import edu.Groove9.TunesMaster.data.source.SongsBatches;
+import edu.Groove9.TunesMaster.data.source.SongsChangeLog;
+import edu.Groove9.TunesMaster.data.source.SongsChangeSet;
 import edu.Groove9.TunesMaster.data.source.SongsDataSource;
+import edu.Groove9.TunesMaster.data.source.SongsPages;
+import edu.Groove9.TunesMaster.data.source.SongsSearch;
 import edu.Groove9.TunesMaster.playlist.domain.model.Song;
 
-import com.google.common.collect.Lists;
-
+import java.util.Collection;
 import java.util.Iterator;
-import java.util.LinkedHashMap;
-import java.util.Map;
+import java.util.List;
 
 /**
  * Implementation of a remote data source with static access to the data for easy testing.
@@ -35,7 +38,7 @@ public class FakeSongsRemoteDataSource implements SongsDataSource {
 
     private static FakeSongsRemoteDataSource INSTANCE;
 
-    private static final Map<String, Song> TASKS_SERVICE_DATA = new LinkedHashMap<>();
+    private static final SongsChangeLog TASKS_SERVICE_DATA = new SongsChangeLog();
 
     // Prevent direct instantiation.
     private FakeSongsRemoteDataSource() {}
@@ -49,7 +52,17 @@ public class FakeSongsRemoteDataSource implements SongsDataSource {
 
     @Override
     public void getSongs(@NonNull LoadSongsCallback callback) {
-        callback.onSongsLoaded(Lists.newArrayList(TASKS_SERVICE_DATA.values()));
+        callback.onSongsLoaded(TASKS_SERVICE_DATA.getSongs());
+    }
+
+    @Override
+    public void getSongsPage(int offset, int limit, @NonNull LoadSongsPageCallback callback) {
+        SongsPages.deliverPage(TASKS_SERVICE_DATA.getSongs(), offset, limit, callback);
+    }
+
+    @Override
+    public void getSongs(@NonNull Collection<String> ids, @NonNull GetSongsCallback callback) {
+        SongsBatches.deliver(ids, TASKS_SERVICE_DATA.getAll(ids), callback);
     }
 
     @Override
@@ -58,9 +71,37 @@ public class FakeSongsRemoteDataSource implements SongsDataSource {
         callback.onSongLoaded(song);
     }
 
+    @Override
+    public void searchSongs(@NonNull String query, int limit,
+                            @NonNull LoadSongsCallback callback) {
+        callback.onSongsLoaded(SongsSearch.search(TASKS_SERVICE_DATA.getSongs(), query, limit));
+    }
+
+    @Override
+    public void getChangesSince(long cursor, @NonNull LoadChangesCallback callback) {
+        callback.onChangesLoaded(TASKS_SERVICE_DATA.changesSince(cursor));
+    }
+
+    @Override
+    public void applyChanges(@NonNull SongsChangeSet changes) {
+        // Not required because the server is where changes come from.
+    }
+
+    @Override
+    public long getSyncCursor() {
+        return SongsChangeSet.NO_CURSOR;
+    }
+
     @Override
     public void saveSong(@NonNull Song song) {
-        TASKS_SERVICE_DATA.put(song.getId(), song);
+        TASKS_SERVICE_DATA.put(song);
+    }
+
+    @Override
+    public void saveSongs(@NonNull List<Song> songs) {
+        for (Song song : songs) {
+            TASKS_SERVICE_DATA.put(song);
+        }
     }
 
     public void refreshSongs() {
@@ -81,7 +122,7 @@ public class FakeSongsRemoteDataSource implements SongsDataSource {
     @VisibleForTesting
     public void addTasks(Song... songs) {
         for (Song song : songs) {
-            TASKS_SERVICE_DATA.put(song.getId(), song);
+            TASKS_SERVICE_DATA.put(song);
         }
     }
 }
@@ -18,6 +18,7 @@ package edu.Groove9.TunesMaster;
 
 import edu.Groove9.TunesMaster.UseCase;
 import edu.Groove9.TunesMaster.UseCaseScheduler;
+import edu.Groove9.TunesMaster.UseCaseSchedulerStats;
 
 /**
  * A scheduler that executes synchronously, for testing purposes.
@@ -28,6 +29,16 @@ public class TestUseCaseScheduler implements UseCaseScheduler {
         runnable.run();
     }
 
+    @Override
+    public void execute(Runnable runnable, UseCase.Priority priority) {
+        runnable.run();
+    }
+
+    @Override
+    public void execute(Runnable runnable, UseCase.Priority priority, UseCaseRequest request) {
+        runnable.run();
+    }
+
     @Override
     public <R extends UseCase.ResponseValue> void notifyResponse(R response,
                                                                  UseCase.UseCaseCallback<R> useCaseCallback) {
@@ -39,4 +50,14 @@ public class TestUseCaseScheduler implements UseCaseScheduler {
             UseCase.UseCaseCallback<R> useCaseCallback) {
         useCaseCallback.onError();
     }
+
+    @Override
+    public boolean isResponseThread() {
+        return true;
+    }
+
+    @Override
+    public UseCaseSchedulerStats getStats() {
+        return UseCaseSchedulerStats.EMPTY;
+    }
 }
@@ -0,0 +1,264 @@
+/*
+ * Copyright 2016, The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.Groove9.TunesMaster;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Unit tests for the inline path and the coalescing of {@link UseCaseHandler}.
+ */
+public class UseCaseHandlerTest {
+
+    private QueueingScheduler mScheduler;
+
+    private UseCaseHandler mUseCaseHandler;
+
+    private MemoryUseCase mUseCase;
+
+    private RecordingCallback mCallback;
+
+    @Before
+    public void setupUseCaseHandler() {
+        mScheduler = new QueueingScheduler();
+        mUseCaseHandler = new UseCaseHandler(mScheduler);
+        mUseCase = new MemoryUseCase();
+        mCallback = new RecordingCallback();
+    }
+
+    @Test
+    public void executeOnResponseThread_answersFromMemoryInline() {
+        mScheduler.mResponseThread = true;
+
+        mUseCaseHandler.execute(mUseCase, new Request(), mCallback);
+
+        assertThat(mUseCase.mMemoryCalls, is(1));
+        assertThat(mScheduler.mQueued.size(), is(0));
+        assertThat(mCallback.mResponses.size(), is(1));
+    }
+
+    @Test
+    public void executeOffResponseThread_schedulesWithoutTryingMemory() {
+        mScheduler.mResponseThread = false;
+
+        mUseCaseHandler.execute(mUseCase, new Request(), mCallback);
+
+        // Nothing is delivered on the calling thread...
+        assertThat(mUseCase.mMemoryCalls, is(0));
+        assertThat(mCallback.mResponses.size(), is(0));
+
+        // ...the response goes through the scheduler instead
+        mScheduler.runQueued();
+        assertThat(mUseCase.mRuns, is(1));
+        assertThat(mScheduler.mNotified, is(1));
+        assertThat(mCallback.mResponses.size(), is(1));
+    }
+
+    @Test
+    public void cancelledScheduledRequest_neverRuns() {
+        mScheduler.mResponseThread = false;
+        UseCaseRequest request = mUseCaseHandler.execute(mUseCase, new Request(), mCallback);
+
+        request.cancel();
+        mScheduler.runQueued();
+
+        assertThat(mUseCase.mRuns, is(0));
+        assertThat(mCallback.mResponses.size(), is(0));
+    }
+
+    @Test
+    public void queuedRequestWithTheSameKey_isSupersededAndNeverRuns() {
+        mScheduler.mResponseThread = false;
+        RecordingCallback latestCallback = new RecordingCallback();
+        mUseCaseHandler.execute(mUseCase, new Request(), mCallback, "key");
+        mUseCaseHandler.execute(mUseCase, new Request(), latestCallback, "key");
+
+        mScheduler.runQueued();
+
+        assertThat(mUseCase.mRuns, is(1));
+        assertThat(mCallback.mResponses.size(), is(0));
+        assertThat(latestCallback.mResponses.size(), is(1));
+    }
+
+    @Test
+    public void runningRequestWithTheSameKey_hasItsResultDropped() {
+        mScheduler.mResponseThread = false;
+        final RecordingCallback latestCallback = new RecordingCallback();
+        mUseCaseHandler.execute(mUseCase, new Request(), mCallback, "key");
+
+        // Superseded while it runs, before it delivers its result
+        mUseCase.mDuringRun = new Runnable() {
+            @Override
+            public void run() {
+                mUseCase.mDuringRun = null;
+                mUseCaseHandler.execute(mUseCase, new Request(), latestCallback, "key");
+            }
+        };
+        mScheduler.runQueued();
+
+        assertThat(mUseCase.mRuns, is(2));
+        assertThat(mCallback.mResponses.size(), is(0));
+        assertThat(latestCallback.mResponses.size(), is(1));
+    }
+
+    @Test
+    public void requestsWithOtherKeysOrNoKey_areNotSuperseded() {
+        mScheduler.mResponseThread = false;
+        RecordingCallback otherKeyCallback = new RecordingCallback();
+        RecordingCallback noKeyCallback = new RecordingCallback();
+        mUseCaseHandler.execute(mUseCase, new Request(), mCallback, "key");
+        mUseCaseHandler.execute(mUseCase, new Request(), otherKeyCallback, "other key");
+        mUseCaseHandler.execute(mUseCase, new Request(), noKeyCallback);
+
+        mScheduler.runQueued();
+
+        assertThat(mUseCase.mRuns, is(3));
+        assertThat(mCallback.mResponses.size(), is(1));
+        assertThat(otherKeyCallback.mResponses.size(), is(1));
+        assertThat(noKeyCallback.mResponses.size(), is(1));
+    }
+
+    @Test
+    public void keyOfACompletedRequest_doesNotCancelTheNextOne() {
+        mScheduler.mResponseThread = false;
+        mUseCaseHandler.execute(mUseCase, new Request(), mCallback, "key");
+        mScheduler.runQueued();
+        RecordingCallback nextCallback = new RecordingCallback();
+
+        mUseCaseHandler.execute(mUseCase, new Request(), nextCallback, "key");
+        mScheduler.runQueued();
+
+        assertThat(mCallback.mResponses.size(), is(1));
+        assertThat(nextCallback.mResponses.size(), is(1));
+    }
+
+    private static final class Request implements UseCase.RequestValues {
+    }
+
+    private static final class Response implements UseCase.ResponseValue {
+    }
+
+    private static final class MemoryUseCase extends UseCase<Request, Response> {
+
+        int mMemoryCalls;
+
+        int mRuns;
+
+        /**
+         * Run by {@link #executeUseCase} before it answers, if set.
+         */
+        Runnable mDuringRun;
+
+        @Override
+        protected void executeUseCase(Request requestValues, UseCaseCallback<Response> callback) {
+            mRuns++;
+            if (mDuringRun != null) {
+                mDuringRun.run();
+            }
+            callback.onSuccess(new Response());
+        }
+
+        @Override
+        protected boolean executeFromMemory(Request requestValues,
+                                            UseCaseCallback<Response> callback) {
+            mMemoryCalls++;
+            callback.onSuccess(new Response());
+            return true;
+        }
+    }
+
+    private static final class RecordingCallback implements UseCase.UseCaseCallback<Response> {
+
+        final List<Response> mResponses = new ArrayList<>();
+
+        @Override
+        public void onSuccess(Response response) {
+            mResponses.add(response);
+        }
+
+        @Override
+        public void onError() {
+        }
+    }
+
+    /**
+     * Queues work until the test runs it, and reports the calling thread as the response thread
+     * or not as told.
+     */
+    private static final class QueueingScheduler implements UseCaseScheduler {
+
+        final List<Runnable> mQueued = new ArrayList<>();
+
+        boolean mResponseThread;
+
+        int mNotified;
+
+        /**
+         * Runs the queued work in order, including work queued while running it.
+         */
+        void runQueued() {
+            while (!mQueued.isEmpty()) {
+                mQueued.remove(0).run();
+            }
+        }
+
+        @Override
+        public void execute(Runnable runnable) {
+            mQueued.add(runnable);
+        }
+
+        @Override
+        public void execute(Runnable runnable, UseCase.Priority priority) {
+            mQueued.add(runnable);
+        }
+
+        @Override
+        public void execute(Runnable runnable, UseCase.Priority priority,
+                            UseCaseRequest request) {
+            mQueued.add(runnable);
+        }
+
+        @Override
+        public <V extends UseCase.ResponseValue> void notifyResponse(V response,
+                UseCase.UseCaseCallback<V> useCaseCallback) {
+            mNotified++;
+            useCaseCallback.onSuccess(response);
+        }
+
+        @Override
+        public <V extends UseCase.ResponseValue> void onError(
+                UseCase.UseCaseCallback<V> useCaseCallback) {
+            useCaseCallback.onError();
+        }
+
+        @Override
+        public boolean isResponseThread() {
+            return mResponseThread;
+        }
+
+        @Override
+        public UseCaseSchedulerStats getStats() {
+            return UseCaseSchedulerStats.EMPTY;
+        }
+    }
+}
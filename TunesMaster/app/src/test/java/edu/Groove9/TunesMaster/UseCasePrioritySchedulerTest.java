@@ -0,0 +1,226 @@
+/*
+ * Copyright 2016, The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.Groove9.TunesMaster;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import com.google.common.collect.Lists;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Unit tests for the lanes and the admission of {@link UseCasePriorityScheduler}.
+ */
+public class UseCasePrioritySchedulerTest {
+
+    private static final Executor DIRECT_DISPATCHER = new Executor() {
+        @Override
+        public void execute(Runnable runnable) {
+            runnable.run();
+        }
+    };
+
+    /**
+     * Holds the tasks that occupy the workers until the test releases them.
+     */
+    private final CountDownLatch mWorkersReleased = new CountDownLatch(1);
+
+    private final CountDownLatch mWorkersBusy =
+            new CountDownLatch(UseCasePriorityScheduler.POOL_SIZE);
+
+    private UseCasePriorityScheduler mScheduler;
+
+    @After
+    public void releaseWorkers() {
+        mWorkersReleased.countDown();
+        mScheduler.mThreadPoolExecutor.shutdown();
+    }
+
+    @Test
+    public void interactiveWork_runsAheadOfQueuedNormalWork() throws Exception {
+        mScheduler = newScheduler(UseCasePriorityScheduler.QUEUE_CAPACITY, false);
+        occupyWorkers();
+        List<String> order = new ArrayList<>();
+
+        mScheduler.execute(record(order, "normal1"), UseCase.Priority.NORMAL);
+        mScheduler.execute(record(order, "normal2"), UseCase.Priority.NORMAL);
+        mScheduler.execute(record(order, "interactive1"), UseCase.Priority.INTERACTIVE);
+        mScheduler.execute(record(order, "interactive2"), UseCase.Priority.INTERACTIVE);
+
+        // Run the queue in the order workers would take it
+        runQueued();
+        assertThat(order, is((List<String>) Lists.newArrayList(
+                "interactive1", "interactive2", "normal1", "normal2")));
+    }
+
+    @Test(timeout = 5000)
+    public void fullNormalLane_onResponseThread_admitsWithoutBlocking() throws Exception {
+        mScheduler = newScheduler(1, true);
+        occupyWorkers();
+
+        mScheduler.execute(noOp(), UseCase.Priority.NORMAL);
+        // Would block forever if the response thread waited for a slot
+        mScheduler.execute(noOp(), UseCase.Priority.NORMAL);
+
+        assertThat(mScheduler.mThreadPoolExecutor.getQueue().size(), is(2));
+    }
+
+    @Test
+    public void fullNormalLane_offResponseThread_waitsForASlot() throws Exception {
+        mScheduler = newScheduler(1, false);
+        occupyWorkers();
+        mScheduler.execute(noOp(), UseCase.Priority.NORMAL);
+
+        Thread submitter = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                mScheduler.execute(noOp(), UseCase.Priority.NORMAL);
+            }
+        });
+        submitter.start();
+        submitter.join(200);
+        assertThat(submitter.isAlive(), is(true));
+
+        // The queued task completes once the workers are free, making room for the second one
+        mWorkersReleased.countDown();
+        submitter.join(5000);
+        assertThat(submitter.isAlive(), is(false));
+    }
+
+    @Test(timeout = 5000)
+    public void fullNormalLane_onAWorker_admitsWithoutBlocking() throws Exception {
+        mScheduler = newScheduler(1, false);
+        final CountDownLatch followUpRan = new CountDownLatch(1);
+
+        // The running task holds the only slot until it returns, so waiting for one would deadlock
+        mScheduler.execute(new Runnable() {
+            @Override
+            public void run() {
+                mScheduler.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        followUpRan.countDown();
+                    }
+                }, UseCase.Priority.NORMAL);
+            }
+        }, UseCase.Priority.NORMAL);
+
+        assertTrue(followUpRan.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test(timeout = 5000)
+    public void fullNormalLane_dropsCancelledRequestsToMakeRoom() throws Exception {
+        mScheduler = newScheduler(2, false);
+        occupyWorkers();
+        final AtomicInteger cancelledRuns = new AtomicInteger();
+        UseCaseRequest cancelled = new UseCaseRequest();
+        mScheduler.execute(new Runnable() {
+            @Override
+            public void run() {
+                cancelledRuns.incrementAndGet();
+            }
+        }, UseCase.Priority.NORMAL, cancelled);
+        mScheduler.execute(noOp(), UseCase.Priority.NORMAL, new UseCaseRequest());
+        cancelled.cancel();
+
+        // Off the response thread, so this would block if the cancelled request kept its slot
+        mScheduler.execute(noOp(), UseCase.Priority.NORMAL, new UseCaseRequest());
+
+        assertThat(mScheduler.mThreadPoolExecutor.getQueue().size(), is(2));
+        // Its runnable still ran, on this thread, to do its bookkeeping
+        assertThat(cancelledRuns.get(), is(1));
+    }
+
+    @Test(timeout = 5000)
+    public void interactiveWork_isNeverThrottled() throws Exception {
+        mScheduler = newScheduler(1, false);
+        occupyWorkers();
+        mScheduler.execute(noOp(), UseCase.Priority.NORMAL);
+
+        for (int i = 0; i < 3; i++) {
+            mScheduler.execute(noOp(), UseCase.Priority.INTERACTIVE);
+        }
+
+        assertThat(mScheduler.mThreadPoolExecutor.getQueue().size(), is(4));
+    }
+
+    private static UseCasePriorityScheduler newScheduler(int normalCapacity,
+                                                         final boolean onResponseThread) {
+        return new UseCasePriorityScheduler(DIRECT_DISPATCHER, normalCapacity) {
+            @Override
+            public boolean isResponseThread() {
+                return onResponseThread;
+            }
+        };
+    }
+
+    /**
+     * Starts one interactive task per worker, which is never throttled, and waits until they all
+     * run so that later work is queued.
+     */
+    private void occupyWorkers() throws InterruptedException {
+        for (int i = 0; i < UseCasePriorityScheduler.POOL_SIZE; i++) {
+            mScheduler.execute(new Runnable() {
+                @Override
+                public void run() {
+                    mWorkersBusy.countDown();
+                    try {
+                        mWorkersReleased.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            }, UseCase.Priority.INTERACTIVE);
+        }
+        assertTrue(mWorkersBusy.await(5, TimeUnit.SECONDS));
+    }
+
+    private static Runnable noOp() {
+        return new Runnable() {
+            @Override
+            public void run() {
+            }
+        };
+    }
+
+    private void runQueued() {
+        List<Runnable> queued = new ArrayList<>();
+        mScheduler.mThreadPoolExecutor.getQueue().drainTo(queued);
+        for (Runnable runnable : queued) {
+            runnable.run();
+        }
+    }
+
+    private static Runnable record(final List<String> order, final String name) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                order.add(name);
+            }
+        };
+    }
+}
@@ -0,0 +1,178 @@
+/*
+ * Copyright 2016, The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.Groove9.TunesMaster.data.source;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import android.net.Uri;
+
+import edu.Groove9.TunesMaster.playlist.domain.model.Song;
+
+import com.google.common.collect.Lists;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Unit tests for {@link SongsCache}.
+ */
+public class SongsCacheTest {
+
+    private static final Uri SOURCE = Uri.parse("https://www.youtube.com/watch?v=4PDJcw9oJt0");
+
+    private static final Song SONG1 = new Song("Title1", "Description1", "1", SOURCE);
+
+    private static final Song SONG2 = new Song("Title2", "Description2", "2", SOURCE);
+
+    private static final Song SONG3 = new Song("Title3", "Description3", "3", SOURCE);
+
+    private SongsCache mCache;
+
+    @Before
+    public void setupCache() {
+        mCache = new SongsCache();
+        mCache.replaceAll(Lists.newArrayList(SONG1, SONG2));
+    }
+
+    @Test
+    public void putAll_appendsNewSongsAndKeepsPositionOfChangedOnes() {
+        Song changedSong1 = new Song("Changed", "Description1", SONG1.getId(), SOURCE);
+
+        mCache.putAll(Lists.newArrayList(SONG3, changedSong1));
+
+        assertThat(mCache.values(), is((List<Song>) Lists.newArrayList(changedSong1, SONG2, SONG3)));
+        assertThat(mCache.get(SONG1.getId()).getTitle(), is("Changed"));
+    }
+
+    @Test
+    public void remove_dropsSongFromOrder() {
+        mCache.remove(SONG1.getId());
+        mCache.put(SONG1);
+
+        // Added back at the end, as a new song
+        assertThat(mCache.values(), is((List<Song>) Lists.newArrayList(SONG2, SONG1)));
+    }
+
+    @Test
+    public void applyChanges_removesAndAppendsInOnePass() {
+        mCache.applyChanges(new SongsChangeSet(Lists.newArrayList(SONG3, SONG2),
+                Lists.newArrayList(SONG1.getId()), 1, false));
+
+        assertThat(mCache.completeValues(), is((List<Song>) Lists.newArrayList(SONG2, SONG3)));
+    }
+
+    @Test
+    public void completeValues_isNullOnceSongsAreEvicted() {
+        // Too small to hold any song
+        mCache = new SongsCache(1);
+        mCache.replaceAll(Lists.newArrayList(SONG1, SONG2, SONG3));
+
+        assertThat(mCache.completeValues() == null, is(true));
+        assertThat(mCache.isComplete(), is(false));
+    }
+
+    @Test
+    public void concurrentLoads_areAllCached() {
+        // Given two loads of uncached songs, and a lookup of a missing one, started together
+        mCache.clear();
+        long version = mCache.version();
+
+        // When they complete one after the other
+        mCache.putLoaded(SONG1, version);
+        mCache.putAllLoaded(Lists.newArrayList(SONG2), version);
+        mCache.markMissing("missing", version);
+
+        // Then none of them is discarded because of the others
+        assertThat(mCache.get(SONG1.getId()), is(SONG1));
+        assertThat(mCache.get(SONG2.getId()), is(SONG2));
+        assertThat(mCache.isMissing("missing"), is(true));
+    }
+
+    @Test
+    public void loadCompletingAfterAWrite_isDiscarded() {
+        // Given a load started before the app saved a newer version of the song
+        mCache.clear();
+        long version = mCache.version();
+        Song savedSong1 = new Song("Saved", "Description1", SONG1.getId(), SOURCE);
+        mCache.put(savedSong1);
+
+        // When the load completes with what it read before the save
+        mCache.putLoaded(SONG1, version);
+
+        // Then the saved song is kept
+        assertThat(mCache.get(SONG1.getId()).getTitle(), is("Saved"));
+    }
+
+    @Test
+    public void lookupCompletingAfterASave_isNotRememberedAsMissing() {
+        // Given a lookup that found nothing, completing after the app saved the song
+        long version = mCache.version();
+        mCache.put(SONG3);
+
+        mCache.markMissing(SONG3.getId(), version);
+
+        assertThat(mCache.isMissing(SONG3.getId()), is(false));
+    }
+
+    @Test
+    public void pagesReadInOrder_completeTheCache() {
+        mCache.putPageLoaded(Lists.newArrayList(SONG1), 0, false, mCache.version());
+        assertThat(mCache.isComplete(), is(false));
+
+        boolean completed = mCache.putPageLoaded(Lists.newArrayList(SONG2, SONG3), 1, true,
+                mCache.version());
+
+        assertThat(completed, is(true));
+        assertThat(mCache.completeValues(),
+                is((List<Song>) Lists.newArrayList(SONG1, SONG2, SONG3)));
+    }
+
+    @Test
+    public void pageAfterAWrite_doesNotCompleteTheCache() {
+        mCache.putPageLoaded(Lists.newArrayList(SONG1), 0, false, mCache.version());
+        mCache.remove(SONG1.getId());
+
+        // Starts where the first page ended, but the rows may have moved since
+        boolean completed = mCache.putPageLoaded(Lists.newArrayList(SONG2), 1, true,
+                mCache.version());
+
+        assertThat(completed, is(false));
+        assertThat(mCache.isComplete(), is(false));
+    }
+
+    @Test
+    public void pageNotFollowingThePreviousOne_doesNotCompleteTheCache() {
+        mCache.putPageLoaded(Lists.newArrayList(SONG1), 0, false, mCache.version());
+
+        boolean completed = mCache.putPageLoaded(Lists.newArrayList(SONG3), 2, true,
+                mCache.version());
+
+        assertThat(completed, is(false));
+        assertThat(mCache.get(SONG3.getId()), is(SONG3));
+    }
+
+    @Test
+    public void clear_leavesAnEmptyCompleteCache() {
+        mCache.clear();
+
+        assertThat(mCache.completeValues(), is(Collections.<Song>emptyList()));
+    }
+}
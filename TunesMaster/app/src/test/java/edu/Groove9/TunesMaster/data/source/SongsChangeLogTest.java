@@ -0,0 +1,104 @@
+/*
+ * Copyright 2016, The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.Groove9.TunesMaster.data.source;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import android.net.Uri;
+
+import edu.Groove9.TunesMaster.playlist.domain.model.Song;
+
+import com.google.common.collect.Lists;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+
+/**
+ * Unit tests for {@link SongsChangeLog}.
+ */
+public class SongsChangeLogTest {
+
+    private static final Uri SOURCE = Uri.parse("https://www.youtube.com/watch?v=4PDJcw9oJt0");
+
+    private static final Song SONG1 = new Song("Title1", "Description1", SOURCE);
+
+    private static final Song SONG2 = new Song("Title2", "Description2", SOURCE);
+
+    private static final Song SONG3 = new Song("Title3", "Description3", SOURCE);
+
+    private SongsChangeLog mChangeLog;
+
+    @Before
+    public void setupChangeLog() {
+        mChangeLog = new SongsChangeLog();
+        mChangeLog.put(SONG1);
+        mChangeLog.put(SONG2);
+    }
+
+    @Test
+    public void changesSinceNoCursor_isResetWithAllSongs() {
+        SongsChangeSet changes = mChangeLog.changesSince(SongsChangeSet.NO_CURSOR);
+
+        assertTrue(changes.isReset());
+        assertThat(changes.getSavedSongs(), is((List<Song>) Lists.newArrayList(SONG1, SONG2)));
+    }
+
+    @Test
+    public void changesSinceCursor_onlyHoldsLaterChanges() {
+        // Given a client synced up to now
+        long cursor = mChangeLog.changesSince(SongsChangeSet.NO_CURSOR).getCursor();
+
+        // When a song is added and another deleted
+        mChangeLog.put(SONG3);
+        mChangeLog.remove(SONG1.getId());
+
+        // Then only those changes are sent
+        SongsChangeSet changes = mChangeLog.changesSince(cursor);
+        assertThat(changes.isReset(), is(false));
+        assertThat(changes.getSavedSongs(), is((List<Song>) Lists.newArrayList(SONG3)));
+        assertThat(changes.getDeletedIds(), is((List<String>) Lists.newArrayList(SONG1.getId())));
+        assertTrue(mChangeLog.changesSince(changes.getCursor()).isEmpty());
+    }
+
+    @Test
+    public void changesSinceCursorBeforeClear_isReset() {
+        long cursor = mChangeLog.changesSince(SongsChangeSet.NO_CURSOR).getCursor();
+
+        mChangeLog.clear();
+
+        SongsChangeSet changes = mChangeLog.changesSince(cursor);
+        assertTrue(changes.isReset());
+        assertTrue(changes.getSavedSongs().isEmpty());
+    }
+
+    @Test
+    public void changesSinceCursorBeforeDroppedTombstones_isReset() {
+        long cursor = mChangeLog.changesSince(SongsChangeSet.NO_CURSOR).getCursor();
+
+        for (int i = 0; i <= SongsChangeLog.MAX_TOMBSTONES; i++) {
+            Song song = new Song("Title", "Description", SOURCE);
+            mChangeLog.put(song);
+            mChangeLog.remove(song.getId());
+        }
+
+        assertTrue(mChangeLog.changesSince(cursor).isReset());
+    }
+}
@@ -17,19 +17,27 @@
 package edu.Groove9.TunesMaster.data.source;
 
 import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
 import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 
+import android.content.ComponentCallbacks2;
 import android.content.Context;
 import android.net.Uri;
 
 import edu.Groove9.TunesMaster.playlist.domain.model.Song;
 
+import com.google.common.base.Strings;
 import com.google.common.collect.Lists;
 
 import org.junit.After;
@@ -40,7 +48,10 @@ import org.mockito.Captor;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Unit tests for the implementation of the in-memory repository with cache.
@@ -89,6 +100,12 @@ public class SongsRepositoryTest {
     @Captor
     private ArgumentCaptor<SongsDataSource.GetSongCallback> mTaskCallbackCaptor;
 
+    @Captor
+    private ArgumentCaptor<SongsDataSource.LoadChangesCallback> mChangesCallbackCaptor;
+
+    @Captor
+    private ArgumentCaptor<SongsDataSource.GetSongsCallback> mTasksByIdCallbackCaptor;
+
     @Before
     public void setupTasksRepository() {
         // Mockito has a very convenient way to inject mocks by using the @Mock annotation. To
@@ -112,7 +129,8 @@ public class SongsRepositoryTest {
         twoTasksLoadCallsToRepository(mLoadSongsCallback);
 
         // Then tasks were only requested once from Service API
-        verify(mTasksRemoteDataSource).getSongs(any(SongsDataSource.LoadSongsCallback.class));
+        verify(mTasksRemoteDataSource).getChangesSince(anyLong(),
+                any(SongsDataSource.LoadChangesCallback.class));
     }
 
     @Test
@@ -207,13 +225,53 @@ public class SongsRepositoryTest {
         mSongsRepository.getSongs(mLoadSongsCallback);
 
         // And the remote data source has data available
-        setTasksAvailable(mTasksRemoteDataSource, TASKS);
+        setChangesAvailable(mTasksRemoteDataSource, reset(TASKS));
 
         // Verify the tasks from the remote data source are returned, not the local
         verify(mTasksLocalDataSource, never()).getSongs(mLoadSongsCallback);
         verify(mLoadSongsCallback).onSongsLoaded(TASKS);
     }
 
+    @Test
+    public void loadCompletingAfterARefresh_leavesTheCacheDirty() {
+        mSongsRepository.setUseRemoteDataSource(true);
+        // Given a load from the local data source in progress
+        mSongsRepository.getSongs(mLoadSongsCallback);
+        verify(mTasksLocalDataSource).getSongs(mTasksCallbackCaptor.capture());
+
+        // When the songs are refreshed before it completes
+        mSongsRepository.refreshSongs();
+        mTasksCallbackCaptor.getValue().onSongsLoaded(TASKS);
+
+        // Then its callers still get what it read, but it isn't cached
+        verify(mLoadSongsCallback).onSongsLoaded(TASKS);
+        assertNull(mSongsRepository.getCachedSongs());
+
+        // And the next load syncs with the remote data source
+        mSongsRepository.getSongs(mock(SongsDataSource.LoadSongsCallback.class));
+        verify(mTasksRemoteDataSource).getChangesSince(anyLong(),
+                any(SongsDataSource.LoadChangesCallback.class));
+    }
+
+    @Test
+    public void loadCompletingAfterARefreshedOne_doesNotOverwriteIt() {
+        mSongsRepository.setUseRemoteDataSource(true);
+        // Given a load from the local data source in progress
+        mSongsRepository.getSongs(mLoadSongsCallback);
+        verify(mTasksLocalDataSource).getSongs(mTasksCallbackCaptor.capture());
+        SongsDataSource.LoadSongsCallback staleLoad = mTasksCallbackCaptor.getValue();
+
+        // When a refresh reloads the songs first
+        mSongsRepository.refreshSongs();
+        mSongsRepository.getSongs(mock(SongsDataSource.LoadSongsCallback.class));
+        List<Song> refreshedSongs = Lists.newArrayList(new Song(TASK_TITLE3, "", SOURCE));
+        setChangesAvailable(mTasksRemoteDataSource, reset(refreshedSongs));
+        staleLoad.onSongsLoaded(TASKS);
+
+        // Then the cache keeps the refreshed songs
+        assertThat(mSongsRepository.getCachedSongs(), is(refreshedSongs));
+    }
+
     @Test
     public void getTasksWithLocalDataSourceUnavailable_tasksAreRetrievedFromRemote() {
         // When calling getSongs in the repository
@@ -223,7 +281,7 @@ public class SongsRepositoryTest {
         setTasksNotAvailable(mTasksLocalDataSource);
 
         // And the remote data source has data available
-        setTasksAvailable(mTasksRemoteDataSource, TASKS);
+        setChangesAvailable(mTasksRemoteDataSource, reset(TASKS));
 
         // Verify the tasks from the local data source are returned
         verify(mLoadSongsCallback).onSongsLoaded(TASKS);
@@ -238,7 +296,7 @@ public class SongsRepositoryTest {
         setTasksNotAvailable(mTasksLocalDataSource);
 
         // And the remote data source has no data available
-        setTasksNotAvailable(mTasksRemoteDataSource);
+        setChangesNotAvailable(mTasksRemoteDataSource);
 
         // Verify no data is returned
         verify(mLoadSongsCallback).onDataNotAvailable();
@@ -271,10 +329,334 @@ public class SongsRepositoryTest {
         mSongsRepository.getSongs(mLoadSongsCallback);
 
         // Make the remote data source return data
-        setTasksAvailable(mTasksRemoteDataSource, TASKS);
+        SongsChangeSet changes = reset(TASKS);
+        setChangesAvailable(mTasksRemoteDataSource, changes);
 
         // Verify that the data fetched from the remote data source was saved in local.
-        verify(mTasksLocalDataSource, times(TASKS.size())).saveSong(any(Song.class));
+        verify(mTasksLocalDataSource).applyChanges(changes);
+    }
+
+    @Test
+    public void applyChanges_writesOnlyTheChangesToLocalAndCache() {
+        // Given a cache loaded from the local data source
+        mSongsRepository.getSongs(mLoadSongsCallback);
+        setTasksAvailable(mTasksLocalDataSource, TASKS);
+
+        // When changes adding a song and deleting another are applied
+        Song newTask = new Song(TASK_TITLE, "Some Task Description", SOURCE);
+        SongsChangeSet changes = new SongsChangeSet(Lists.newArrayList(newTask),
+                Lists.newArrayList(TASKS.get(0).getId()), 7, false);
+        mSongsRepository.applyChanges(changes);
+
+        // Then the local data source gets them as is, without being wiped
+        verify(mTasksLocalDataSource).applyChanges(changes);
+        verify(mTasksLocalDataSource, never()).deleteAllSongs();
+
+        // And the cache is patched in place
+        assertThat(mSongsRepository.getCachedSongs(),
+                is((List<Song>) Lists.newArrayList(TASKS.get(1), newTask)));
+    }
+
+    @Test
+    public void trimMemoryInBackground_dropsCacheAndReloadsFromLocal() {
+        // Given a repository with its cache populated from the local data source
+        mSongsRepository.getSongs(mLoadSongsCallback);
+        setTasksAvailable(mTasksLocalDataSource, TASKS);
+        assertThat(mSongsRepository.mCachedSongs.size(), is(TASKS.size()));
+
+        // When the system asks the app to release memory while in the background
+        mSongsRepository.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_BACKGROUND);
+
+        // Then the cache is emptied and the next load goes back to the local data source
+        assertThat(mSongsRepository.mCachedSongs.size(), is(0));
+        mSongsRepository.getSongs(mLoadSongsCallback);
+        verify(mTasksLocalDataSource, times(2)).getSongs(any(SongsDataSource.LoadSongsCallback.class));
+    }
+
+    @Test
+    public void concurrentGetTasks_shareOneLocalLoad() {
+        // Given a second load requested while the first one is still running
+        SongsDataSource.LoadSongsCallback secondCallback =
+                mock(SongsDataSource.LoadSongsCallback.class);
+        mSongsRepository.getSongs(mLoadSongsCallback);
+        mSongsRepository.getSongs(secondCallback);
+
+        // When the local data source answers the single query it received
+        setTasksAvailable(mTasksLocalDataSource, TASKS);
+
+        // Then both callers get the songs
+        verify(mLoadSongsCallback).onSongsLoaded(TASKS);
+        verify(secondCallback).onSongsLoaded(TASKS);
+    }
+
+    @Test
+    public void concurrentGetTask_shareOneLocalLoad() {
+        // Given two lookups of the same uncached song
+        Song newTask = new Song(TASK_TITLE, "Some Task Description", SOURCE);
+        SongsDataSource.GetSongCallback secondCallback =
+                mock(SongsDataSource.GetSongCallback.class);
+        mSongsRepository.getSong(newTask.getId(), mGetSongCallback);
+        mSongsRepository.getSong(newTask.getId(), secondCallback);
+
+        // When the local data source answers the single query it received
+        setTaskAvailable(mTasksLocalDataSource, newTask);
+
+        // Then both callers get the song
+        verify(mGetSongCallback).onSongLoaded(newTask);
+        verify(secondCallback).onSongLoaded(newTask);
+    }
+
+    @Test
+    public void getTasksWithDirtyCacheAndStaleWhileRevalidate_servesCacheThenNotifiesChanges() {
+        // Given a loaded cache marked dirty, with stale-while-revalidate enabled
+        SongsRepository.SongsObserver observer = mock(SongsRepository.SongsObserver.class);
+        mSongsRepository.addSongsObserver(observer);
+        mSongsRepository.setStaleWhileRevalidate(true);
+        mSongsRepository.getSongs(mLoadSongsCallback);
+        setTasksAvailable(mTasksLocalDataSource, TASKS);
+        mSongsRepository.refreshSongs();
+
+        // When songs are requested again
+        SongsDataSource.LoadSongsCallback secondCallback =
+                mock(SongsDataSource.LoadSongsCallback.class);
+        mSongsRepository.getSongs(secondCallback);
+
+        // Then the cached songs are served right away
+        verify(secondCallback).onSongsLoaded(TASKS);
+
+        // And when the background reload finds a new song, the observer gets the difference
+        Song newTask = new Song(TASK_TITLE, "Some Task Description", SOURCE);
+        List<Song> reloaded = Lists.newArrayList(TASKS);
+        reloaded.add(newTask);
+        verify(mTasksLocalDataSource, times(2)).getSongs(mTasksCallbackCaptor.capture());
+        mTasksCallbackCaptor.getValue().onSongsLoaded(reloaded);
+
+        ArgumentCaptor<SongsDiff> diffCaptor = ArgumentCaptor.forClass(SongsDiff.class);
+        verify(observer).onSongsChanged(diffCaptor.capture());
+        assertThat(diffCaptor.getValue().getAdded(), is((List<Song>) Lists.newArrayList(newTask)));
+        assertTrue(diffCaptor.getValue().getRemoved().isEmpty());
+        assertThat(mSongsRepository.mCachedSongs.size(), is(reloaded.size()));
+    }
+
+    @Test
+    public void getTaskTwice_secondCallServedFromCache() {
+        // Given a song loaded once from the local data source
+        Song newTask = new Song(TASK_TITLE, "Some Task Description", SOURCE);
+        mSongsRepository.getSong(newTask.getId(), mGetSongCallback);
+        setTaskAvailable(mTasksLocalDataSource, newTask);
+
+        // When it is requested again
+        mSongsRepository.getSong(newTask.getId(), mGetSongCallback);
+
+        // Then the local data source is only queried once
+        verify(mTasksLocalDataSource).getSong(eq(newTask.getId()),
+                any(SongsDataSource.GetSongCallback.class));
+        verify(mGetSongCallback, times(2)).onSongLoaded(newTask);
+    }
+
+    @Test
+    public void getMissingTaskTwice_secondCallAnsweredFromNegativeCache() {
+        // Given a song id no data source knows
+        final String taskId = "123";
+        mSongsRepository.getSong(taskId, mGetSongCallback);
+        setTaskNotAvailable(mTasksLocalDataSource, taskId);
+        setTaskNotAvailable(mTasksRemoteDataSource, taskId);
+
+        // When it is requested again
+        mSongsRepository.getSong(taskId, mGetSongCallback);
+
+        // Then the data sources aren't queried again
+        verify(mTasksLocalDataSource).getSong(eq(taskId),
+                any(SongsDataSource.GetSongCallback.class));
+        verify(mGetSongCallback, times(2)).onDataNotAvailable();
+        assertTrue(mSongsRepository.isCachedAsMissing(taskId));
+    }
+
+    @Test
+    public void getTasksByIds_loadsUncachedTasksInOneBatchPerDataSource() {
+        // Given one cached song and two that aren't
+        Song cachedTask = new Song(TASK_TITLE, "Some Task Description", SOURCE);
+        Song localTask = new Song(TASK_TITLE2, "Some Task Description", SOURCE);
+        String missingId = "123";
+        mSongsRepository.saveSong(cachedTask);
+        SongsDataSource.GetSongsCallback callback = mock(SongsDataSource.GetSongsCallback.class);
+
+        // When all three are requested, the local data source has one and the remote none
+        mSongsRepository.getSongs(Lists.newArrayList(cachedTask.getId(), localTask.getId(),
+                missingId, localTask.getId()), callback);
+        verify(mTasksLocalDataSource).getSongs(eq(Lists.newArrayList(localTask.getId(),
+                missingId)), mTasksByIdCallbackCaptor.capture());
+        mTasksByIdCallbackCaptor.getValue().onSongsLoaded(Lists.newArrayList(localTask),
+                Lists.newArrayList(missingId));
+        verify(mTasksRemoteDataSource).getSongs(eq(Lists.newArrayList(missingId)),
+                mTasksByIdCallbackCaptor.capture());
+        mTasksByIdCallbackCaptor.getValue().onSongsLoaded(Collections.<Song>emptyList(),
+                Lists.newArrayList(missingId));
+
+        // Then the songs found are reported in order, with the missing id
+        verify(callback).onSongsLoaded(Lists.newArrayList(cachedTask, localTask),
+                Lists.newArrayList(missingId));
+        assertTrue(mSongsRepository.mCachedSongs.containsKey(localTask.getId()));
+        assertTrue(mSongsRepository.isCachedAsMissing(missingId));
+    }
+
+    @Test
+    public void getTaskHedged_firstAnswerWins() {
+        // Given hedged lookups that ask both data sources right away
+        mSongsRepository.setHedgeDelay(0);
+        Song newTask = new Song(TASK_TITLE, "Some Task Description", SOURCE);
+
+        // When the remote data source finds the song before the local one answers
+        mSongsRepository.getSong(newTask.getId(), mGetSongCallback);
+        setTaskAvailable(mTasksRemoteDataSource, newTask);
+        setTaskAvailable(mTasksLocalDataSource, newTask);
+
+        // Then the song is reported once, from the remote data source
+        verify(mGetSongCallback).onSongLoaded(newTask);
+        verify(mGetSongCallback, never()).onDataNotAvailable();
+    }
+
+    @Test
+    public void getTaskHedged_localMissStartsRemoteWithoutWaiting() {
+        // Given hedged lookups with a delay longer than the test
+        mSongsRepository.setHedgeDelay(TimeUnit.MINUTES.toMillis(1));
+        final String taskId = "123";
+
+        // When the local data source doesn't have the song
+        mSongsRepository.getSong(taskId, mGetSongCallback);
+        verify(mTasksRemoteDataSource, never()).getSong(eq(taskId),
+                any(SongsDataSource.GetSongCallback.class));
+        setTaskNotAvailable(mTasksLocalDataSource, taskId);
+
+        // Then the remote data source is asked at once, and its miss is reported
+        setTaskNotAvailable(mTasksRemoteDataSource, taskId);
+        verify(mGetSongCallback).onDataNotAvailable();
+    }
+
+    @Test
+    public void getTaskHedged_remoteThrowingAfterLocalMiss_reportsNotFound() {
+        // Given a remote data source that throws instead of answering
+        mSongsRepository.setHedgeDelay(TimeUnit.MINUTES.toMillis(1));
+        doThrow(new IllegalStateException()).when(mTasksRemoteDataSource).getSong(eq("123"),
+                any(SongsDataSource.GetSongCallback.class));
+
+        // When the local data source doesn't have the song either
+        mSongsRepository.getSong("123", mGetSongCallback);
+        setTaskNotAvailable(mTasksLocalDataSource, "123");
+
+        // Then the miss is reported instead of waiting for the remote answer
+        verify(mGetSongCallback).onDataNotAvailable();
+    }
+
+    @Test
+    public void getTaskHedged_remoteThrowingOnItsOwnThread_reportsNotFoundOnLocalMiss() {
+        // Given a remote data source that throws when the hedge delay asks it
+        mSongsRepository.setHedgeDelay(1);
+        doThrow(new IllegalStateException()).when(mTasksRemoteDataSource).getSong(eq("123"),
+                any(SongsDataSource.GetSongCallback.class));
+        mSongsRepository.getSong("123", mGetSongCallback);
+        verify(mTasksRemoteDataSource, timeout(5000)).getSong(eq("123"),
+                any(SongsDataSource.GetSongCallback.class));
+
+        // When the local data source misses afterwards
+        setTaskNotAvailable(mTasksLocalDataSource, "123");
+
+        // Then the miss is reported
+        verify(mGetSongCallback, timeout(5000)).onDataNotAvailable();
+    }
+
+    @Test
+    public void getTaskHedged_afterDestroyInstance_stillAsksRemoteOnLocalMiss() {
+        // Given a hedged lookup scheduled, then the repository destroyed
+        mSongsRepository.setHedgeDelay(TimeUnit.MINUTES.toMillis(1));
+        mSongsRepository.getSong("123", mGetSongCallback);
+        SongsRepository.destroyInstance();
+
+        // When a lookup is made on the destroyed repository, which can't schedule anymore
+        mSongsRepository.getSong("456", mGetSongCallback);
+        setTaskNotAvailable(mTasksLocalDataSource, "456");
+
+        // Then the remote data source is asked once the local one misses
+        setTaskNotAvailable(mTasksRemoteDataSource, "456");
+        verify(mGetSongCallback).onDataNotAvailable();
+    }
+
+    @Test
+    public void getTasksPage_readsPageFromLocalAndCachesIt() {
+        // When a page is requested with an empty cache
+        SongsDataSource.LoadSongsPageCallback pageCallback =
+                mock(SongsDataSource.LoadSongsPageCallback.class);
+        mSongsRepository.getSongsPage(0, 2, pageCallback);
+
+        // And the local data source returns it
+        ArgumentCaptor<SongsDataSource.LoadSongsPageCallback> captor =
+                ArgumentCaptor.forClass(SongsDataSource.LoadSongsPageCallback.class);
+        verify(mTasksLocalDataSource).getSongsPage(eq(0), eq(2), captor.capture());
+        captor.getValue().onPageLoaded(TASKS.subList(0, 2), true);
+
+        // Then it is forwarded and its songs can be opened from the cache
+        verify(pageCallback).onPageLoaded(TASKS.subList(0, 2), true);
+        assertThat(mSongsRepository.getCachedSong(TASKS.get(0).getId()), is(TASKS.get(0)));
+    }
+
+    @Test
+    public void getTasksPagesUpToTheLast_completeTheCache() {
+        // Given a dirty cache, with the local data source as the source of truth
+        mSongsRepository.refreshSongs();
+
+        // When the list is read a page at a time, up to the last one
+        ArgumentCaptor<SongsDataSource.LoadSongsPageCallback> captor =
+                ArgumentCaptor.forClass(SongsDataSource.LoadSongsPageCallback.class);
+        mSongsRepository.getSongsPage(0, 1, mock(SongsDataSource.LoadSongsPageCallback.class));
+        verify(mTasksLocalDataSource).getSongsPage(eq(0), eq(1), captor.capture());
+        captor.getValue().onPageLoaded(TASKS.subList(0, 1), true);
+        mSongsRepository.getSongsPage(1, 1, mock(SongsDataSource.LoadSongsPageCallback.class));
+        verify(mTasksLocalDataSource).getSongsPage(eq(1), eq(1), captor.capture());
+        captor.getValue().onPageLoaded(TASKS.subList(1, 2), false);
+
+        // Then the cache holds the whole list and is no longer dirty
+        assertFalse(mSongsRepository.mCacheIsDirty);
+        assertThat(mSongsRepository.getCachedSongs(), is(TASKS));
+    }
+
+    @Test
+    public void getTasksPageDuringFullLoad_doesNotWaitForIt() {
+        // Given a full load in flight
+        mSongsRepository.getSongs(mLoadSongsCallback);
+
+        // When the first page is requested meanwhile
+        SongsDataSource.LoadSongsPageCallback pageCallback =
+                mock(SongsDataSource.LoadSongsPageCallback.class);
+        mSongsRepository.getSongsPage(0, 1, pageCallback);
+
+        // Then the page is read from the local data source on its own
+        ArgumentCaptor<SongsDataSource.LoadSongsPageCallback> captor =
+                ArgumentCaptor.forClass(SongsDataSource.LoadSongsPageCallback.class);
+        verify(mTasksLocalDataSource).getSongsPage(eq(0), eq(1), captor.capture());
+        captor.getValue().onPageLoaded(TASKS.subList(0, 1), true);
+        verify(pageCallback).onPageLoaded(TASKS.subList(0, 1), true);
+    }
+
+    @Test
+    public void getTasksBeyondCacheBound_returnsWholeLibrary() {
+        // Given a library heavier than the cache can hold
+        List<Song> library = new ArrayList<>();
+        String description = Strings.repeat("description", 100);
+        for (int i = 0; i < 3000; i++) {
+            library.add(new Song("Title" + i, description, SOURCE));
+        }
+
+        // When it is loaded from the local data source
+        mSongsRepository.getSongs(mLoadSongsCallback);
+        setTasksAvailable(mTasksLocalDataSource, library);
+
+        // Then every song is handed over, not only the ones that fit in the cache
+        verify(mLoadSongsCallback).onSongsLoaded(library);
+
+        // And the partial cache isn't served as the library later
+        assertNull(mSongsRepository.getCachedSongs());
+        mSongsRepository.getSongs(mLoadSongsCallback);
+        verify(mTasksLocalDataSource, times(2)).getSongs(any(SongsDataSource.LoadSongsCallback.class));
     }
 
     /**
@@ -291,11 +673,8 @@ public class SongsRepositoryTest {
         mTasksCallbackCaptor.getValue().onDataNotAvailable();
 
 
-        // Verify the remote data source is queried
-        verify(mTasksRemoteDataSource).getSongs(mTasksCallbackCaptor.capture());
-
-        // Trigger callback so tasks are cached
-        mTasksCallbackCaptor.getValue().onSongsLoaded(TASKS);
+        // Verify the remote data source is queried, and trigger callback so tasks are cached
+        setChangesAvailable(mTasksRemoteDataSource, reset(TASKS));
 
         mSongsRepository.getSongs(callback); // Second call to API
     }
@@ -310,6 +689,20 @@ public class SongsRepositoryTest {
         mTasksCallbackCaptor.getValue().onSongsLoaded(songs);
     }
 
+    private void setChangesAvailable(SongsDataSource dataSource, SongsChangeSet changes) {
+        verify(dataSource).getChangesSince(anyLong(), mChangesCallbackCaptor.capture());
+        mChangesCallbackCaptor.getValue().onChangesLoaded(changes);
+    }
+
+    private void setChangesNotAvailable(SongsDataSource dataSource) {
+        verify(dataSource).getChangesSince(anyLong(), mChangesCallbackCaptor.capture());
+        mChangesCallbackCaptor.getValue().onDataNotAvailable();
+    }
+
+    private static SongsChangeSet reset(List<Song> songs) {
+        return new SongsChangeSet(songs, Collections.<String>emptyList(), 1, true);
+    }
+
     private void setTaskNotAvailable(SongsDataSource dataSource, String taskId) {
         verify(dataSource).getSong(eq(taskId), mTaskCallbackCaptor.capture());
         mTaskCallbackCaptor.getValue().onDataNotAvailable();
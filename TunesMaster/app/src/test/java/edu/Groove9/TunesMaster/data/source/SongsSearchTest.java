@@ -0,0 +1,94 @@
+/*
+ * Copyright 2016, The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.Groove9.TunesMaster.data.source;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import android.net.Uri;
+
+import edu.Groove9.TunesMaster.playlist.domain.model.Song;
+
+import com.google.common.collect.Lists;
+
+import org.junit.Test;
+
+import java.util.List;
+
+/**
+ * Unit tests for {@link SongsSearch}.
+ */
+public class SongsSearchTest {
+
+    private static final Uri SOURCE = Uri.parse("https://www.youtube.com/watch?v=4PDJcw9oJt0");
+
+    private static final Song NIGHT_DRIVE = new Song("Night Drive", "Synthwave", SOURCE);
+
+    private static final Song MORNING = new Song("Morning", "Night shift is over", SOURCE);
+
+    private static final Song RAIN = new Song("Rain", null, SOURCE);
+
+    private static final List<Song> SONGS = Lists.newArrayList(NIGHT_DRIVE, MORNING, RAIN);
+
+    @Test
+    public void terms_splitOnPunctuationAndLowerCase() {
+        assertThat(SongsSearch.terms(" Night-Drive\"* OR x"),
+                is((List<String>) Lists.newArrayList("night", "drive", "or", "x")));
+    }
+
+    @Test
+    public void toMatchExpression_prefixesEveryTerm() {
+        assertThat(SongsSearch.toMatchExpression(Lists.newArrayList("nig", "dr")),
+                is("nig* dr*"));
+    }
+
+    @Test
+    public void search_matchesWordPrefixesInTitleOrDescription() {
+        assertThat(SongsSearch.search(SONGS, "nig", 10),
+                is((List<Song>) Lists.newArrayList(NIGHT_DRIVE, MORNING)));
+        assertThat(SongsSearch.search(SONGS, "night dri", 10),
+                is((List<Song>) Lists.newArrayList(NIGHT_DRIVE)));
+        assertThat(SongsSearch.search(SONGS, "nig", 1),
+                is((List<Song>) Lists.newArrayList(NIGHT_DRIVE)));
+    }
+
+    @Test
+    public void search_withoutTerms_findsNothing() {
+        assertTrue(SongsSearch.search(SONGS, " - ", 10).isEmpty());
+    }
+
+    @Test
+    public void search_foldsCaseBeyondAscii() {
+        Song emile = new Song("\u00c9mile", "\u00d6lfarben auf Leinwand", SOURCE);
+        List<Song> songs = Lists.newArrayList(NIGHT_DRIVE, emile);
+
+        assertThat(SongsSearch.search(songs, "\u00e9mi", 10),
+                is((List<Song>) Lists.newArrayList(emile)));
+        assertThat(SongsSearch.search(songs, "\u00d6LFARBEN", 10),
+                is((List<Song>) Lists.newArrayList(emile)));
+        // Diacritics still count
+        assertTrue(SongsSearch.search(songs, "emile", 10).isEmpty());
+    }
+
+    @Test
+    public void isAscii_tellsTermsTheDefaultTokenizerFoldsAlike() {
+        assertTrue(SongsSearch.isAscii(SongsSearch.terms("Night Drive 2")));
+        assertFalse(SongsSearch.isAscii(SongsSearch.terms("night \u00e9mile")));
+    }
+}
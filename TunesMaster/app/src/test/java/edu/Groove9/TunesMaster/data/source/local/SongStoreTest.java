@@ -0,0 +1,186 @@
+/*
+ * Copyright 2016, The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.Groove9.TunesMaster.data.source.local;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import edu.Groove9.TunesMaster.data.source.SongsChangeSet;
+import edu.Groove9.TunesMaster.playlist.domain.model.SerializableUri;
+import edu.Groove9.TunesMaster.playlist.domain.model.Song;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Unit tests for {@link SongStore}, against files in a temporary directory.
+ */
+public class SongStoreTest {
+
+    private static final String NAME = "songs";
+
+    private File mDirectory;
+
+    private SongStore mStore;
+
+    @Before
+    public void openStore() throws IOException {
+        mDirectory = Files.createTempDirectory("SongStoreTest").toFile();
+        mStore = new SongStore(mDirectory, NAME);
+    }
+
+    @After
+    public void deleteFiles() {
+        File[] files = mDirectory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        mDirectory.delete();
+    }
+
+    @Test
+    public void appendedSong_readsBackTheSame() throws IOException {
+        Song song = song(1);
+        Song songWithoutDescription = new Song("Title2", null, "2",
+                SerializableUri.fromString("https://example.com/2"));
+
+        int record = mStore.append(song);
+        int otherRecord = mStore.append(songWithoutDescription);
+
+        assertThat(mStore.read(record), is(song));
+        assertThat(mStore.readId(record), is("1"));
+        assertThat(mStore.read(record).getmSource().getUriString(), is("https://example.com/1"));
+        assertNull(mStore.read(otherRecord).getDescription());
+        assertThat(mStore.getLiveCount(), is(2));
+    }
+
+    @Test
+    public void reopenedStore_keepsSongsDeletionsAndCursor() throws IOException {
+        mStore.append(song(1));
+        int deleted = mStore.append(song(2));
+        mStore.markDeleted(deleted);
+        mStore.setSyncCursor(42);
+        mStore.force();
+
+        SongStore reopened = new SongStore(mDirectory, NAME);
+
+        assertThat(reopened.getRecordCount(), is(2));
+        assertThat(reopened.getLiveCount(), is(1));
+        assertThat(reopened.read(0), is(song(1)));
+        assertThat(reopened.isLive(deleted), is(false));
+        assertThat(reopened.getSyncCursor(), is(42L));
+    }
+
+    @Test
+    public void compaction_keepsLiveSongsInOrder() throws IOException {
+        // Enough live songs that the compacted record file has to grow past its first mapping
+        int total = 5000;
+        List<Song> live = new ArrayList<>();
+        for (int i = 0; i < total; i++) {
+            int record = mStore.append(song(i));
+            if (i % 5 < 3) {
+                mStore.markDeleted(record);
+            } else {
+                live.add(song(i));
+            }
+        }
+        mStore.setSyncCursor(7);
+
+        assertTrue(mStore.compactIfNeeded());
+
+        assertThat(readLive(mStore), is(live));
+        assertThat(mStore.getRecordCount(), is(live.size()));
+        assertThat(mStore.getSyncCursor(), is(7L));
+
+        // Written after compaction, to the new files
+        mStore.append(song(total));
+        live.add(song(total));
+        mStore.force();
+
+        SongStore reopened = new SongStore(mDirectory, NAME);
+        assertThat(readLive(reopened), is(live));
+        assertThat(reopened.getSyncCursor(), is(7L));
+    }
+
+    @Test
+    public void smallStore_isNotCompacted() throws IOException {
+        int record = mStore.append(song(1));
+        mStore.markDeleted(record);
+
+        assertThat(mStore.compactIfNeeded(), is(false));
+    }
+
+    @Test
+    public void corruptHeader_startsAnEmptyStore() throws IOException {
+        mStore.append(song(1));
+        mStore.force();
+        writeIntAt(0, 0xBAD);
+
+        SongStore reopened = new SongStore(mDirectory, NAME);
+
+        assertThat(reopened.getRecordCount(), is(0));
+        assertThat(reopened.getSyncCursor(), is(SongsChangeSet.NO_CURSOR));
+    }
+
+    @Test
+    public void recordCountPastTheEndOfTheFile_startsAnEmptyStore() throws IOException {
+        mStore.append(song(1));
+        mStore.force();
+        writeIntAt(SongStore.HEADER_RECORD_COUNT, Integer.MAX_VALUE / SongStore.RECORD_SIZE);
+
+        SongStore reopened = new SongStore(mDirectory, NAME);
+
+        assertThat(reopened.getRecordCount(), is(0));
+    }
+
+    private static Song song(int i) {
+        return new Song("Title" + i, "Description" + i, String.valueOf(i),
+                SerializableUri.fromString("https://example.com/" + i));
+    }
+
+    private static List<Song> readLive(SongStore store) {
+        List<Song> songs = new ArrayList<>();
+        for (int record = 0; record < store.getRecordCount(); record++) {
+            if (store.isLive(record)) {
+                songs.add(store.read(record));
+            }
+        }
+        return songs;
+    }
+
+    private void writeIntAt(int position, int value) throws IOException {
+        RandomAccessFile file = new RandomAccessFile(new File(mDirectory, NAME + ".records"), "rw");
+        try {
+            file.seek(position);
+            file.writeInt(value);
+        } finally {
+            file.close();
+        }
+    }
+}
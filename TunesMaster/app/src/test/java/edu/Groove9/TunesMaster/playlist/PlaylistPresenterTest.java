@@ -21,7 +21,7 @@ import android.net.Uri;
 import edu.Groove9.TunesMaster.TestUseCaseScheduler;
 import edu.Groove9.TunesMaster.UseCaseHandler;
 import edu.Groove9.TunesMaster.data.source.SongsRepository;
-import edu.Groove9.TunesMaster.data.source.SongsDataSource.LoadSongsCallback;
+import edu.Groove9.TunesMaster.data.source.SongsDataSource.LoadSongsPageCallback;
 import edu.Groove9.TunesMaster.playlist.domain.filter.FilterFactory;
 import edu.Groove9.TunesMaster.playlist.domain.model.Playlist;
 import edu.Groove9.TunesMaster.playlist.domain.model.Song;
@@ -36,12 +36,14 @@ import org.mockito.InOrder;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -65,7 +67,7 @@ public class PlaylistPresenterTest {
      * perform further actions or assertions on them.
      */
     @Captor
-    private ArgumentCaptor<LoadSongsCallback> mLoadTasksCallbackCaptor;
+    private ArgumentCaptor<LoadSongsPageCallback> mLoadTasksCallbackCaptor;
 
     private PlaylistPresenter mPlaylistPresenter;
 
@@ -101,8 +103,9 @@ public class PlaylistPresenterTest {
         mPlaylistPresenter.loadTasks(true);
 
         // Callback is captured and invoked with stubbed tasks
-        verify(mSongsRepository).getSongs(mLoadTasksCallbackCaptor.capture());
-        mLoadTasksCallbackCaptor.getValue().onSongsLoaded(TASKS);
+        verify(mSongsRepository).getSongsPage(eq(0), eq(PlaylistPresenter.PAGE_SIZE),
+                mLoadTasksCallbackCaptor.capture());
+        mLoadTasksCallbackCaptor.getValue().onPageLoaded(TASKS, false);
 
         // Then progress indicator is shown
         InOrder inOrder = inOrder(mTasksView);
@@ -122,8 +125,9 @@ public class PlaylistPresenterTest {
         mPlaylistPresenter.loadTasks(true);
 
         // Callback is captured and invoked with stubbed tasks
-        verify(mSongsRepository).getSongs(mLoadTasksCallbackCaptor.capture());
-        mLoadTasksCallbackCaptor.getValue().onSongsLoaded(TASKS);
+        verify(mSongsRepository).getSongsPage(eq(0), eq(PlaylistPresenter.PAGE_SIZE),
+                mLoadTasksCallbackCaptor.capture());
+        mLoadTasksCallbackCaptor.getValue().onPageLoaded(TASKS, false);
 
         // Then progress indicator is hidden and active tasks are shown in UI
         verify(mTasksView).setLoadingIndicator(false);
@@ -140,8 +144,9 @@ public class PlaylistPresenterTest {
         mPlaylistPresenter.loadTasks(true);
 
         // Callback is captured and invoked with stubbed tasks
-        verify(mSongsRepository).getSongs(mLoadTasksCallbackCaptor.capture());
-        mLoadTasksCallbackCaptor.getValue().onSongsLoaded(TASKS);
+        verify(mSongsRepository).getSongsPage(eq(0), eq(PlaylistPresenter.PAGE_SIZE),
+                mLoadTasksCallbackCaptor.capture());
+        mLoadTasksCallbackCaptor.getValue().onPageLoaded(TASKS, false);
 
         // Then progress indicator is hidden and completed tasks are shown in UI
         verify(mTasksView).setLoadingIndicator(false);
@@ -179,10 +184,78 @@ public class PlaylistPresenterTest {
         mPlaylistPresenter.loadTasks(true);
 
         // And the tasks aren't available in the repository
-        verify(mSongsRepository).getSongs(mLoadTasksCallbackCaptor.capture());
+        verify(mSongsRepository).getSongsPage(eq(0), eq(PlaylistPresenter.PAGE_SIZE),
+                mLoadTasksCallbackCaptor.capture());
         mLoadTasksCallbackCaptor.getValue().onDataNotAvailable();
 
         // Then an error message is shown
         verify(mTasksView).showLoadingTasksError();
     }
+
+    @Test
+    public void loadTasksByPage_appendsFollowingPagesOnDemand() {
+        // When loading of Tasks is requested
+        mPlaylistPresenter.setFiltering(PlaylistFilterType.ALL_TASKS);
+        mPlaylistPresenter.loadTasks(true);
+
+        // And the repository returns a first page with more to come
+        verify(mSongsRepository).getSongsPage(eq(0), eq(PlaylistPresenter.PAGE_SIZE),
+                mLoadTasksCallbackCaptor.capture());
+        mLoadTasksCallbackCaptor.getValue().onPageLoaded(TASKS.subList(0, 2), true);
+
+        // Then the first page is shown, and the next one isn't requested yet
+        verify(mTasksView).showTasks(TASKS.subList(0, 2));
+        verify(mSongsRepository, never()).getSongsPage(eq(2), eq(PlaylistPresenter.PAGE_SIZE),
+                any(LoadSongsPageCallback.class));
+
+        // When the view asks for more
+        mPlaylistPresenter.loadMoreTasks();
+
+        // Then the next page is requested where the first one ended, and appended to the list
+        verify(mSongsRepository).getSongsPage(eq(2), eq(PlaylistPresenter.PAGE_SIZE),
+                mLoadTasksCallbackCaptor.capture());
+        mLoadTasksCallbackCaptor.getValue().onPageLoaded(TASKS.subList(2, 3), false);
+        verify(mTasksView).showMoreTasks(TASKS.subList(2, 3));
+    }
+
+    @Test
+    public void loadMoreTasks_whileAPageIsLoading_isIgnored() {
+        // Given a first page shown, and the next one requested
+        mPlaylistPresenter.setFiltering(PlaylistFilterType.ALL_TASKS);
+        mPlaylistPresenter.loadTasks(true);
+        verify(mSongsRepository).getSongsPage(eq(0), eq(PlaylistPresenter.PAGE_SIZE),
+                mLoadTasksCallbackCaptor.capture());
+        mLoadTasksCallbackCaptor.getValue().onPageLoaded(TASKS.subList(0, 2), true);
+        mPlaylistPresenter.loadMoreTasks();
+
+        // When the view asks for more again before it arrives
+        mPlaylistPresenter.loadMoreTasks();
+
+        // Then the page is requested only once
+        verify(mSongsRepository).getSongsPage(eq(2), eq(PlaylistPresenter.PAGE_SIZE),
+                any(LoadSongsPageCallback.class));
+    }
+
+    @Test
+    public void loadTasksByPage_fromMemory_showsOnePageAtATime() {
+        // Given a cache holding more than a page of songs
+        List<Song> songs = new ArrayList<>();
+        for (int i = 0; i < PlaylistPresenter.PAGE_SIZE + 5; i++) {
+            songs.add(new Song("Title" + i, "Description" + i, SOURCE));
+        }
+        when(mSongsRepository.getCachedSongs()).thenReturn(songs);
+        mPlaylistPresenter.setFiltering(PlaylistFilterType.ALL_TASKS);
+        // The first load is always forced, which skips memory
+        mPlaylistPresenter.loadTasks(true);
+
+        // When loading again
+        mPlaylistPresenter.loadTasks(false);
+
+        // Then only the first page is shown, and the rest follows when the view asks for it
+        verify(mTasksView).showTasks(songs.subList(0, PlaylistPresenter.PAGE_SIZE));
+        mPlaylistPresenter.loadMoreTasks();
+        verify(mTasksView).showMoreTasks(songs.subList(PlaylistPresenter.PAGE_SIZE, songs.size()));
+        verify(mSongsRepository, never()).getSongsPage(eq(PlaylistPresenter.PAGE_SIZE),
+                eq(PlaylistPresenter.PAGE_SIZE), any(LoadSongsPageCallback.class));
+    }
 }
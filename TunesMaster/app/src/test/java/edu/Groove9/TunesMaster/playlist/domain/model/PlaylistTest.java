@@ -0,0 +1,153 @@
+/*
+ * Copyright 2016, The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.Groove9.TunesMaster.playlist.domain.model;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertThat;
+
+import com.google.common.collect.Lists;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.HashSet;
+import java.util.List;
+
+/**
+ * Unit tests for the navigation of {@link Playlist}.
+ */
+public class PlaylistTest {
+
+    private static final Song SONG1 = song("1");
+
+    private static final Song SONG2 = song("2");
+
+    private static final Song SONG3 = song("3");
+
+    @Test
+    public void getNextSong_wrapsAroundToTheFirstSong() {
+        Playlist playlist = new Playlist(Lists.newArrayList(SONG1, SONG2, SONG3), SONG2);
+
+        assertThat(playlist.getNextSong(), is(SONG3));
+        assertThat(playlist.getNextSong(), is(SONG1));
+        assertThat(playlist.getCurrentSong(), is(SONG1));
+    }
+
+    @Test
+    public void getLastSong_wrapsAroundToTheLastSong() {
+        Playlist playlist = new Playlist(SONG1, SONG2, SONG3);
+
+        assertThat(playlist.getLastSong(), is(SONG3));
+        assertThat(playlist.getLastSong(), is(SONG2));
+    }
+
+    @Test
+    public void currentSongNotInPlaylist_isKeptUntilMovingOn() {
+        Song other = song("other");
+        Playlist playlist = new Playlist(Lists.newArrayList(SONG1, SONG2), other);
+
+        assertThat(playlist.getCurrentSong(), is(other));
+        assertThat(playlist.getNextSong(), is(SONG1));
+
+        playlist.setCurrentSong(other);
+        assertThat(playlist.getLastSong(), is(SONG2));
+    }
+
+    @Test
+    public void nullCurrentSong_meansNoCurrentSong() {
+        Playlist playlist = new Playlist(Lists.newArrayList(SONG1, SONG2), (Song) null);
+
+        assertNull(playlist.getCurrentSong());
+        assertNull(playlist.getNextSong());
+        assertNull(playlist.getLastSong());
+    }
+
+    @Test
+    public void setCurrentSong_withARepeatedId_jumpsToItsFirstPosition() {
+        Song sameIdAsSong1 = new Song("Other title", null, SONG1.getId(),
+                SerializableUri.fromString("https://example.com/other"));
+        Playlist playlist = new Playlist(Lists.newArrayList(SONG1, SONG2, sameIdAsSong1, SONG3));
+
+        playlist.setCurrentSong(sameIdAsSong1);
+
+        assertSame(SONG1, playlist.getCurrentSong());
+        assertThat(playlist.getNextSong(), is(SONG2));
+    }
+
+    @Test
+    public void shuffle_keepsTheSongsAndMovesOnFromTheNewPositions() {
+        Playlist playlist = new Playlist(Lists.newArrayList(SONG1, SONG2, SONG3));
+
+        playlist.Shuffle();
+
+        List<Song> songs = playlist.getSongs();
+        assertThat(new HashSet<>(songs), is(new HashSet<>(Lists.newArrayList(SONG1, SONG2,
+                SONG3))));
+        int current = songs.indexOf(playlist.getCurrentSong());
+        assertThat(playlist.getNextSong(), is(songs.get((current + 1) % songs.size())));
+
+        // Positions are looked up in the shuffled order
+        playlist.setCurrentSong(songs.get(0));
+        assertThat(playlist.getNextSong(), is(songs.get(1)));
+    }
+
+    @Test
+    public void setSongs_keepsTheCurrentSongAtItsNewPosition() {
+        Playlist playlist = new Playlist(Lists.newArrayList(SONG1, SONG2), SONG2);
+
+        playlist.setSongs(Lists.newArrayList(SONG2, SONG3, SONG1));
+
+        assertThat(playlist.getCurrentSong(), is(SONG2));
+        assertThat(playlist.getNextSong(), is(SONG3));
+    }
+
+    @Test
+    public void setSongs_withoutTheCurrentSong_nextIsTheFirst() {
+        Playlist playlist = new Playlist(Lists.newArrayList(SONG1, SONG2), SONG2);
+
+        playlist.setSongs(Lists.newArrayList(SONG3, SONG1));
+
+        assertThat(playlist.getCurrentSong(), is(SONG2));
+        assertThat(playlist.getNextSong(), is(SONG3));
+    }
+
+    @Test
+    public void deserializedPlaylist_findsItsPositionAgain() throws Exception {
+        Playlist playlist = new Playlist(Lists.newArrayList(SONG1, SONG2, SONG3), SONG2);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(playlist);
+        out.close();
+        ObjectInputStream in = new ObjectInputStream(
+                new ByteArrayInputStream(bytes.toByteArray()));
+        Playlist deserialized = (Playlist) in.readObject();
+
+        assertThat(deserialized.getCurrentSong(), is(SONG2));
+        assertThat(deserialized.getNextSong(), is(SONG3));
+    }
+
+    private static Song song(String id) {
+        return new Song("Title" + id, "Description" + id, id,
+                SerializableUri.fromString("https://example.com/" + id));
+    }
+}
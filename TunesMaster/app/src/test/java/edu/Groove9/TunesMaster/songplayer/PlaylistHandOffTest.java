@@ -0,0 +1,82 @@
+/*
+ * Copyright 2016, The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package edu.Groove9.TunesMaster.songplayer;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import com.google.common.collect.Lists;
+
+import edu.Groove9.TunesMaster.playlist.domain.model.Playlist;
+import edu.Groove9.TunesMaster.playlist.domain.model.SerializableUri;
+import edu.Groove9.TunesMaster.playlist.domain.model.Song;
+
+import org.junit.Test;
+
+import java.util.List;
+
+/**
+ * Unit tests for {@link PlaylistHandOff}.
+ */
+public class PlaylistHandOffTest {
+
+    @Test
+    public void take_findsThePlaylistOnlyOnce() {
+        Playlist playlist = new Playlist(song("1"), song("2"));
+        String key = PlaylistHandOff.put(playlist);
+
+        assertSame(playlist, PlaylistHandOff.take(key));
+        assertNull(PlaylistHandOff.take(key));
+    }
+
+    @Test
+    public void take_withTheKeyOfAReplacedPlaylist_findsNothing() {
+        String firstKey = PlaylistHandOff.put(new Playlist(song("1")));
+        Playlist second = new Playlist(song("2"));
+        String secondKey = PlaylistHandOff.put(second);
+
+        assertNull(PlaylistHandOff.take(firstKey));
+        assertNull(PlaylistHandOff.take(null));
+        assertSame(second, PlaylistHandOff.take(secondKey));
+    }
+
+    @Test
+    public void encodedSongIds_decodeInOrder() {
+        List<Song> songs = Lists.newArrayList(song("b"), song("a"), song("b"),
+                song("\u00e9t\u00e9"));
+
+        byte[] encoded = PlaylistHandOff.encodeSongIds(songs);
+
+        assertThat(PlaylistHandOff.decodeSongIds(encoded),
+                is((List<String>) Lists.newArrayList("b", "a", "b", "\u00e9t\u00e9")));
+    }
+
+    @Test
+    public void missingOrUnreadableSongIds_decodeToNone() {
+        assertTrue(PlaylistHandOff.decodeSongIds(null).isEmpty());
+        assertTrue(PlaylistHandOff.decodeSongIds(new byte[] {1, 2, 3}).isEmpty());
+    }
+
+    private static Song song(String id) {
+        return new Song("Title" + id, "Description" + id, id,
+                SerializableUri.fromString("https://example.com/" + id));
+    }
+}